@@ -0,0 +1,101 @@
+package org.binance.pastdataservice.candle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The in-memory part of {@code TradeService.findBySymbolAndFilters}: query projections into a
+ * {@link CandleSeries}, the series into {@link CandleDto}s, and a fully cached 60-day range
+ * assembled from segments, including segment key building and cache lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class CandleQueryBenchmark {
+
+    private static final long MINUTE = 60_000;
+    private static final long DAY = 1440 * MINUTE;
+
+    @Param({"10000", "86400"})
+    public int candles;
+
+    private List<TradeRepository.CandleProjection> projections;
+    private CandleSeries series;
+    private CandleSegmentCache segmentCache;
+    private long fromEpoch;
+    private long toEpoch;
+
+    private record Projection(long openTime, double open, double high, double low, double close, double volume,
+                              long tradeCount) implements TradeRepository.CandleProjection {
+        public long getOpenTime() { return openTime; }
+        public double getOpen() { return open; }
+        public double getHigh() { return high; }
+        public double getLow() { return low; }
+        public double getClose() { return close; }
+        public double getVolume() { return volume; }
+        public long getTradeCount() { return tradeCount; }
+    }
+
+    @Setup
+    public void setUp() {
+        long start = (System.currentTimeMillis() - 90 * DAY) / DAY * DAY;
+        projections = new ArrayList<>(candles);
+        for (int i = 0; i < candles; i++) {
+            double price = 30_000 + Math.sin(i / 100.0) * 500;
+            projections.add(new Projection(start + i * MINUTE, price, price + 5, price - 5, price + 1, 12.5, 40 + i % 100));
+        }
+        series = CandleSeries.of(MINUTE, projections);
+
+        segmentCache = new CandleSegmentCache(Caffeine.newBuilder().build(), new SimpleMeterRegistry(), Duration.ofMinutes(1), null);
+        fromEpoch = start;
+        toEpoch = start + 60 * DAY - 1;
+        // Warms every closed segment of the range
+        segmentCache.get("BTCUSDT", MINUTE, fromEpoch, toEpoch, (from, to) -> synthetic(from, to));
+    }
+
+    @Benchmark
+    public CandleSeries projectionsToSeries() {
+        return CandleSeries.of(MINUTE, projections);
+    }
+
+    @Benchmark
+    public List<CandleDto> seriesToDtos() {
+        return series.toDtos();
+    }
+
+    @Benchmark
+    public CandleSeries cachedRange() {
+        return segmentCache.get("BTCUSDT", MINUTE, fromEpoch, toEpoch, (from, to) -> {
+            throw new IllegalStateException("Range should be cached");
+        });
+    }
+
+    private static CandleSeries synthetic(long from, long to) {
+        CandleSeries candles = new CandleSeries(MINUTE, (int) ((to - from + 1) / MINUTE));
+        for (long t = from; t <= to; t += MINUTE) {
+            candles.add(t, 100, 101, 99, 100.5, 3, 10);
+        }
+        return candles;
+    }
+}
@@ -0,0 +1,125 @@
+package org.binance.pastdataservice.controllers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding a large candle response in each supported representation. The payload size of each
+ * is reported as the {@code payloadBytes} counter, next to the encode times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class CandleSerializationBenchmark {
+
+    @Param({"10000", "86400"})
+    public int candles;
+
+    private ObjectMapper objectMapper;
+    private CandleSeries series;
+    private List<CandleDto> dtos;
+
+    // Discards the payloads, reporting their average size
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload extends OutputStream {
+        private long bytes;
+        private long payloads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            payloads = 0;
+        }
+
+        public long payloadBytes() {
+            return payloads == 0 ? 0 : bytes / payloads;
+        }
+
+        void completed() {
+            payloads++;
+        }
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        series = new CandleSeries(60_000, candles);
+        double price = 30_000;
+        for (int i = 0; i < candles; i++) {
+            double next = price + Math.sin(i) * 15;
+            series.add(1_700_000_040_000L + i * 60_000L, price, Math.max(price, next) + 2.5,
+                    Math.min(price, next) - 2.5, next, Math.abs(Math.cos(i)) * 40, 100 + i % 900);
+            price = next;
+        }
+        dtos = series.toDtos();
+    }
+
+    // The default JSON response, including the DTOs built for it
+    @Benchmark
+    public void json(Payload out) throws IOException {
+        objectMapper.writeValue(out, series.toDtos());
+        out.completed();
+    }
+
+    @Benchmark
+    public void jsonPrebuiltDtos(Payload out) throws IOException {
+        objectMapper.writeValue(out, dtos);
+        out.completed();
+    }
+
+    @Benchmark
+    public void ndjson(Payload out) throws IOException {
+        CandleNdjsonWriter writer = new CandleNdjsonWriter(objectMapper.getFactory(), out);
+        writer.write(series, series.size());
+        writer.finish(null);
+        out.completed();
+    }
+
+    @Benchmark
+    public void binary(Payload out) throws IOException {
+        CandleBinaryEncoder.encode(series, out);
+        out.completed();
+    }
+
+    @Benchmark
+    public void binaryGzip(Payload out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+        CandleBinaryEncoder.encode(series, gzip);
+        gzip.finish();
+        out.completed();
+    }
+}
@@ -0,0 +1,130 @@
+package org.binance.pastdataservice.ingest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSegmentCache;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.candle.HotCandleEngine;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.service.CandleQueryGate;
+import org.binance.pastdataservice.service.TradeService;
+import org.binance.pastdataservice.store.TradeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Publishing into the ingest pipeline from several consumer threads, with writers draining into
+ * a store that discards the batches, so the numbers cover buffering, batching and
+ * acknowledgement but no database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Threads(4)
+public class IngestPipelineBenchmark {
+
+    private static final IngestAcknowledger NO_ACK = new IngestAcknowledger() {
+        @Override
+        public void acknowledge(long token) {
+        }
+
+        @Override
+        public void reject(long token) {
+        }
+    };
+
+    @Param({"2"})
+    public int writers;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private IngestPipeline pipeline;
+
+    @State(Scope.Thread)
+    public static class Consumer {
+        private static final String[] SYMBOLS = {"BTCUSDT", "ETHUSDT", "SOLUSDT", "XRPUSDT", "BNBUSDT", "DOGEUSDT"};
+        private static int next;
+
+        final TradeRecord trade = new TradeRecord();
+        long token;
+
+        @Setup
+        public void setUp() {
+            synchronized (Consumer.class) {
+                trade.setSymbol(SYMBOLS[next++ % SYMBOLS.length]);
+            }
+            trade.setPrice(100);
+            trade.setQuantity(1);
+            trade.setTradeType("MARKET");
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TradeStore discarding = new TradeStore() {
+            @Override
+            public String name() {
+                return "discard";
+            }
+
+            @Override
+            public int append(List<TradeRecord> trades) {
+                return trades.size();
+            }
+
+            @Override
+            public CandleSeries findCandles(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+                return new CandleSeries(tickMs, 0);
+            }
+
+            @Override
+            public int scanTrades(String symbol, long afterTime, long afterTradeId, long toEpoch, int limit,
+                                  TradeSink sink) {
+                return 0;
+            }
+        };
+        TradeService tradeService = new TradeService(null, discarding,
+                new HotCandleEngine(registry, false, Duration.ofSeconds(1), Duration.ofMinutes(1), 1),
+                new CandleSegmentCache(Caffeine.newBuilder().build(), registry, Duration.ofMinutes(1), null),
+                new CandleQueryGate(registry, 1, 1, Duration.ofSeconds(1)),
+                registry);
+        pipeline = new IngestPipeline(tradeService, registry, batchSize, Duration.ofMillis(50), writers, 8 * batchSize, null);
+        pipeline.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+
+    @Benchmark
+    public void publish(Consumer consumer) throws InterruptedException {
+        TradeRecord trade = consumer.trade;
+        long token = ++consumer.token;
+        trade.setTradeId(token);
+        trade.setTradeTime(token);
+        pipeline.publish(trade, NO_ACK, token);
+    }
+}
@@ -0,0 +1,67 @@
+package org.binance.pastdataservice.ingest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.binance.pastdataservice.model.dto.request.CreateTradeDto;
+import org.binance.pastdataservice.model.entity.Trade;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding one trade message: the byte scanner used by the listeners against the former
+ * {@code readTree} + {@code treeToValue} path, and the decimal parsing of {@link CreateTradeDto#toEntity}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TradeDecodeBenchmark {
+
+    private static final byte[] MESSAGE = ("{\"e\":\"trade\",\"E\":1769333690922,\"T\":1769333690922,\"s\":\"XRPUSDT\","
+            + "\"t\":2939595425,\"p\":\"1.8933\",\"q\":\"147.7\",\"X\":\"MARKET\",\"m\":false}").getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+    private TradeMessageDecoder decoder;
+    private TradeRecord record;
+    private CreateTradeDto dto;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        decoder = new TradeMessageDecoder(objectMapper);
+        record = new TradeRecord();
+        dto = objectMapper.readValue(MESSAGE, CreateTradeDto.class);
+    }
+
+    @Benchmark
+    public TradeRecord scanner() throws IOException {
+        decoder.decode(MESSAGE, record);
+        return record;
+    }
+
+    @Benchmark
+    public Trade jacksonTree() throws IOException {
+        JsonNode node = objectMapper.readTree(MESSAGE);
+        return objectMapper.treeToValue(node, CreateTradeDto.class).toEntity();
+    }
+
+    @Benchmark
+    public Trade toEntity() {
+        return dto.toEntity();
+    }
+}
@@ -1,111 +1,167 @@
 package org.binance.pastdataservice;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.rabbitmq.client.Channel;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
-import jakarta.annotation.PreDestroy;
 import lombok.Getter;
-import org.binance.pastdataservice.model.dto.request.CreateTradeDto;
-import org.binance.pastdataservice.service.TradeService;
+import org.binance.pastdataservice.candle.HotCandleEngine;
+import org.binance.pastdataservice.ingest.IngestAcknowledger;
+import org.binance.pastdataservice.ingest.IngestPipeline;
+import org.binance.pastdataservice.ingest.TradeMessageDecoder;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.service.LiveCandleService;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
 public class DataListener {
 
-    private static final int BATCH_SIZE = 100;
+    private final TradeMessageDecoder tradeMessageDecoder;
+    private final IngestPipeline ingestPipeline;
+    private final HotCandleEngine hotCandleEngine;
+    private final LiveCandleService liveCandleService;
 
-    private final JsonMapper jsonMapper;
-    private final ObjectMapper objectMapper;
-    private final TradeService tradeService;
-    private final ConcurrentLinkedQueue<CreateTradeDto> buffer = new ConcurrentLinkedQueue<>();
+    // Decoded records and channel acknowledgers are reused per consumer thread
+    private final ThreadLocal<TradeRecord> decoded = ThreadLocal.withInitial(TradeRecord::new);
+    private final ThreadLocal<ChannelAcknowledger> acknowledgers = new ThreadLocal<>();
 
     private final Counter tradesReceivedCounter;
-    private final Timer batchInsertTimer;
+    private final Timer decodeTimer;
+    private final MeterRegistry meterRegistry;
+    private final int maxSymbolTags;
+    // Per-symbol counters up to maxSymbolTags symbols; later symbols share the "other" counter
+    private final Map<String, Counter> symbolCounters = new ConcurrentHashMap<>();
+    private final Counter otherSymbolsCounter;
 
     // Health tracking fields
     @Getter
-    private volatile Instant lastBatchTime;
-    @Getter
     private final AtomicLong totalTradesReceived = new AtomicLong(0);
-    @Getter
-    private final AtomicLong totalBatchesInserted = new AtomicLong(0);
 
 
     public DataListener(
-            JsonMapper jsonMapper,
-            ObjectMapper objectMapper,
-            TradeService tradeService,
-            MeterRegistry meterRegistry
+            TradeMessageDecoder tradeMessageDecoder,
+            IngestPipeline ingestPipeline,
+            HotCandleEngine hotCandleEngine,
+            LiveCandleService liveCandleService,
+            MeterRegistry meterRegistry,
+            @Value("${metrics.max-symbol-tags:50}") int maxSymbolTags
     ) {
-        this.jsonMapper = jsonMapper;
-        this.objectMapper = objectMapper;
-        this.tradeService = tradeService;
+        this.tradeMessageDecoder = tradeMessageDecoder;
+        this.ingestPipeline = ingestPipeline;
+        this.hotCandleEngine = hotCandleEngine;
+        this.liveCandleService = liveCandleService;
         this.tradesReceivedCounter = Counter.builder("pastdata.trades.received")
                 .description("Total trades received from RabbitMQ")
                 .register(meterRegistry);
-        this.batchInsertTimer = Timer.builder("pastdata.batch.insert")
-                .description("Time taken for batch DB inserts")
+        this.decodeTimer = Timer.builder("pastdata.ingest.stage")
+                .description("Time spent per stage of trade ingest")
+                .tag("stage", "decode")
+                .publishPercentileHistogram()
                 .register(meterRegistry);
+        this.meterRegistry = meterRegistry;
+        this.maxSymbolTags = maxSymbolTags;
+        this.otherSymbolsCounter = symbolCounter("other");
     }
 
 
-    @Transactional
-    @RabbitListener(queues = "${rabbit-mq.consumer.queue}")
-    public void storeData(String data) {
+    @RabbitListener(queues = "${rabbit-mq.consumer.queue}", ackMode = "MANUAL",
+            autoStartup = "#{'${ingest.source:amqp}' == 'amqp'}")
+    public void storeData(Message message, Channel channel) throws InterruptedException {
+        byte[] body = message.getBody();
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        TradeRecord trade = decoded.get();
         try {
-            JsonNode jsonNode = jsonMapper.readTree(data);
-            CreateTradeDto dto = objectMapper.treeToValue(jsonNode, CreateTradeDto.class);
-
-            buffer.add(dto);
-            totalTradesReceived.incrementAndGet();
-            tradesReceivedCounter.increment();
-
-            if (buffer.size() >= BATCH_SIZE) {
-//                log.info("Buffer reached 100 items, processing batch...");
-                this.flushBuffer();
-            }
-
+            decode(body, trade);
         } catch (Exception e) {
+            String data = new String(body, StandardCharsets.UTF_8);
             log.error("Error processing data: {}", data, e);
-            throw new RuntimeException("Failed to process data: " + data, e);
+            // Redelivering an undecodable message would only fail again
+            acknowledgerFor(channel).reject(deliveryTag, false);
+            return;
         }
+
+        recordReceived(trade);
+
+        // Blocks while the writers are behind; the unacked prefetch window then stops the broker
+        ingestPipeline.publish(trade, acknowledgerFor(channel), deliveryTag);
+    }
+
+    public void decode(byte[] body, TradeRecord into) throws IOException {
+        long started = System.nanoTime();
+        tradeMessageDecoder.decode(body, into);
+        decodeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordReceived(TradeRecord trade) {
+        totalTradesReceived.incrementAndGet();
+        tradesReceivedCounter.increment();
+        countSymbol(trade.getSymbol());
+        hotCandleEngine.onTrade(trade);
+        liveCandleService.onTrade(trade);
     }
 
-    private void flushBuffer() {
-        List<CreateTradeDto> batch = new ArrayList<>(BATCH_SIZE);
-        CreateTradeDto item;
-        while ((item = buffer.poll()) != null) {
-            batch.add(item);
+    private void countSymbol(String symbol) {
+        Counter counter = symbolCounters.get(symbol);
+        if (counter == null) {
+            counter = symbolCounters.size() < maxSymbolTags
+                    ? symbolCounters.computeIfAbsent(symbol, this::symbolCounter)
+                    : otherSymbolsCounter;
         }
-        if (batch.isEmpty()) return;
+        counter.increment();
+    }
 
-        batchInsertTimer.record(() -> tradeService.insertBatch(batch));
-        lastBatchTime = Instant.now();
-        totalBatchesInserted.incrementAndGet();
+    private Counter symbolCounter(String symbol) {
+        return Counter.builder("pastdata.trades.received.symbol")
+                .description("Trades received per symbol, beyond metrics.max-symbol-tags symbols counted as 'other'")
+                .tag("symbol", symbol)
+                .register(meterRegistry);
     }
 
-    public int getBufferSize() {
-        return buffer.size();
+    private ChannelAcknowledger acknowledgerFor(Channel channel) {
+        ChannelAcknowledger acknowledger = acknowledgers.get();
+        if (acknowledger == null || acknowledger.channel != channel) {
+            acknowledger = new ChannelAcknowledger(channel);
+            acknowledgers.set(acknowledger);
+        }
+        return acknowledger;
     }
 
-    @PreDestroy
-    public void onShutdown() {
-        log.info("Application is shutting down, flushing remaining {} data...", buffer.size());
-        this.flushBuffer();
+    private record ChannelAcknowledger(Channel channel) implements IngestAcknowledger {
+
+        @Override
+        public void acknowledge(long deliveryTag) {
+            try {
+                channel.basicAck(deliveryTag, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void reject(long deliveryTag) {
+            reject(deliveryTag, true);
+        }
+
+        void reject(long deliveryTag, boolean requeue) {
+            try {
+                channel.basicNack(deliveryTag, false, requeue);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -2,8 +2,10 @@ package org.binance.pastdataservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PastDataServiceApplication {
 
     public static void main(String[] args) {
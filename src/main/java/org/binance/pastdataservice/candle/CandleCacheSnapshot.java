@@ -0,0 +1,253 @@
+package org.binance.pastdataservice.candle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local snapshot of the closed candle segments, written every {@code candle-cache.snapshot.interval}
+ * and on shutdown, so a restarted instance does not recompute them all from the store. At startup
+ * the file is memory-mapped and only indexed; a segment is decoded when the cache first misses it.
+ * Segments keep the age they had when written and are not restored past
+ * {@code candle-cache.expire-after-write}.
+ * <p>
+ * Layout (big-endian): magic, version, write time, entry count, then per entry the symbol as
+ * length (byte) and ASCII bytes, tick, segment index, age, candle count and per candle open time,
+ * open, high, low, close, volume and trade count.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "candle-cache.snapshot.enabled", havingValue = "true")
+public class CandleCacheSnapshot {
+
+    private static final int MAGIC = 0x50444353; // "PDCS"
+    // Version 2 caps segments at a day, so segment indexes of coarse ticks changed
+    private static final int VERSION = 2;
+    private static final int CANDLE_BYTES = 7 * 8;
+
+    private final Cache<CandleSegmentKey, CandleSeries> cache;
+    private final Path path;
+    private final long expireAfterWriteMs;
+
+    // Segments of the loaded snapshot not yet taken by the cache, by their offset in the mapping
+    private final Map<CandleSegmentKey, Entry> pending = new ConcurrentHashMap<>();
+    private volatile ByteBuffer mapped;
+    private volatile long writtenAt = Long.MIN_VALUE;
+
+    private final Counter restoredCounter;
+    private final Timer writeTimer;
+
+    private record Entry(int offset, long expiresAt) {
+    }
+
+    public CandleCacheSnapshot(
+            Cache<CandleSegmentKey, CandleSeries> candleSegments,
+            MeterRegistry meterRegistry,
+            @Value("${candle-cache.snapshot.path:./data/candle-cache.snap}") Path path,
+            @Value("${candle-cache.expire-after-write:1h}") Duration expireAfterWrite
+    ) {
+        this.cache = candleSegments;
+        this.path = path;
+        this.expireAfterWriteMs = expireAfterWrite.toMillis();
+        this.restoredCounter = Counter.builder("pastdata.cache.snapshot.restored")
+                .description("Candle segments restored from the snapshot instead of the store")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("pastdata.cache.snapshot.write")
+                .description("Time spent writing the candle cache snapshot")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.cache.snapshot.age", this, snapshot -> snapshot.writtenAt == Long.MIN_VALUE
+                        ? Double.NaN
+                        : (System.currentTimeMillis() - snapshot.writtenAt) / 1000.0)
+                .description("Age of the newest candle cache snapshot written or loaded")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.cache.snapshot.pending", pending, Map::size)
+                .description("Snapshot segments not yet restored into the cache")
+                .register(meterRegistry);
+
+        long started = System.nanoTime();
+        int entries = load();
+        long loadNanos = System.nanoTime() - started;
+        Timer.builder("pastdata.cache.snapshot.load")
+                .description("Time spent indexing the candle cache snapshot at startup")
+                .register(meterRegistry)
+                .record(loadNanos, TimeUnit.NANOSECONDS);
+        if (entries > 0) {
+            log.info("Indexed {} candle segments of a {}s old snapshot in {} ms", entries,
+                    (System.currentTimeMillis() - writtenAt) / 1000, TimeUnit.NANOSECONDS.toMillis(loadNanos));
+        }
+    }
+
+    /**
+     * Decodes the snapshot's segment for {@code key}, once; null if it has none or it has expired.
+     */
+    public CandleSeries take(CandleSegmentKey key) {
+        // Read first: removing the last entry lets another taker drop the mapping
+        ByteBuffer buffer = mapped;
+        Entry entry = pending.remove(key);
+        if (entry == null || buffer == null || System.currentTimeMillis() >= entry.expiresAt()) {
+            return null;
+        }
+        if (pending.isEmpty()) {
+            // Lets the mapping go once everything is restored
+            mapped = null;
+        }
+        ByteBuffer in = buffer.duplicate().position(entry.offset());
+        int size = in.getInt();
+        CandleSeries series = new CandleSeries(key.tickMs(), size);
+        for (int i = 0; i < size; i++) {
+            series.add(in.getLong(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+                    in.getLong());
+        }
+        restoredCounter.increment();
+        return series;
+    }
+
+    @Scheduled(initialDelayString = "${candle-cache.snapshot.interval:5m}",
+            fixedDelayString = "${candle-cache.snapshot.interval:5m}")
+    public void write() {
+        long started = System.nanoTime();
+        try {
+            int entries = writeSnapshot();
+            writeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            log.debug("Wrote {} candle segments to {}", entries, path);
+        } catch (IOException e) {
+            log.warn("Failed to write candle cache snapshot {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        write();
+    }
+
+    private synchronized int writeSnapshot() throws IOException {
+        long now = System.currentTimeMillis();
+        Policy.FixedExpiration<CandleSegmentKey, CandleSeries> expiration =
+                cache.policy().expireAfterWrite().orElse(null);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        int entries = 0;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(now);
+            // Entry count, patched below
+            out.writeInt(0);
+            for (Map.Entry<CandleSegmentKey, CandleSeries> segment : cache.asMap().entrySet()) {
+                long ageMs = expiration == null ? 0 : expiration.ageOf(segment.getKey(), TimeUnit.MILLISECONDS).orElse(0);
+                writeKey(out, segment.getKey(), ageMs);
+                CandleSeries series = segment.getValue();
+                out.writeInt(series.size());
+                for (int i = 0; i < series.size(); i++) {
+                    out.writeLong(series.getOpenTime(i));
+                    out.writeDouble(series.getOpen(i));
+                    out.writeDouble(series.getHigh(i));
+                    out.writeDouble(series.getLow(i));
+                    out.writeDouble(series.getClose(i));
+                    out.writeDouble(series.getVolume(i));
+                    out.writeLong(series.getTradeCount(i));
+                }
+                entries++;
+            }
+            // Segments of the previous snapshot nobody asked for yet are carried over as they are
+            ByteBuffer buffer = mapped;
+            if (buffer != null) {
+                for (Map.Entry<CandleSegmentKey, Entry> segment : pending.entrySet()) {
+                    Entry entry = segment.getValue();
+                    if (now >= entry.expiresAt() || cache.getIfPresent(segment.getKey()) != null) continue;
+                    writeKey(out, segment.getKey(), expireAfterWriteMs - (entry.expiresAt() - now));
+                    int size = buffer.getInt(entry.offset());
+                    byte[] candles = new byte[4 + size * CANDLE_BYTES];
+                    buffer.get(entry.offset(), candles);
+                    out.write(candles);
+                    entries++;
+                }
+            }
+            out.flush();
+            channel.write(ByteBuffer.allocate(4).putInt(0, entries), 16);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writtenAt = now;
+        return entries;
+    }
+
+    private static void writeKey(DataOutputStream out, CandleSegmentKey key, long ageMs) throws IOException {
+        byte[] symbol = key.symbol().getBytes(StandardCharsets.US_ASCII);
+        out.writeByte(symbol.length);
+        out.write(symbol);
+        out.writeLong(key.tickMs());
+        out.writeLong(key.index());
+        out.writeLong(ageMs);
+    }
+
+    // Maps the snapshot and indexes its segments without decoding them
+    private int load() {
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                log.warn("Ignoring candle cache snapshot {} of {} bytes", path, channel.size());
+                return 0;
+            }
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Ignoring candle cache snapshot {} of another format", path);
+                return 0;
+            }
+            long snapshotAt = buffer.getLong();
+            int entries = buffer.getInt();
+            for (int e = 0; e < entries; e++) {
+                byte[] symbol = new byte[buffer.get() & 0xFF];
+                buffer.get(symbol);
+                CandleSegmentKey key = new CandleSegmentKey(new String(symbol, StandardCharsets.US_ASCII),
+                        buffer.getLong(), buffer.getLong());
+                long ageMs = buffer.getLong();
+                int offset = buffer.position();
+                int size = buffer.getInt();
+                buffer.position(offset + 4 + size * CANDLE_BYTES);
+                pending.put(key, new Entry(offset, snapshotAt - ageMs + expireAfterWriteMs));
+            }
+            mapped = buffer;
+            writtenAt = snapshotAt;
+            return entries;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("Ignoring unreadable candle cache snapshot {}", path, e);
+            pending.clear();
+            return 0;
+        }
+    }
+}
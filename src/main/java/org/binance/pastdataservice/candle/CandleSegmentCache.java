@@ -0,0 +1,211 @@
+package org.binance.pastdataservice.candle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assembles candle ranges from epoch-aligned segments of {@link #SEGMENT_CANDLES} candles, but
+ * no longer than a day, e.g. one day of 1m or 24 of 1h candles. Segments that ended more than {@code candle-cache.close-delay} ago
+ * no longer change and are cached as immutable series; the open segment at the head of the
+ * range is always computed fresh. With a {@link CandleCacheSnapshot}, missing segments are
+ * restored from it before they are loaded.
+ */
+@Component
+public class CandleSegmentCache {
+
+    public static final int SEGMENT_CANDLES = 1440;
+    // Keeps 1ms segments from degenerating into one entry per second and a half
+    private static final long MIN_SEGMENT_MS = 60_000;
+    // Keeps the open segment of coarse ticks from spanning weeks that are never cached
+    private static final long MAX_SEGMENT_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Computes the candles in [fromEpoch, toEpoch] from the underlying sources.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        CandleSeries load(long fromEpoch, long toEpoch);
+    }
+
+    private final Cache<CandleSegmentKey, CandleSeries> cache;
+    private final long closeDelayMs;
+    private final @Nullable CandleCacheSnapshot snapshot;
+
+    private final Counter cacheHitCounter;
+    private final Counter cacheMissCounter;
+    private final Timer lookupTimer;
+
+    public CandleSegmentCache(
+            Cache<CandleSegmentKey, CandleSeries> candleSegments,
+            MeterRegistry meterRegistry,
+            @Value("${candle-cache.close-delay:1m}") Duration closeDelay,
+            @Nullable CandleCacheSnapshot snapshot
+    ) {
+        this.cache = candleSegments;
+        this.closeDelayMs = closeDelay.toMillis();
+        this.snapshot = snapshot;
+        this.cacheHitCounter = Counter.builder("pastdata.cache.hits")
+                .description("Number of closed candle segments served from the cache")
+                .register(meterRegistry);
+        this.cacheMissCounter = Counter.builder("pastdata.cache.misses")
+                .description("Number of closed candle segments loaded into the cache")
+                .register(meterRegistry);
+        this.lookupTimer = Timer.builder("pastdata.query.stage")
+                .description("Time spent per stage of candle queries")
+                .tag("stage", "cache")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public static long segmentMs(long tickMs) {
+        long candles = Math.max(1, Math.min(SEGMENT_CANDLES, MAX_SEGMENT_MS / tickMs));
+        return Math.max(tickMs * candles, MIN_SEGMENT_MS);
+    }
+
+    public CandleSeries get(String symbol, long tickMs, long fromEpoch, long toEpoch, Loader loader) {
+        return timed(loader, timedLoader -> assemble(symbol, tickMs, fromEpoch, toEpoch, timedLoader));
+    }
+
+    /**
+     * Like {@link #get}, but leaves the cache as it is: cached segments are used and everything
+     * else is loaded for this call only, so long scans do not evict the segments of other queries.
+     */
+    public CandleSeries read(String symbol, long tickMs, long fromEpoch, long toEpoch, Loader loader) {
+        return timed(loader, timedLoader -> readThrough(symbol, tickMs, fromEpoch, toEpoch, timedLoader));
+    }
+
+    private CandleSeries timed(Loader loader, Function<Loader, CandleSeries> lookup) {
+        long started = System.nanoTime();
+        // The lookup stage excludes the loads, which are timed by the loader
+        long[] loadNanos = new long[1];
+        Loader timedLoader = (from, to) -> {
+            long loadStarted = System.nanoTime();
+            try {
+                return loader.load(from, to);
+            } finally {
+                loadNanos[0] += System.nanoTime() - loadStarted;
+            }
+        };
+        CandleSeries result = lookup.apply(timedLoader);
+        lookupTimer.record(System.nanoTime() - started - loadNanos[0], TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private CandleSeries readThrough(String symbol, long tickMs, long fromEpoch, long toEpoch, Loader loader) {
+        long segmentMs = segmentMs(tickMs);
+        long closedBefore = System.currentTimeMillis() - closeDelayMs;
+
+        List<CandleSegmentKey> closed = new ArrayList<>();
+        for (long index = Math.floorDiv(fromEpoch, segmentMs); index <= Math.floorDiv(toEpoch, segmentMs); index++) {
+            CandleSegmentKey key = new CandleSegmentKey(symbol, tickMs, index);
+            if (key.endEpoch() >= closedBefore) break;
+            closed.add(key);
+        }
+        Map<CandleSegmentKey, CandleSeries> cached = closed.isEmpty() ? Map.of() : cache.getAllPresent(closed);
+        cacheHitCounter.increment(cached.size());
+
+        // Runs of segments that are not cached are loaded with one query each
+        CandleSeries result = new CandleSeries(tickMs, 0);
+        long loadFrom = fromEpoch;
+        for (CandleSegmentKey key : closed) {
+            CandleSeries segment = cached.get(key);
+            if (segment == null) continue;
+            if (loadFrom < key.startEpoch()) {
+                result.addAll(loader.load(loadFrom, key.startEpoch() - 1));
+            }
+            result.addRange(segment, fromEpoch, toEpoch);
+            loadFrom = key.endEpoch() + 1;
+        }
+        if (loadFrom <= toEpoch) {
+            result.addAll(loader.load(loadFrom, toEpoch));
+        }
+        return result;
+    }
+
+    private CandleSeries assemble(String symbol, long tickMs, long fromEpoch, long toEpoch, Loader loader) {
+        long segmentMs = segmentMs(tickMs);
+        long closedBefore = System.currentTimeMillis() - closeDelayMs;
+
+        List<CandleSegmentKey> closed = new ArrayList<>();
+        long openFrom = Long.MAX_VALUE;
+        for (long index = Math.floorDiv(fromEpoch, segmentMs); index <= Math.floorDiv(toEpoch, segmentMs); index++) {
+            CandleSegmentKey key = new CandleSegmentKey(symbol, tickMs, index);
+            if (key.endEpoch() < closedBefore) {
+                closed.add(key);
+            } else {
+                openFrom = Math.max(key.startEpoch(), fromEpoch);
+                break;
+            }
+        }
+
+        int[] misses = new int[1];
+        Map<CandleSegmentKey, CandleSeries> segments = closed.isEmpty()
+                ? Map.of()
+                : cache.getAll(closed, missing -> {
+                    misses[0] = missing.size();
+                    return loadSegments(missing, loader);
+                });
+        cacheHitCounter.increment(closed.size() - misses[0]);
+        cacheMissCounter.increment(misses[0]);
+
+        CandleSeries result = new CandleSeries(tickMs, 0);
+        for (CandleSegmentKey key : closed) {
+            result.addRange(segments.get(key), fromEpoch, toEpoch);
+        }
+        if (openFrom <= toEpoch) {
+            result.addAll(loader.load(openFrom, toEpoch));
+        }
+        return result;
+    }
+
+    // Adjacent missing segments are loaded with one query and split afterwards
+    private Map<CandleSegmentKey, CandleSeries> loadSegments(Set<? extends CandleSegmentKey> missing, Loader loader) {
+        Map<CandleSegmentKey, CandleSeries> loaded = new HashMap<>();
+        List<CandleSegmentKey> run = new ArrayList<>();
+        for (CandleSegmentKey key : sorted(missing)) {
+            CandleSeries restored = snapshot != null ? snapshot.take(key) : null;
+            if (restored != null) {
+                loaded.put(key, restored);
+                continue;
+            }
+            if (!run.isEmpty() && run.get(run.size() - 1).index() + 1 != key.index()) {
+                loadRun(run, loader, loaded);
+                run.clear();
+            }
+            run.add(key);
+        }
+        if (!run.isEmpty()) {
+            loadRun(run, loader, loaded);
+        }
+        return loaded;
+    }
+
+    private static void loadRun(List<CandleSegmentKey> run, Loader loader, Map<CandleSegmentKey, CandleSeries> into) {
+        CandleSeries candles = loader.load(run.get(0).startEpoch(), run.get(run.size() - 1).endEpoch());
+        for (CandleSegmentKey key : run) {
+            into.put(key, candles.copyRange(key.startEpoch(), key.endEpoch()));
+        }
+    }
+
+    private static Collection<CandleSegmentKey> sorted(Set<? extends CandleSegmentKey> keys) {
+        TreeSet<CandleSegmentKey> sorted = new TreeSet<>((a, b) -> Long.compare(a.index(), b.index()));
+        sorted.addAll(keys);
+        return sorted;
+    }
+}
@@ -0,0 +1,15 @@
+package org.binance.pastdataservice.candle;
+
+/**
+ * One epoch-aligned segment of {@link CandleSegmentCache#segmentMs(long)} of a symbol's candles.
+ */
+public record CandleSegmentKey(String symbol, long tickMs, long index) {
+
+    public long startEpoch() {
+        return index * CandleSegmentCache.segmentMs(tickMs);
+    }
+
+    public long endEpoch() {
+        return startEpoch() + CandleSegmentCache.segmentMs(tickMs) - 1;
+    }
+}
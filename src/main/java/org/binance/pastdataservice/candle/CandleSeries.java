@@ -0,0 +1,219 @@
+package org.binance.pastdataservice.candle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.binance.pastdataservice.repository.TradeRepository;
+
+/**
+ * Candles of one tick size in parallel primitive columns, ordered by open time. This is the
+ * internal form candles take between their sources and the response; {@link CandleDto}s are
+ * only built at the edge.
+ */
+public final class CandleSeries {
+
+    private final long tickMs;
+    private long[] openTime;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private double[] volume;
+    private long[] tradeCount;
+    private int size;
+
+    public CandleSeries(long tickMs, int capacity) {
+        this.tickMs = tickMs;
+        int initial = Math.max(capacity, 8);
+        this.openTime = new long[initial];
+        this.open = new double[initial];
+        this.high = new double[initial];
+        this.low = new double[initial];
+        this.close = new double[initial];
+        this.volume = new double[initial];
+        this.tradeCount = new long[initial];
+    }
+
+    public static CandleSeries of(long tickMs, List<TradeRepository.CandleProjection> projections) {
+        CandleSeries series = new CandleSeries(tickMs, projections.size());
+        for (TradeRepository.CandleProjection p : projections) {
+            series.add(p.getOpenTime(), p.getOpen(), p.getHigh(), p.getLow(), p.getClose(), p.getVolume(),
+                    p.getTradeCount());
+        }
+        return series;
+    }
+
+    // First bucket boundary at or after the given time, so no bucket is split between two sources
+    public static long alignUp(long epochMs, long tickMs) {
+        return Math.floorDiv(epochMs + tickMs - 1, tickMs) * tickMs;
+    }
+
+    public void add(long openTime, double open, double high, double low, double close, double volume, long tradeCount) {
+        if (size == this.openTime.length) {
+            grow(size * 2);
+        }
+        this.openTime[size] = openTime;
+        this.open[size] = open;
+        this.high[size] = high;
+        this.low[size] = low;
+        this.close[size] = close;
+        this.volume[size] = volume;
+        this.tradeCount[size] = tradeCount;
+        size++;
+    }
+
+    public void addAll(CandleSeries other) {
+        copyFrom(other, 0, other.size);
+    }
+
+    /**
+     * Appends the candles of {@code other} with open time in [fromEpoch, toEpoch].
+     */
+    public void addRange(CandleSeries other, long fromEpoch, long toEpoch) {
+        int start = other.indexOf(fromEpoch);
+        copyFrom(other, start, other.indexOf(toEpoch + 1) - start);
+    }
+
+    private void copyFrom(CandleSeries other, int start, int count) {
+        if (other.tickMs != tickMs) {
+            throw new IllegalArgumentException("Cannot append " + other.tickMs + "ms candles to " + tickMs + "ms candles");
+        }
+        if (size + count > openTime.length) {
+            grow(Math.max(size + count, size * 2));
+        }
+        System.arraycopy(other.openTime, start, openTime, size, count);
+        System.arraycopy(other.open, start, open, size, count);
+        System.arraycopy(other.high, start, high, size, count);
+        System.arraycopy(other.low, start, low, size, count);
+        System.arraycopy(other.close, start, close, size, count);
+        System.arraycopy(other.volume, start, volume, size, count);
+        System.arraycopy(other.tradeCount, start, tradeCount, size, count);
+        size += count;
+    }
+
+    /**
+     * Index of the first candle opening at or after {@code epochMs}.
+     */
+    public int indexOf(long epochMs) {
+        int index = Arrays.binarySearch(openTime, 0, size, epochMs);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Exact-size copy of the candles in [fromEpoch, toEpoch], e.g. for caching.
+     */
+    public CandleSeries copyRange(long fromEpoch, long toEpoch) {
+        int start = indexOf(fromEpoch);
+        int end = indexOf(toEpoch + 1);
+        CandleSeries copy = new CandleSeries(tickMs, end - start);
+        copy.copyFrom(this, start, end - start);
+        return copy;
+    }
+
+    public CandleSeries copy() {
+        CandleSeries copy = new CandleSeries(tickMs, size);
+        copy.copyFrom(this, 0, size);
+        return copy;
+    }
+
+    /**
+     * Candles of {@code factor} times this tick size, each merged exactly from the candles
+     * opening in its bucket; buckets are aligned to the epoch like every other tick.
+     */
+    public CandleSeries merge(int factor) {
+        if (factor == 1) {
+            return this;
+        }
+        long mergedTickMs = tickMs * factor;
+        CandleSeries merged = new CandleSeries(mergedTickMs, size / factor + 1);
+        int i = 0;
+        while (i < size) {
+            long bucket = Math.floorDiv(openTime[i], mergedTickMs) * mergedTickMs;
+            double o = open[i];
+            double h = high[i];
+            double l = low[i];
+            double c = close[i];
+            double v = volume[i];
+            long n = tradeCount[i];
+            for (i++; i < size && openTime[i] < bucket + mergedTickMs; i++) {
+                h = Math.max(h, high[i]);
+                l = Math.min(l, low[i]);
+                c = close[i];
+                v += volume[i];
+                n += tradeCount[i];
+            }
+            merged.add(bucket, o, h, l, c, v, n);
+        }
+        return merged;
+    }
+
+    public long memoryBytes() {
+        // seven 8-byte columns plus object and array headers
+        return (long) openTime.length * 7 * Long.BYTES + 8 * 16;
+    }
+
+    public List<CandleDto> toDtos() {
+        List<CandleDto> dtos = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dtos.add(CandleDto.builder()
+                    .openTime(openTime[i])
+                    .closeTime(openTime[i] + tickMs - 1)
+                    .open(open[i])
+                    .high(high[i])
+                    .low(low[i])
+                    .close(close[i])
+                    .volume(volume[i])
+                    .tradeCount((int) tradeCount[i])
+                    .build());
+        }
+        return dtos;
+    }
+
+    private void grow(int capacity) {
+        openTime = Arrays.copyOf(openTime, capacity);
+        open = Arrays.copyOf(open, capacity);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        close = Arrays.copyOf(close, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+        tradeCount = Arrays.copyOf(tradeCount, capacity);
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getOpenTime(int i) {
+        return openTime[i];
+    }
+
+    public double getOpen(int i) {
+        return open[i];
+    }
+
+    public double getHigh(int i) {
+        return high[i];
+    }
+
+    public double getLow(int i) {
+        return low[i];
+    }
+
+    public double getClose(int i) {
+        return close[i];
+    }
+
+    public double getVolume(int i) {
+        return volume[i];
+    }
+
+    public long getTradeCount(int i) {
+        return tradeCount[i];
+    }
+}
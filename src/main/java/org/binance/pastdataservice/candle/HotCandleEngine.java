@@ -0,0 +1,97 @@
+package org.binance.pastdataservice.candle;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process candles for the most recent {@code hot-window.duration} of each symbol, updated
+ * from the consumed trade stream. At most {@code hot-window.max-symbols} windows are kept, each
+ * with a fixed footprint reported by the {@code pastdata.hotwindow.memory} gauge.
+ */
+@Component
+@Slf4j
+public class HotCandleEngine {
+
+    private final boolean enabled;
+    private final long resolutionMs;
+    private final long windowMs;
+    private final int maxSymbols;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, HotCandleWindow> windows = new ConcurrentHashMap<>();
+
+    public HotCandleEngine(
+            MeterRegistry meterRegistry,
+            @Value("${hot-window.enabled:true}") boolean enabled,
+            @Value("${hot-window.resolution:1s}") Duration resolution,
+            @Value("${hot-window.duration:24h}") Duration duration,
+            @Value("${hot-window.max-symbols:32}") int maxSymbols
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.resolutionMs = resolution.toMillis();
+        this.windowMs = duration.toMillis();
+        this.maxSymbols = maxSymbols;
+        if (resolutionMs <= 0 || windowMs < resolutionMs) {
+            throw new IllegalArgumentException("hot-window.duration must be at least hot-window.resolution");
+        }
+        Gauge.builder("pastdata.hotwindow.symbols", windows, Map::size)
+                .description("Symbols with an in-memory candle window")
+                .register(meterRegistry);
+    }
+
+    public void onTrade(TradeRecord trade) {
+        if (!enabled) return;
+        HotCandleWindow window = windows.get(trade.getSymbol());
+        if (window == null) {
+            window = createWindow(trade.getSymbol());
+            if (window == null) return;
+        }
+        window.add(trade);
+    }
+
+    /**
+     * Time from which {@code tickMs} candles of the symbol can be served from memory, or null.
+     */
+    public Long coveredFrom(String symbol, long tickMs) {
+        if (!enabled || tickMs % resolutionMs != 0) return null;
+        HotCandleWindow window = windows.get(symbol);
+        if (window == null) return null;
+        long coveredFrom = window.coveredFrom();
+        return coveredFrom == Long.MAX_VALUE ? null : coveredFrom;
+    }
+
+    public CandleSeries aggregate(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        HotCandleWindow window = windows.get(symbol);
+        if (window == null) return new CandleSeries(tickMs, 0);
+        return window.aggregate(fromEpoch, toEpoch, tickMs);
+    }
+
+    private synchronized HotCandleWindow createWindow(String symbol) {
+        HotCandleWindow window = windows.get(symbol);
+        if (window != null) return window;
+        if (windows.size() >= maxSymbols) {
+            return null;
+        }
+
+        window = new HotCandleWindow(resolutionMs, windowMs);
+        windows.put(symbol, window);
+        Gauge.builder("pastdata.hotwindow.memory", window, HotCandleWindow::memoryBytes)
+                .description("Memory held by a symbol's in-memory candle window")
+                .tag("symbol", symbol)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Created {}ms hot candle window for {} ({} bytes)", resolutionMs, symbol, window.memoryBytes());
+        if (windows.size() == maxSymbols) {
+            log.warn("Hot candle window limit of {} symbols reached, further symbols are served from the DB", maxSymbols);
+        }
+        return window;
+    }
+}
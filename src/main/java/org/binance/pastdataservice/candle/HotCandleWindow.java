@@ -0,0 +1,153 @@
+package org.binance.pastdataservice.candle;
+
+import java.util.Arrays;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+/**
+ * Rolling window of one symbol's candles at a fixed resolution, kept in a ring of primitive
+ * slots indexed by bucket number. A slot is valid only while its stored open time matches the
+ * bucket it is read for, so old buckets expire simply by being overwritten.
+ */
+final class HotCandleWindow {
+
+    // slot open time, open, high, low, close, volume, trade count, first and last trade id
+    static final int BYTES_PER_SLOT = 9 * Long.BYTES;
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final long resolutionMs;
+    private final long windowMs;
+    private final int slots;
+
+    private final long[] slotTime;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private final long[] tradeCount;
+    private final long[] firstTradeId;
+    private final long[] lastTradeId;
+
+    private long startedFrom = UNSET;
+    private long latestSlot = UNSET;
+    private long maxTradeId = -1;
+
+    HotCandleWindow(long resolutionMs, long windowMs) {
+        this.resolutionMs = resolutionMs;
+        this.slots = (int) (windowMs / resolutionMs);
+        this.windowMs = slots * resolutionMs;
+        this.slotTime = new long[slots];
+        Arrays.fill(slotTime, UNSET);
+        this.open = new double[slots];
+        this.high = new double[slots];
+        this.low = new double[slots];
+        this.close = new double[slots];
+        this.volume = new double[slots];
+        this.tradeCount = new long[slots];
+        this.firstTradeId = new long[slots];
+        this.lastTradeId = new long[slots];
+    }
+
+    long memoryBytes() {
+        return (long) slots * BYTES_PER_SLOT;
+    }
+
+    /**
+     * Folds a trade into its slot. Trades arrive in trade id order per symbol, so an id at or
+     * below the highest seen is a redelivery and is skipped.
+     */
+    synchronized void add(TradeRecord trade) {
+        double price = trade.getPrice();
+        // Same filter as the raw candle query
+        if (price <= 0 || trade.getQuantity() == 0) return;
+        long tradeId = trade.getTradeId();
+        if (tradeId <= maxTradeId) return;
+        maxTradeId = tradeId;
+
+        long slotOpen = Math.floorDiv(trade.getTradeTime(), resolutionMs) * resolutionMs;
+        if (latestSlot != UNSET && slotOpen <= latestSlot - windowMs) return;
+        if (startedFrom == UNSET) {
+            // The DB may already hold earlier trades of this first bucket
+            startedFrom = slotOpen + resolutionMs;
+        }
+
+        int i = indexOf(slotOpen);
+        if (slotTime[i] != slotOpen) {
+            slotTime[i] = slotOpen;
+            open[i] = price;
+            high[i] = price;
+            low[i] = price;
+            close[i] = price;
+            volume[i] = 0;
+            tradeCount[i] = 0;
+            firstTradeId[i] = tradeId;
+            lastTradeId[i] = tradeId;
+        } else {
+            if (tradeId < firstTradeId[i]) {
+                open[i] = price;
+                firstTradeId[i] = tradeId;
+            }
+            if (tradeId > lastTradeId[i]) {
+                close[i] = price;
+                lastTradeId[i] = tradeId;
+            }
+            high[i] = Math.max(high[i], price);
+            low[i] = Math.min(low[i], price);
+        }
+        volume[i] += trade.getQuantity();
+        tradeCount[i]++;
+        if (slotOpen > latestSlot) {
+            latestSlot = slotOpen;
+        }
+    }
+
+    /**
+     * Earliest time from which the window holds every trade, or {@link Long#MAX_VALUE} while empty.
+     */
+    synchronized long coveredFrom() {
+        if (latestSlot == UNSET) return Long.MAX_VALUE;
+        return Math.max(startedFrom, latestSlot - windowMs + resolutionMs);
+    }
+
+    /**
+     * Aggregates slots with open time in [fromEpoch, toEpoch] into {@code tickMs} candles;
+     * {@code tickMs} must be a multiple of the resolution.
+     */
+    synchronized CandleSeries aggregate(long fromEpoch, long toEpoch, long tickMs) {
+        long first = Math.max(Math.floorDiv(fromEpoch + resolutionMs - 1, resolutionMs) * resolutionMs, coveredFrom());
+        long last = Math.min(Math.floorDiv(toEpoch, resolutionMs) * resolutionMs, latestSlot);
+        CandleSeries series = new CandleSeries(tickMs, (int) Math.max(0, Math.min((last - first) / tickMs + 1, 1024)));
+
+        long bucket = UNSET;
+        double o = 0, h = 0, l = 0, c = 0, v = 0;
+        long n = 0;
+        for (long slotOpen = first; slotOpen <= last; slotOpen += resolutionMs) {
+            int i = indexOf(slotOpen);
+            if (slotTime[i] != slotOpen) continue;
+
+            long slotBucket = Math.floorDiv(slotOpen, tickMs) * tickMs;
+            if (slotBucket != bucket) {
+                if (bucket != UNSET) series.add(bucket, o, h, l, c, v, n);
+                bucket = slotBucket;
+                o = open[i];
+                h = high[i];
+                l = low[i];
+                v = 0;
+                n = 0;
+            }
+            h = Math.max(h, high[i]);
+            l = Math.min(l, low[i]);
+            c = close[i];
+            v += volume[i];
+            n += tradeCount[i];
+        }
+        if (bucket != UNSET) series.add(bucket, o, h, l, c, v, n);
+        return series;
+    }
+
+    private int indexOf(long slotOpen) {
+        return (int) Math.floorMod(slotOpen / resolutionMs, (long) slots);
+    }
+}
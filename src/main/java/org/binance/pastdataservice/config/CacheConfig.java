@@ -1,25 +1,33 @@
 package org.binance.pastdataservice.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.binance.pastdataservice.candle.CandleSegmentKey;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 @Configuration
-@EnableCaching
 public class CacheConfig {
     @Bean
-    public CacheManager cacheManager() {
-        CaffeineCacheManager manager = new CaffeineCacheManager("candles");
-        manager.setCaffeine(Caffeine.newBuilder()
-                .maximumSize(500)
-                .expireAfterWrite(10, TimeUnit.MINUTES)
+    public Cache<CandleSegmentKey, CandleSeries> candleSegments(
+            MeterRegistry meterRegistry,
+            @Value("${candle-cache.max-size:64MB}") DataSize maxSize,
+            @Value("${candle-cache.expire-after-write:1h}") Duration expireAfterWrite
+    ) {
+        Cache<CandleSegmentKey, CandleSeries> cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((CandleSegmentKey key, CandleSeries segment) -> (int) Math.min(segment.memoryBytes(), Integer.MAX_VALUE))
+                // Closed segments only change if trades arrive late, so this is a safety net
+                .expireAfterWrite(expireAfterWrite)
                 .recordStats()
-        );
-        return manager;
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "candles");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package org.binance.pastdataservice.config;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Separate connection pools for ingest writes ({@code spring.datasource}) and queries
+ * ({@code query-datasource}), so slow aggregations cannot starve batch inserts. The application
+ * data source hands out a connection of the query pool inside read-only transactions and of the
+ * write pool otherwise; {@code query-datasource.url} may point at a read replica.
+ */
+@Configuration
+@Slf4j
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties writeDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(@Qualifier("writeDataSourceProperties") DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("write");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("query-datasource")
+    public DataSourceProperties queryDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("query-datasource.hikari")
+    public HikariDataSource queryDataSource(@Qualifier("queryDataSourceProperties") DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("query");
+        return dataSource;
+    }
+
+    // The physical connection is only taken once the transaction's read-only flag is known
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("writeDataSource") HikariDataSource writeDataSource,
+            @Qualifier("queryDataSource") HikariDataSource queryDataSource
+    ) {
+        log.info("Routing read-only transactions to {}", queryDataSource.getJdbcUrl());
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(writeDataSource);
+        dataSource.setReadOnlyDataSource(queryDataSource);
+        return dataSource;
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -26,13 +27,16 @@ public class RabbitMQConfig {
         return new FanoutExchange(exchange, true, false);
     }
 
+    // Sharded ingest consumes shard queues instead (RabbitShardConfig); an unconsumed queue would only fill up
     @Bean
+    @ConditionalOnExpression("'${ingest.source:amqp}' != 'sharded'")
     public Queue queue() {
         log.info("Creating Queue: {}", queue);
         return new Queue(queue, true, false, false);
     }
 
     @Bean
+    @ConditionalOnExpression("'${ingest.source:amqp}' != 'sharded'")
     public Binding binding(Queue queue, FanoutExchange fanoutExchange) {
         log.info("Binding Queue '{}' to FanoutExchange '{}'", queue.getName(), exchange);
         return BindingBuilder.bind(queue).to(fanoutExchange);
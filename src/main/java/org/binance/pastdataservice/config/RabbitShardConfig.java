@@ -0,0 +1,152 @@
+package org.binance.pastdataservice.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.binance.pastdataservice.DataListener;
+import org.binance.pastdataservice.ingest.ShardAssignment;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sharded ingest ({@code ingest.source=sharded}): the trade exchange feeds a consistent-hash
+ * exchange that spreads symbols over {@code ingest.sharding.shards} queues, so all trades of a
+ * symbol land in one queue. Each instance consumes the shards in {@code ingest.sharding.owned}
+ * with one consumer per shard. The queues are single active consumer, so a shard owned by two
+ * instances is still consumed in order by one of them while the other stands by.
+ * <p>
+ * The broker needs the {@code rabbitmq_consistent_hash_exchange} plugin, and publishers must put
+ * the symbol in the {@code ingest.sharding.hash-header} header, or in the routing key with
+ * {@code ingest.sharding.hash-routing-key=true}. Startup fails with neither, since the trade
+ * exchange is usually published to with an empty routing key, which sends every trade to one shard.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "ingest.source", havingValue = "sharded")
+public class RabbitShardConfig implements RabbitListenerConfigurer {
+
+    @Value("${rabbit-mq.default.exchange}")
+    private String exchange;
+
+    @Value("${rabbit-mq.consumer.queue}")
+    private String queue;
+
+    @Value("${ingest.sharding.exchange}")
+    private String shardExchange;
+
+    @Value("${ingest.sharding.shards:8}")
+    private int shards;
+
+    @Value("${ingest.sharding.owned:all}")
+    private String owned;
+
+    @Value("${ingest.sharding.hash-header:}")
+    private String hashHeader;
+
+    @Value("${ingest.sharding.hash-routing-key:false}")
+    private boolean hashRoutingKey;
+
+    private final DataListener dataListener;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<RabbitListenerEndpointRegistry> listenerRegistry;
+
+    public RabbitShardConfig(
+            DataListener dataListener,
+            MeterRegistry meterRegistry,
+            ObjectProvider<RabbitListenerEndpointRegistry> listenerRegistry
+    ) {
+        this.dataListener = dataListener;
+        this.meterRegistry = meterRegistry;
+        this.listenerRegistry = listenerRegistry;
+    }
+
+    @Bean
+    public ShardAssignment shardAssignment() {
+        return ShardAssignment.parse(shards, owned);
+    }
+
+    // Every instance declares all shards, whichever it owns
+    @Bean
+    public Declarables shardTopology() {
+        if (hashHeader.isBlank() && !hashRoutingKey) {
+            throw new IllegalStateException("ingest.sharding.hash-header must name the message header holding the "
+                    + "symbol (or set ingest.sharding.hash-routing-key=true if publishers route by symbol)");
+        }
+        Map<String, Object> arguments = hashHeader.isBlank() ? Map.of() : Map.of("hash-header", hashHeader);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(new CustomExchange(shardExchange, "x-consistent-hash", true, false, arguments));
+        declarables.add(new Binding(shardExchange, Binding.DestinationType.EXCHANGE, exchange, "", null));
+        for (int shard = 0; shard < shards; shard++) {
+            declarables.add(new Queue(shardQueue(shard), true, false, false, Map.of("x-single-active-consumer", true)));
+            // The binding key is the shard's weight on the hash ring
+            declarables.add(new Binding(shardQueue(shard), Binding.DestinationType.QUEUE, shardExchange, "1", null));
+        }
+        log.info("Declaring consistent-hash exchange '{}' over {} shard queues, bound to '{}'",
+                shardExchange, shards, exchange);
+        return new Declarables(declarables);
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        ShardAssignment assignment = shardAssignment();
+        Gauge.builder("pastdata.ingest.shards.owned", assignment, a -> a.owned().size())
+                .description("Shard queues this instance consumes")
+                .register(meterRegistry);
+        for (int shard : assignment.owned()) {
+            String id = ShardAssignment.listenerId(shard);
+            Counter received = Counter.builder("pastdata.ingest.shard.received")
+                    .description("Trade messages received per owned shard")
+                    .tag("shard", String.valueOf(shard))
+                    .register(meterRegistry);
+            Gauge.builder("pastdata.ingest.shard.consumers", this, config -> config.activeConsumers(id))
+                    .description("Running consumers per owned shard, including one standing by for another instance")
+                    .tag("shard", String.valueOf(shard))
+                    .register(meterRegistry);
+
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId(id);
+            endpoint.setQueueNames(shardQueue(shard));
+            endpoint.setAckMode(AcknowledgeMode.MANUAL);
+            // One consumer per shard keeps the queue order
+            endpoint.setConcurrency("1");
+            endpoint.setMessageListener((ChannelAwareMessageListener) (message, channel) -> {
+                received.increment();
+                dataListener.storeData(message, channel);
+            });
+            registrar.registerEndpoint(endpoint);
+        }
+        log.info("Consuming shards {} of {}", assignment.owned(), shards);
+    }
+
+    int activeConsumers(String listenerId) {
+        RabbitListenerEndpointRegistry registry = listenerRegistry.getIfAvailable();
+        MessageListenerContainer container = registry != null ? registry.getListenerContainer(listenerId) : null;
+        return container instanceof SimpleMessageListenerContainer simple ? simple.getActiveConsumerCount() : 0;
+    }
+
+    private String shardQueue(int shard) {
+        return queue + ".shard-" + shard;
+    }
+}
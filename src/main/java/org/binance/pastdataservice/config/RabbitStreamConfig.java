@@ -0,0 +1,117 @@
+package org.binance.pastdataservice.config;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.rabbitmq.stream.Environment;
+import com.rabbitmq.stream.OffsetSpecification;
+import org.binance.pastdataservice.DataListener;
+import org.binance.pastdataservice.ingest.IngestPipeline;
+import org.binance.pastdataservice.ingest.StreamTradeListener;
+import org.springframework.amqp.core.Binding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.rabbit.stream.config.SuperStream;
+import org.springframework.rabbit.stream.listener.StreamListenerContainer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Optional ingest from a RabbitMQ super stream ({@code ingest.source=stream}) instead of the
+ * classic queue. Offsets are tracked manually per consumer name; to rebuild or backfill, start
+ * with a new {@code ingest.stream.consumer-name} and an {@code ingest.stream.offset} of
+ * {@code first}, {@code offset:<n>} or {@code timestamp:<ISO-8601 instant>}.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "ingest.source", havingValue = "stream")
+public class RabbitStreamConfig {
+
+    @Value("${ingest.stream.name}")
+    private String superStream;
+
+    @Value("${ingest.stream.partitions:1}")
+    private int partitions;
+
+    @Value("${ingest.stream.consumer-name}")
+    private String consumerName;
+
+    @Value("${ingest.stream.concurrency:1}")
+    private int concurrency;
+
+    @Value("${ingest.stream.offset:next}")
+    private String offset;
+
+    @Value("${ingest.stream.initial-credits:10}")
+    private int initialCredits;
+
+    @Value("${rabbit-mq.default.exchange}")
+    private String exchange;
+
+    @Bean
+    public SuperStream tradeSuperStream() {
+        log.info("Declaring super stream '{}' with {} partitions", superStream, partitions);
+        return new SuperStream(superStream, partitions);
+    }
+
+    // With a single partition, publishers to the fanout exchange feed the stream unchanged
+    @Bean
+    @ConditionalOnProperty(name = "ingest.stream.partitions", havingValue = "1", matchIfMissing = true)
+    public Binding superStreamBinding() {
+        String partition = superStream + "-0";
+        log.info("Binding stream partition '{}' to FanoutExchange '{}'", partition, exchange);
+        return new Binding(partition, Binding.DestinationType.QUEUE, exchange, "", null);
+    }
+
+    // Restarts the container after a failed batch; shut down with the context
+    @Bean
+    public ExecutorService streamRewindExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stream-rewind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public StreamListenerContainer tradeStreamListenerContainer(
+            Environment rabbitStreamEnvironment,
+            IngestPipeline ingestPipeline,
+            DataListener dataListener,
+            ExecutorService streamRewindExecutor
+    ) {
+        StreamListenerContainer container = new StreamListenerContainer(rabbitStreamEnvironment);
+        container.superStream(superStream, consumerName, concurrency);
+        container.setConsumerCustomizer((id, builder) -> builder
+                .offset(parseOffset(offset))
+                .manualTrackingStrategy().builder()
+                // Credits are granted per chunk, so each credit delivers a whole batch of messages
+                .flow().initialCredits(initialCredits).builder());
+        container.setupMessageListener(new StreamTradeListener(ingestPipeline, dataListener,
+                () -> {
+                    container.stop();
+                    container.start();
+                }, streamRewindExecutor));
+        log.info("Consuming super stream '{}' as '{}' from {} (stored offsets take precedence)",
+                superStream, consumerName, offset);
+        return container;
+    }
+
+    private static OffsetSpecification parseOffset(String spec) {
+        if (spec.startsWith("offset:")) {
+            return OffsetSpecification.offset(Long.parseLong(spec.substring("offset:".length())));
+        }
+        if (spec.startsWith("timestamp:")) {
+            return OffsetSpecification.timestamp(Instant.parse(spec.substring("timestamp:".length())).toEpochMilli());
+        }
+        return switch (spec) {
+            case "first" -> OffsetSpecification.first();
+            case "last" -> OffsetSpecification.last();
+            case "next" -> OffsetSpecification.next();
+            default -> throw new IllegalArgumentException("Invalid ingest.stream.offset: " + spec);
+        };
+    }
+}
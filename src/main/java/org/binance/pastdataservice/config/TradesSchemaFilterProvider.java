@@ -0,0 +1,56 @@
+package org.binance.pastdataservice.config;
+
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.mapping.Table;
+import org.hibernate.tool.schema.spi.SchemaFilter;
+import org.hibernate.tool.schema.spi.SchemaFilterProvider;
+
+/**
+ * Keeps Hibernate's schema tooling away from the partitioned {@code trades} table, whose DDL
+ * is owned by {@link org.binance.pastdataservice.service.TradePartitionManager}.
+ */
+public class TradesSchemaFilterProvider implements SchemaFilterProvider {
+
+    private static final SchemaFilter EXCLUDE_TRADES = new SchemaFilter() {
+        @Override
+        public boolean includeNamespace(Namespace namespace) {
+            return true;
+        }
+
+        @Override
+        public boolean includeTable(Table table) {
+            return !"trades".equalsIgnoreCase(table.getName());
+        }
+
+        @Override
+        public boolean includeSequence(Sequence sequence) {
+            return true;
+        }
+    };
+
+    @Override
+    public SchemaFilter getCreateFilter() {
+        return EXCLUDE_TRADES;
+    }
+
+    @Override
+    public SchemaFilter getDropFilter() {
+        return EXCLUDE_TRADES;
+    }
+
+    @Override
+    public SchemaFilter getTruncatorFilter() {
+        return EXCLUDE_TRADES;
+    }
+
+    @Override
+    public SchemaFilter getMigrateFilter() {
+        return EXCLUDE_TRADES;
+    }
+
+    @Override
+    public SchemaFilter getValidateFilter() {
+        return EXCLUDE_TRADES;
+    }
+}
@@ -0,0 +1,99 @@
+package org.binance.pastdataservice.controllers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.binance.pastdataservice.candle.CandleSeries;
+
+/**
+ * Columnar binary candle encoding, big-endian:
+ * <pre>
+ * magic       'P' 'D' 'C' 0x01
+ * tickMs      int64
+ * count       int32
+ * openTime    int64 first open time, then count-1 varints of (gap / tickMs)
+ * open        count x float64, then high, low, close and volume likewise
+ * tradeCount  count varints
+ * </pre>
+ * Open times are tick aligned, so a gap costs a single byte for all but very sparse series.
+ */
+public final class CandleBinaryEncoder {
+
+    public static final String MEDIA_TYPE = "application/vnd.pastdata.candles";
+
+    private static final byte[] MAGIC = {'P', 'D', 'C', 1};
+
+    private CandleBinaryEncoder() {
+    }
+
+    public static void encode(CandleSeries candles, OutputStream target) throws IOException {
+        DataOutputStream out = new DataOutputStream(target);
+        int count = candles.size();
+        long tickMs = candles.getTickMs();
+        out.write(MAGIC);
+        out.writeLong(tickMs);
+        out.writeInt(count);
+        if (count > 0) {
+            out.writeLong(candles.getOpenTime(0));
+            for (int i = 1; i < count; i++) {
+                writeVarLong(out, (candles.getOpenTime(i) - candles.getOpenTime(i - 1)) / tickMs);
+            }
+        }
+        for (int i = 0; i < count; i++) out.writeDouble(candles.getOpen(i));
+        for (int i = 0; i < count; i++) out.writeDouble(candles.getHigh(i));
+        for (int i = 0; i < count; i++) out.writeDouble(candles.getLow(i));
+        for (int i = 0; i < count; i++) out.writeDouble(candles.getClose(i));
+        for (int i = 0; i < count; i++) out.writeDouble(candles.getVolume(i));
+        for (int i = 0; i < count; i++) writeVarLong(out, candles.getTradeCount(i));
+        out.flush();
+    }
+
+    public static CandleSeries decode(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(source);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) throw new IOException("Not a binary candle payload");
+        }
+        long tickMs = in.readLong();
+        int count = in.readInt();
+
+        long[] openTime = new long[count];
+        if (count > 0) {
+            openTime[0] = in.readLong();
+            for (int i = 1; i < count; i++) {
+                openTime[i] = openTime[i - 1] + readVarLong(in) * tickMs;
+            }
+        }
+        double[][] values = new double[5][count];
+        for (double[] column : values) {
+            for (int i = 0; i < count; i++) column[i] = in.readDouble();
+        }
+        CandleSeries candles = new CandleSeries(tickMs, count);
+        for (int i = 0; i < count; i++) {
+            candles.add(openTime[i], values[0][i], values[1][i], values[2][i], values[3][i], values[4][i], readVarLong(in));
+        }
+        return candles;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,42 @@
+package org.binance.pastdataservice.controllers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.binance.pastdataservice.service.TradeService;
+
+/**
+ * Opaque continuation token of a paged candle stream: the rest of the requested range, starting
+ * at the open time after the last candle sent.
+ */
+record CandleCursor(String symbol, long tickMs, long fromEpoch, long toEpoch) {
+
+    private static final String VERSION = "c1";
+
+    String encode() {
+        String plain = String.join(":", VERSION, symbol, Long.toString(tickMs), Long.toString(fromEpoch),
+                Long.toString(toEpoch));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static CandleCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 5 || !VERSION.equals(parts[0])) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            CandleCursor cursor = new CandleCursor(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                    Long.parseLong(parts[4]));
+            // Only ranges a first page could have produced, so a forged token cannot ask for any other
+            if (!TradeService.isTickSize(cursor.tickMs()) || cursor.fromEpoch() > cursor.toEpoch()) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            return cursor;
+        } catch (InvalidCursorException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            throw new InvalidCursorException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.binance.pastdataservice.controllers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.service.TradeService;
+
+/**
+ * Writes candles as newline-delimited JSON objects with the fields of {@code CandleDto}, straight
+ * from the columns and flushed per chunk. A paged stream ends with a {@code {"nextCursor":...}} line.
+ */
+class CandleNdjsonWriter implements TradeService.CandleChunkWriter {
+
+    private final JsonGenerator generator;
+    private final OutputStream out;
+
+    CandleNdjsonWriter(JsonFactory factory, OutputStream out) throws IOException {
+        this.out = out;
+        this.generator = factory.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void write(CandleSeries candles, int count) throws IOException {
+        long tickMs = candles.getTickMs();
+        for (int i = 0; i < count; i++) {
+            generator.writeStartObject();
+            generator.writeNumberField("openTime", candles.getOpenTime(i));
+            generator.writeNumberField("closeTime", candles.getOpenTime(i) + tickMs - 1);
+            generator.writeNumberField("open", candles.getOpen(i));
+            generator.writeNumberField("high", candles.getHigh(i));
+            generator.writeNumberField("low", candles.getLow(i));
+            generator.writeNumberField("close", candles.getClose(i));
+            generator.writeNumberField("volume", candles.getVolume(i));
+            generator.writeNumberField("tradeCount", candles.getTradeCount(i));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+        out.flush();
+    }
+
+    void finish(String nextCursor) throws IOException {
+        if (nextCursor != null) {
+            generator.writeStartObject();
+            generator.writeStringField("nextCursor", nextCursor);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.close();
+        out.flush();
+    }
+}
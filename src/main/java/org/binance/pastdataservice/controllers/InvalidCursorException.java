@@ -0,0 +1,19 @@
+package org.binance.pastdataservice.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A continuation token that this service did not issue, e.g. tampered with or truncated.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+class InvalidCursorException extends IllegalArgumentException {
+
+    InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    InvalidCursorException(String message) {
+        super(message);
+    }
+}
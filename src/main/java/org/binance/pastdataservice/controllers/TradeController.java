@@ -1,27 +1,188 @@
 package org.binance.pastdataservice.controllers;
 
-
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.dto.response.CandleBatchDto;
 import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.binance.pastdataservice.service.CandleBatchService;
+import org.binance.pastdataservice.service.LiveCandleService;
 import org.binance.pastdataservice.service.TradeService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import jakarta.validation.constraints.*;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/trades")
-@RequiredArgsConstructor
 @Validated
 public class TradeController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    static final String TICK_HEADER = "X-Candle-Tick";
+
     private final TradeService tradeService;
+    private final CandleBatchService candleBatchService;
+    private final LiveCandleService liveCandleService;
+    private final ObjectMapper objectMapper;
+    private final Timer serializationTimer;
+
+    @Value("${candles.stream.max-page-rows:100000}")
+    private int maxPageRows;
+
+    @Value("${trades.tape.max-page-rows:1000000}")
+    private int maxTapeRows;
+
+    @Value("${candles.auto.max-points:1000}")
+    private int autoMaxPoints;
 
+    @Value("${candles.live.history-candles:500}")
+    private int liveHistoryCandles;
+
+    public TradeController(
+            TradeService tradeService,
+            CandleBatchService candleBatchService,
+            LiveCandleService liveCandleService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
+    ) {
+        this.tradeService = tradeService;
+        this.candleBatchService = candleBatchService;
+        this.liveCandleService = liveCandleService;
+        this.objectMapper = objectMapper;
+        this.serializationTimer = Timer.builder("pastdata.query.stage")
+                .description("Time spent per stage of candle queries")
+                .tag("stage", "serialization")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Candles of [from, to]. With {@code maxPoints} or {@code tickSize=auto}, the tick is coarsened
+     * until the range fits in {@code maxPoints} candles ({@code candles.auto.max-points} for
+     * {@code auto}); the {@value #TICK_HEADER} header names the tick that was used.
+     */
     @GetMapping("/{symbol}")
-    public List<CandleDto> getCandles(
+    public ResponseEntity<List<CandleDto>> getCandles(
+            @PathVariable @NotBlank @Size(min = 2, max = 20) String symbol,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime from,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime to,
+
+            @RequestParam(defaultValue = "1m")
+            @Pattern(regexp = "^(auto|1ms|1s|1m|5m|15m|1h|4h|1d)$", message = "Invalid tick size")
+            String tickSize,
+
+            @RequestParam(required = false) @Positive @Max(100_000) Integer maxPoints
+    ) {
+        Range range = resolveRange(from, to);
+        if (maxPoints == null && !"auto".equals(tickSize)) {
+            return ResponseEntity.ok().header(TICK_HEADER, tickSize)
+                    .body(tradeService.findBySymbolAndFilters(symbol, range.from(), range.to(), tickSize));
+        }
+        CandleSeries candles = tradeService.findCandleSeries(symbol, range.from(), range.to(), tickSize,
+                maxPoints != null ? maxPoints : autoMaxPoints);
+        return ResponseEntity.ok().header(TICK_HEADER, TradeService.formatTick(candles.getTickMs()))
+                .body(tradeService.toDtos(candles));
+    }
+
+    /**
+     * Candles of up to 50 symbols in one response; symbols that fail are reported in
+     * {@code errors} while the others are still returned.
+     */
+    @GetMapping("/batch")
+    public CandleBatchDto getCandlesBatch(
+            @RequestParam @NotEmpty @Size(max = 50) List<@NotBlank @Size(min = 2, max = 20) String> symbols,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime from,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime to,
+
+            @RequestParam(defaultValue = "1m")
+            @Pattern(regexp = "^(1ms|1s|1m|5m|15m|1h|4h|1d)$", message = "Invalid tick size")
+            String tickSize
+    ) {
+        Range range = resolveRange(from, to);
+        return candleBatchService.findCandles(symbols, range.from(), range.to(), tickSize);
+    }
+
+    /**
+     * Same candles in the columnar {@link CandleBinaryEncoder} format, gzip compressed when the
+     * client accepts it.
+     */
+    @GetMapping(value = "/{symbol}", produces = CandleBinaryEncoder.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> getCandlesBinary(
+            @PathVariable @NotBlank @Size(min = 2, max = 20) String symbol,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime from,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime to,
+
+            @RequestParam(defaultValue = "1m")
+            @Pattern(regexp = "^(1ms|1s|1m|5m|15m|1h|4h|1d)$", message = "Invalid tick size")
+            String tickSize,
+
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        Range range = resolveRange(from, to);
+        CandleSeries candles = tradeService.findCandleSeries(symbol, range.from(), range.to(), tickSize);
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(CandleBinaryEncoder.MEDIA_TYPE))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!gzip) {
+            return response.body(out -> {
+                long started = System.nanoTime();
+                CandleBinaryEncoder.encode(candles, out);
+                serializationTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            });
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(out -> {
+            long started = System.nanoTime();
+            GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+            CandleBinaryEncoder.encode(candles, compressed);
+            compressed.finish();
+            serializationTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    /**
+     * Same candles as NDJSON, streamed as they are assembled. At most {@code limit} candles are
+     * sent per request; if more remain, the last line is {@code {"nextCursor":"..."}}, which is
+     * passed back as {@code cursor} to continue.
+     */
+    @GetMapping(value = "/{symbol}", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamCandles(
             @PathVariable @NotBlank @Size(min = 2, max = 20) String symbol,
 
             @RequestParam(required = false)
@@ -34,8 +195,159 @@ public class TradeController {
 
             @RequestParam(defaultValue = "1m")
             @Pattern(regexp = "^(1ms|1s|1m|5m|15m|1h|4h|1d)$", message = "Invalid tick size")
+            String tickSize,
+
+            @RequestParam(required = false) String cursor,
+
+            @RequestParam(required = false) @Positive Integer limit
+    ) {
+        CandleCursor page = cursor != null ? CandleCursor.decode(cursor) : firstPage(symbol, from, to, tickSize);
+        if (!page.symbol().equals(symbol)) {
+            throw new InvalidCursorException("Cursor belongs to another symbol");
+        }
+        int rows = limit == null ? maxPageRows : Math.min(limit, maxPageRows);
+
+        StreamingResponseBody body = out -> {
+            CandleNdjsonWriter writer = new CandleNdjsonWriter(objectMapper.getFactory(), out);
+            // Only the writing of each chunk counts as serialization, not the queries between them
+            TradeService.CandleChunkWriter timed = (candles, count) -> {
+                long started = System.nanoTime();
+                writer.write(candles, count);
+                serializationTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            };
+            Long next = tradeService.streamCandles(symbol, page.tickMs(), page.fromEpoch(), page.toEpoch(), rows, timed);
+            writer.finish(next == null ? null : new CandleCursor(symbol, page.tickMs(), next, page.toEpoch()).encode());
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    /**
+     * Raw trades of [from, to] as NDJSON arrays {@code [tradeTime,tradeId,price,quantity,buyerMaker]},
+     * ordered by trade time then id and paged by that keyset like the candle stream.
+     */
+    @GetMapping(value = "/{symbol}/tape", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTrades(
+            @PathVariable @NotBlank @Size(min = 2, max = 20) String symbol,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime from,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime to,
+
+            @RequestParam(required = false) String cursor,
+
+            @RequestParam(required = false) @Positive Integer limit
+    ) {
+        TradeCursor page;
+        if (cursor != null) {
+            page = TradeCursor.decode(cursor);
+        } else {
+            if (from == null) {
+                throw new IllegalArgumentException("'from' or 'cursor' is required");
+            }
+            Range range = resolveRange(from, to);
+            // Every trade id sorts after Long.MIN_VALUE, so trades at 'from' itself are included
+            page = new TradeCursor(symbol, range.fromEpoch(), Long.MIN_VALUE, range.toEpoch());
+        }
+        if (!page.symbol().equals(symbol)) {
+            throw new InvalidCursorException("Cursor belongs to another symbol");
+        }
+        int rows = limit == null ? maxTapeRows : Math.min(limit, maxTapeRows);
+
+        StreamingResponseBody body = out -> {
+            TradeTapeWriter writer = new TradeTapeWriter(objectMapper.getFactory(), out);
+            boolean more = tradeService.streamTrades(symbol, page.afterTime(), page.afterTradeId(), page.toEpoch(),
+                    rows, writer);
+            writer.finish(more
+                    ? new TradeCursor(symbol, writer.lastTradeTime(), writer.lastTradeId(), page.toEpoch()).encode()
+                    : null);
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    /**
+     * Server-sent events of a symbol's candles: one {@code history} event with the candles since
+     * {@code from} (the last {@code candles.live.history-candles} by default), then {@code candle}
+     * events with the open candle as trades arrive and a {@code close} event per finished bucket.
+     */
+    @GetMapping(value = "/{symbol}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter liveCandles(
+            @PathVariable @NotBlank @Size(min = 2, max = 20) String symbol,
+
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime from,
+
+            @RequestParam(defaultValue = "1m")
+            @Pattern(regexp = "^(1s|1m|5m|15m|1h|4h|1d)$", message = "Invalid tick size")
             String tickSize
     ) {
+        long tickMs = tradeService.parseTickSize(tickSize);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime historyFrom = from != null ? from : now.minusNanos(tickMs * liveHistoryCandles * 1_000_000);
+        if (historyFrom.isAfter(now)) {
+            throw new IllegalArgumentException("'from' must be in the past");
+        }
+        return liveCandleService.subscribe(symbol, tickMs,
+                () -> tradeService.findBySymbolAndFilters(symbol, historyFrom, now, tickSize));
+    }
+
+    private CandleCursor firstPage(String symbol, LocalDateTime from, LocalDateTime to, String tickSize) {
+        Range range = resolveRange(from, to);
+        long tickMs = tradeService.parseTickSize(tickSize);
+        // Whole buckets only, so no candle is cut off at either end
+        long fromEpoch = Math.floorDiv(range.fromEpoch(), tickMs) * tickMs;
+        long toEpoch = (Math.floorDiv(range.toEpoch(), tickMs) + 1) * tickMs - 1;
+        return new CandleCursor(symbol, tickMs, fromEpoch, toEpoch);
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header admits gzip: listed, or covered by {@code *},
+     * with a non-zero q-value.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        double gzip = -1;
+        double wildcard = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] params = element.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = Math.max(gzip, q);
+            } else if (coding.equals("*")) {
+                wildcard = q;
+            }
+        }
+        return (gzip >= 0 ? gzip : wildcard) > 0;
+    }
+
+    private record Range(LocalDateTime from, LocalDateTime to) {
+
+        long fromEpoch() {
+            return from.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+
+        long toEpoch() {
+            return to.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+    }
+
+    // Missing bounds default to the 60 days up to now
+    private static Range resolveRange(LocalDateTime from, LocalDateTime to) {
         LocalDateTime now = LocalDateTime.now();
         if (to == null) {
             to = now;
@@ -46,10 +358,6 @@ public class TradeController {
         if (from.isAfter(to)) {
             throw new IllegalArgumentException("'from' must be before 'to'");
         }
-        return tradeService.findBySymbolAndFilters(symbol, from, to, tickSize);
+        return new Range(from, to);
     }
-
-
 }
-
-
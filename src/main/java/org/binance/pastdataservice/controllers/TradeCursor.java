@@ -0,0 +1,32 @@
+package org.binance.pastdataservice.controllers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token of a paged trade tape: the keyset of the last trade sent and the end
+ * of the requested range.
+ */
+record TradeCursor(String symbol, long afterTime, long afterTradeId, long toEpoch) {
+
+    private static final String VERSION = "t1";
+
+    String encode() {
+        String plain = String.join(":", VERSION, symbol, Long.toString(afterTime), Long.toString(afterTradeId),
+                Long.toString(toEpoch));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static TradeCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 5 || !VERSION.equals(parts[0])) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            return new TradeCursor(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            throw new InvalidCursorException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.binance.pastdataservice.controllers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.store.TradeStore;
+
+/**
+ * Writes trades as newline-delimited JSON arrays {@code [tradeTime,tradeId,price,quantity,buyerMaker]},
+ * so large exports carry no repeated field names. Remembers the last trade written for the
+ * continuation cursor; a paged tape ends with a {@code {"nextCursor":...}} line.
+ */
+class TradeTapeWriter implements TradeStore.TradeSink {
+
+    private static final int FLUSH_ROWS = 4096;
+
+    private final JsonGenerator generator;
+    private final OutputStream out;
+    private int pending;
+    private long lastTradeTime;
+    private long lastTradeId;
+
+    TradeTapeWriter(JsonFactory factory, OutputStream out) throws IOException {
+        this.out = out;
+        this.generator = factory.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void accept(TradeRecord trade) throws IOException {
+        generator.writeStartArray();
+        generator.writeNumber(trade.getTradeTime());
+        generator.writeNumber(trade.getTradeId());
+        generator.writeNumber(trade.getPrice());
+        generator.writeNumber(trade.getQuantity());
+        generator.writeBoolean(trade.isBuyerMaker());
+        generator.writeEndArray();
+        generator.writeRaw('\n');
+        lastTradeTime = trade.getTradeTime();
+        lastTradeId = trade.getTradeId();
+        if (++pending == FLUSH_ROWS) {
+            generator.flush();
+            pending = 0;
+        }
+    }
+
+    long lastTradeTime() {
+        return lastTradeTime;
+    }
+
+    long lastTradeId() {
+        return lastTradeId;
+    }
+
+    void finish(String nextCursor) throws IOException {
+        if (nextCursor != null) {
+            generator.writeStartObject();
+            generator.writeStringField("nextCursor", nextCursor);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.close();
+        out.flush();
+    }
+}
@@ -1,33 +1,115 @@
 package org.binance.pastdataservice.health;
 
+import java.time.Duration;
+import java.util.List;
+
 import lombok.RequiredArgsConstructor;
 import org.binance.pastdataservice.DataListener;
+import org.binance.pastdataservice.ingest.IngestPipeline;
+import org.binance.pastdataservice.ingest.ShardAssignment;
+import org.binance.pastdataservice.ingest.TradeSpool;
+import org.binance.pastdataservice.service.TradeService;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.health.contributor.Health;
 import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.boot.health.contributor.Status;
 import org.springframework.stereotype.Component;
 
+/**
+ * Reports ingest as DEGRADED or DOWN once the newest committed trade is older than the
+ * {@code health.ingest.lag-*} thresholds or the ingest buffer is filled beyond the
+ * {@code health.ingest.buffer-*} fractions of its capacity; with the spool enabled, the same
+ * fractions apply to its disk budget, and a spool whose drainer has stopped is DOWN.
+ */
 @Component
 @RequiredArgsConstructor
 public class PastDataHealthIndicator implements HealthIndicator {
 
+    static final Status DEGRADED = new Status("DEGRADED");
+
     private final DataListener dataListener;
+    private final IngestPipeline ingestPipeline;
+    private final TradeService tradeService;
+    private final ObjectProvider<TradeSpool> spool;
+    private final ObjectProvider<ShardAssignment> shardAssignment;
+    private final ObjectProvider<RabbitListenerEndpointRegistry> listenerRegistry;
+
+    @Value("${health.ingest.lag-degraded:10s}")
+    private Duration lagDegraded;
+
+    @Value("${health.ingest.lag-down:60s}")
+    private Duration lagDown;
+
+    @Value("${health.ingest.buffer-degraded:0.8}")
+    private double bufferDegraded;
+
+    @Value("${health.ingest.buffer-down:0.98}")
+    private double bufferDown;
 
     @Override
     public Health health() {
-        int bufferSize = dataListener.getBufferSize();
+        int bufferSize = ingestPipeline.getBufferSize();
         long totalReceived = dataListener.getTotalTradesReceived().get();
-        long totalBatches = dataListener.getTotalBatchesInserted().get();
-        String lastBatch = dataListener.getLastBatchTime() != null
-                ? dataListener.getLastBatchTime().toString()
+        long totalBatches = ingestPipeline.getTotalBatchesInserted().get();
+        String lastBatch = ingestPipeline.getLastBatchTime() != null
+                ? ingestPipeline.getLastBatchTime().toString()
                 : "No batches";
+        Duration lag = tradeService.getIngestLag();
+        double bufferFill = (double) bufferSize / ingestPipeline.getBufferCapacity();
+        TradeSpool tradeSpool = spool.getIfAvailable();
+        if (tradeSpool != null) {
+            bufferFill = Math.max(bufferFill, (double) tradeSpool.getSizeBytes() / tradeSpool.getMaxBytes());
+        }
 
-        Health.Builder builder = totalReceived > 0 ? Health.up() : Health.unknown();
+        Health.Builder builder;
+        if (tradeSpool != null && !tradeSpool.isDraining()) {
+            builder = Health.down();
+        } else if (totalReceived == 0) {
+            builder = Health.unknown();
+        } else if (bufferFill >= bufferDown || (lag != null && lag.compareTo(lagDown) >= 0)) {
+            builder = Health.down();
+        } else if (bufferFill >= bufferDegraded || (lag != null && lag.compareTo(lagDegraded) >= 0)) {
+            builder = Health.status(DEGRADED);
+        } else {
+            builder = Health.up();
+        }
 
+        if (tradeSpool != null) {
+            builder.withDetail("spoolDepth", tradeSpool.getDepth())
+                    .withDetail("spoolBytes", tradeSpool.getSizeBytes())
+                    .withDetail("spoolDrainRate", Math.round(tradeSpool.getDrainRate()))
+                    .withDetail("spoolDraining", tradeSpool.isDraining())
+                    .withDetail("spoolQuarantined", tradeSpool.getQuarantined());
+        }
+        ShardAssignment shards = shardAssignment.getIfAvailable();
+        if (shards != null) {
+            builder.withDetail("shards", shards.shards())
+                    .withDetail("ownedShards", shards.owned())
+                    .withDetail("consumingShards", consumingShards(shards));
+        }
         return builder
                 .withDetail("bufferSize", bufferSize)
+                .withDetail("bufferFill", Math.round(bufferFill * 1000) / 1000.0)
+                .withDetail("ingestLagMs", lag != null ? lag.toMillis() : "No commits")
                 .withDetail("totalTradesReceived", totalReceived)
                 .withDetail("totalBatchesInserted", totalBatches)
                 .withDetail("lastBatchInsertTime", lastBatch)
                 .build();
     }
-}
\ No newline at end of file
+
+    private List<Integer> consumingShards(ShardAssignment shards) {
+        RabbitListenerEndpointRegistry registry = listenerRegistry.getIfAvailable();
+        if (registry == null) {
+            return List.of();
+        }
+        return shards.owned().stream()
+                .filter(shard -> {
+                    MessageListenerContainer container = registry.getListenerContainer(ShardAssignment.listenerId(shard));
+                    return container != null && container.isRunning();
+                })
+                .toList();
+    }
+}
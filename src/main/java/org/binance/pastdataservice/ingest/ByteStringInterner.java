@@ -0,0 +1,83 @@
+package org.binance.pastdataservice.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps short ASCII byte ranges (symbols, trade types) to canonical String instances.
+ * Lookups are lock-free and allocation-free; inserts copy the table, which is fine for
+ * the handful of distinct values a trade feed carries. Past {@code capacity} distinct
+ * values it stops interning and returns fresh Strings.
+ */
+public final class ByteStringInterner {
+
+    private final int capacity;
+    private volatile Entry[] table = new Entry[64];
+    private int size;
+
+    public ByteStringInterner(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public String intern(byte[] src, int offset, int length) {
+        int hash = hash(src, offset, length);
+        Entry[] entries = table;
+        int mask = entries.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Entry entry = entries[i];
+            if (entry == null) break;
+            if (entry.hash == hash && Arrays.equals(entry.bytes, 0, entry.bytes.length, src, offset, offset + length)) {
+                return entry.value;
+            }
+        }
+        return insert(src, offset, length, hash);
+    }
+
+    private synchronized String insert(byte[] src, int offset, int length, int hash) {
+        byte[] bytes = Arrays.copyOfRange(src, offset, offset + length);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (size >= capacity) {
+            return value;
+        }
+
+        Entry[] entries = table;
+        int mask = entries.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Entry entry = entries[i];
+            if (entry == null) break;
+            if (entry.hash == hash && Arrays.equals(entry.bytes, bytes)) {
+                return entry.value;
+            }
+        }
+
+        int newLength = (size + 1) * 2 > entries.length ? entries.length * 2 : entries.length;
+        Entry[] copy = new Entry[newLength];
+        for (Entry entry : entries) {
+            if (entry != null) place(copy, entry);
+        }
+        place(copy, new Entry(hash, bytes, value));
+        size++;
+        table = copy;
+        return value;
+    }
+
+    private static void place(Entry[] entries, Entry entry) {
+        int mask = entries.length - 1;
+        int i = entry.hash & mask;
+        while (entries[i] != null) {
+            i = (i + 1) & mask;
+        }
+        entries[i] = entry;
+    }
+
+    private static int hash(byte[] src, int offset, int length) {
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + src[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private record Entry(int hash, byte[] bytes, String value) {
+    }
+}
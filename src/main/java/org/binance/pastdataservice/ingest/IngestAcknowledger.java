@@ -0,0 +1,16 @@
+package org.binance.pastdataservice.ingest;
+
+/**
+ * Settles a consumed message once the batch holding it has been committed (or failed).
+ * The token identifies the message to the source, e.g. an AMQP delivery tag.
+ */
+public interface IngestAcknowledger {
+
+    void acknowledge(long token);
+
+    void reject(long token);
+
+    // Called once per batch after its tokens were settled
+    default void afterBatch() {
+    }
+}
@@ -0,0 +1,229 @@
+package org.binance.pastdataservice.ingest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.ingest.TradeRingBuffer.DrainResult;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.service.TradeService;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decouples broker consumption from database writes. Trades are routed by symbol to one of
+ * {@code ingest.writers} lanes, each a bounded ring drained by its own writer thread, so a
+ * symbol's trades are written in arrival order. A lane flushes when it holds
+ * {@code ingest.batch-size} trades or its oldest trade has waited {@code ingest.max-linger}.
+ * Messages are acknowledged only after the batch holding them has committed, or with
+ * {@link TradeSpool} enabled, once it is journaled on local disk; a failed batch is rejected
+ * back to its source for redelivery.
+ */
+@Component
+@Slf4j
+public class IngestPipeline {
+
+    private static final long FAILURE_BACKOFF_MS = 1000;
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 10_000;
+
+    private final TradeService tradeService;
+    private final TradeSpool spool;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final TradeRingBuffer[] lanes;
+    private final List<Thread> writerThreads = new ArrayList<>();
+
+    private final Timer batchInsertTimer;
+    private final Timer backpressureTimer;
+    private final Timer bufferStageTimer;
+    private final Counter batchFailureCounter;
+    private final Map<DrainResult, Counter> flushCounters = new EnumMap<>(DrainResult.class);
+
+    // Health tracking fields
+    @Getter
+    private volatile Instant lastBatchTime;
+    @Getter
+    private final AtomicLong totalBatchesInserted = new AtomicLong(0);
+
+    public IngestPipeline(
+            TradeService tradeService,
+            MeterRegistry meterRegistry,
+            @Value("${ingest.batch-size:500}") int batchSize,
+            @Value("${ingest.max-linger:250ms}") Duration maxLinger,
+            @Value("${ingest.writers:2}") int writers,
+            @Value("${ingest.buffer-capacity:4096}") int bufferCapacity,
+            @Nullable TradeSpool spool
+    ) {
+        if (batchSize <= 0 || writers <= 0 || bufferCapacity < batchSize) {
+            throw new IllegalArgumentException("ingest.batch-size and ingest.writers must be positive, "
+                    + "and ingest.buffer-capacity at least ingest.batch-size");
+        }
+        this.tradeService = tradeService;
+        this.spool = spool;
+        this.batchSize = batchSize;
+        this.lingerNanos = maxLinger.toNanos();
+        this.lanes = new TradeRingBuffer[writers];
+        for (int i = 0; i < writers; i++) {
+            lanes[i] = new TradeRingBuffer(bufferCapacity, batchSize);
+        }
+
+        this.batchInsertTimer = Timer.builder("pastdata.batch.insert")
+                .description("Time taken for batch DB inserts")
+                .register(meterRegistry);
+        this.backpressureTimer = Timer.builder("pastdata.ingest.backpressure")
+                .description("Time consumers spent blocked on a full ingest buffer")
+                .register(meterRegistry);
+        this.bufferStageTimer = Timer.builder("pastdata.ingest.stage")
+                .description("Time spent per stage of trade ingest")
+                .tag("stage", "buffer")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchFailureCounter = Counter.builder("pastdata.ingest.batch.failures")
+                .description("Batches that failed to commit and were rejected for redelivery")
+                .register(meterRegistry);
+        for (DrainResult reason : DrainResult.values()) {
+            flushCounters.put(reason, Counter.builder("pastdata.ingest.flush")
+                    .description("Batch flushes by trigger")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("pastdata.ingest.buffer.depth", this, IngestPipeline::getBufferSize)
+                .description("Trades buffered and waiting for a writer")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.ingest.buffer.capacity", () -> (long) bufferCapacity * writers)
+                .description("Total ingest buffer capacity")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < lanes.length; i++) {
+            TradeRingBuffer lane = lanes[i];
+            Thread thread = new Thread(() -> runWriter(lane), "ingest-writer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            writerThreads.add(thread);
+        }
+        log.info("Ingest pipeline started: {} writers, batch size {}, max linger {}ms{}",
+                lanes.length, batchSize, TimeUnit.NANOSECONDS.toMillis(lingerNanos),
+                spool != null ? ", writing through the spool" : "");
+    }
+
+    /**
+     * Buffers a trade for writing, blocking while its lane is full. The record is copied, so
+     * callers may reuse it. {@code acknowledger} is called with {@code token} once the trade
+     * is committed, or rejected if its batch fails.
+     */
+    public void publish(TradeRecord trade, IngestAcknowledger acknowledger, long token) throws InterruptedException {
+        long waited = lanes[laneOf(trade.getSymbol())].put(trade, acknowledger, token);
+        if (waited > 0) {
+            backpressureTimer.record(waited, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int getBufferCapacity() {
+        return lanes.length * lanes[0].capacity();
+    }
+
+    public int getBufferSize() {
+        int size = 0;
+        for (TradeRingBuffer lane : lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    private int laneOf(String symbol) {
+        return (symbol.hashCode() & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    private void runWriter(TradeRingBuffer lane) {
+        TradeBatch batch = new TradeBatch(batchSize);
+        while (true) {
+            DrainResult reason;
+            try {
+                reason = lane.drainTo(batch, lingerNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!batch.isEmpty()) {
+                // How long the oldest trade of the batch waited in the ring
+                bufferStageTimer.record(System.nanoTime() - batch.oldestEnqueuedAt(), TimeUnit.NANOSECONDS);
+                flushCounters.get(reason).increment();
+                write(batch);
+            }
+            if (reason == DrainResult.CLOSED) {
+                return;
+            }
+        }
+    }
+
+    private void write(TradeBatch batch) {
+        try {
+            if (spool != null) {
+                spool.append(batch.trades());
+            } else {
+                batchInsertTimer.record(() -> tradeService.insertBatch(batch.trades()));
+            }
+            lastBatchTime = Instant.now();
+            totalBatchesInserted.incrementAndGet();
+            batch.acknowledge();
+        } catch (IOException | RuntimeException e) {
+            batchFailureCounter.increment();
+            log.error("Failed to write batch of {} trades, rejecting for redelivery", batch.size(), e);
+            batch.reject();
+            sleepQuietly(FAILURE_BACKOFF_MS);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    // Runs before listener containers stop, while their channels can still carry the acks
+    @EventListener(ContextClosedEvent.class)
+    public void flushOnShutdown() {
+        log.info("Application is shutting down, flushing remaining {} trades...", getBufferSize());
+        for (TradeRingBuffer lane : lanes) {
+            lane.requestFlush();
+        }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_FLUSH_TIMEOUT_MS;
+        while (getBufferSize() > 0 && System.currentTimeMillis() < deadline) {
+            sleepQuietly(50);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (TradeRingBuffer lane : lanes) {
+            lane.close();
+        }
+        for (Thread thread : writerThreads) {
+            thread.join(SHUTDOWN_FLUSH_TIMEOUT_MS);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
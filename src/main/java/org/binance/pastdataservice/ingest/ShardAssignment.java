@@ -0,0 +1,47 @@
+package org.binance.pastdataservice.ingest;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The shard queues this instance consumes out of {@code shards}, parsed from a list such as
+ * {@code 0,2,5-7} or {@code all}.
+ */
+public record ShardAssignment(int shards, List<Integer> owned) {
+
+    public static ShardAssignment parse(int shards, String owned) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shards);
+        }
+        TreeSet<Integer> result = new TreeSet<>();
+        if (owned.isBlank() || owned.trim().equals("all")) {
+            for (int shard = 0; shard < shards; shard++) {
+                result.add(shard);
+            }
+            return new ShardAssignment(shards, List.copyOf(result));
+        }
+        for (String part : owned.split(",")) {
+            String range = part.trim();
+            int dash = range.indexOf('-');
+            int first;
+            int last;
+            try {
+                first = Integer.parseInt(dash < 0 ? range : range.substring(0, dash).trim());
+                last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid shard range '" + range + "'", e);
+            }
+            if (first < 0 || last >= shards || first > last) {
+                throw new IllegalArgumentException("Shard range '" + range + "' outside 0-" + (shards - 1));
+            }
+            for (int shard = first; shard <= last; shard++) {
+                result.add(shard);
+            }
+        }
+        return new ShardAssignment(shards, List.copyOf(result));
+    }
+
+    public static String listenerId(int shard) {
+        return "trade-shard-" + shard;
+    }
+}
@@ -0,0 +1,312 @@
+package org.binance.pastdataservice.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+/**
+ * Append-only journal of trades in fixed-size, memory-mapped segment files. Each record is
+ * {@code [payload length][crc32][payload]}; a zero length or a checksum mismatch ends a segment,
+ * so a torn tail left by a crash is simply where reading of that segment stops.
+ * <p>
+ * Any thread may append; a single reader consumes the journal in order and {@link #commit()}s
+ * what it has read, which checkpoints the read position and deletes the segments behind it.
+ * After a restart, reading resumes at the last checkpoint and appends go to a new segment.
+ */
+final class SpoolJournal implements Closeable {
+
+    private static final int HEADER = 8;
+    private static final int MAX_PAYLOAD = 5 * Long.BYTES + 4 + 2 * 255;
+    private static final String CHECKPOINT = "drain.pos";
+
+    private final Path dir;
+    private final int segmentBytes;
+
+    // Writer state, guarded by this
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private int writeOffset;
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(MAX_PAYLOAD).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 writeCrc = new CRC32();
+
+    private record Position(long segment, int offset) {
+    }
+
+    private volatile Position published;
+
+    // Reader state, confined to the reading thread
+    private volatile long oldestSegment;
+    private long readSegment;
+    private int readOffset;
+    private ByteBuffer readBuffer;
+    private long readSinceCommit;
+    private final byte[] decodeBytes = new byte[MAX_PAYLOAD];
+    private final ByteBuffer decodeBuffer = ByteBuffer.wrap(decodeBytes).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 readCrc = new CRC32();
+    private final ByteStringInterner interner = new ByteStringInterner(4096);
+
+    private final AtomicLong pending = new AtomicLong();
+
+    SpoolJournal(Path dir, int segmentBytes) throws IOException {
+        if (segmentBytes < HEADER + MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Spool segments must hold at least one record");
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    /**
+     * Appends {@code trades} and forces them to disk before returning.
+     */
+    synchronized void append(List<TradeRecord> trades) throws IOException {
+        int batchStart = writeOffset;
+        for (TradeRecord trade : trades) {
+            int length = encode(trade);
+            if (writeOffset + HEADER + length > segmentBytes) {
+                writeBuffer.force(batchStart, writeOffset - batchStart);
+                openWriteSegment(writeSegment + 1);
+                batchStart = 0;
+            }
+            writeCrc.reset();
+            writeCrc.update(encodeBuffer.array(), 0, length);
+            writeBuffer.put(writeOffset + HEADER, encodeBuffer.array(), 0, length);
+            writeBuffer.putInt(writeOffset + 4, (int) writeCrc.getValue());
+            writeBuffer.putInt(writeOffset, length);
+            writeOffset += HEADER + length;
+        }
+        writeBuffer.force(batchStart, writeOffset - batchStart);
+        pending.addAndGet(trades.size());
+        published = new Position(writeSegment, writeOffset);
+        notifyAll();
+    }
+
+    /**
+     * Waits up to {@code millis} for records the reader has not seen yet.
+     */
+    synchronized void awaitAppend(long millis) throws InterruptedException {
+        if (!hasUnread()) {
+            wait(millis);
+        }
+    }
+
+    /**
+     * Decodes up to {@code max} of the next records into {@code into}, whose elements are
+     * overwritten in place.
+     *
+     * @return number of records read
+     */
+    int read(List<TradeRecord> into, int max) throws IOException {
+        int n = 0;
+        while (n < max) {
+            Position end = published;
+            if (readSegment == end.segment() && readOffset >= end.offset()) {
+                break;
+            }
+            if (readBuffer == null) {
+                readBuffer = map(readSegment, FileChannel.MapMode.READ_ONLY);
+            }
+            int length = validRecordAt(readBuffer, readOffset);
+            if (length < 0) {
+                if (readSegment == end.segment()) {
+                    throw new IOException("Corrupt spool record in segment " + readSegment + " at " + readOffset);
+                }
+                readSegment++;
+                readOffset = 0;
+                readBuffer = null;
+                continue;
+            }
+            decode(into.get(n++));
+            readOffset += HEADER + length;
+        }
+        readSinceCommit += n;
+        return n;
+    }
+
+    /**
+     * Marks every record read so far as stored: checkpoints the read position and deletes the
+     * segments before it.
+     */
+    void commit() throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        ByteBuffer position = ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(readSegment).putInt(readOffset);
+        Files.write(tmp, position.array());
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        while (oldestSegment < readSegment) {
+            Files.deleteIfExists(segmentPath(oldestSegment));
+            oldestSegment++;
+        }
+        pending.addAndGet(-readSinceCommit);
+        readSinceCommit = 0;
+    }
+
+    /**
+     * Records appended but not yet committed by the reader.
+     */
+    long pending() {
+        return pending.get();
+    }
+
+    long sizeBytes() {
+        return (published.segment() - oldestSegment + 1) * segmentBytes;
+    }
+
+    private boolean hasUnread() {
+        Position end = published;
+        return readSegment < end.segment() || readOffset < end.offset();
+    }
+
+    private int encode(TradeRecord trade) throws IOException {
+        ByteBuffer buffer = encodeBuffer.clear();
+        buffer.putLong(trade.getTradeId())
+                .putDouble(trade.getPrice())
+                .putDouble(trade.getQuantity())
+                .putLong(trade.getEventTime())
+                .putLong(trade.getTradeTime())
+                .put((byte) (trade.isBuyerMaker() ? 1 : 0));
+        putString(buffer, trade.getSymbol());
+        putString(buffer, trade.getTradeType());
+        return buffer.position();
+    }
+
+    private static void putString(ByteBuffer buffer, String value) throws IOException {
+        if (value == null) {
+            buffer.put((byte) 0xFF);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length >= 0xFF) {
+            throw new IOException("Value too long to spool: " + value);
+        }
+        buffer.put((byte) bytes.length).put(bytes);
+    }
+
+    private void decode(TradeRecord into) {
+        ByteBuffer buffer = decodeBuffer.clear();
+        into.setTradeId(buffer.getLong());
+        into.setPrice(buffer.getDouble());
+        into.setQuantity(buffer.getDouble());
+        into.setEventTime(buffer.getLong());
+        into.setTradeTime(buffer.getLong());
+        into.setBuyerMaker(buffer.get() != 0);
+        into.setSymbol(getString(buffer));
+        into.setTradeType(getString(buffer));
+    }
+
+    private String getString(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        if (length == 0xFF) {
+            return null;
+        }
+        String value = interner.intern(decodeBytes, buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    // Payload length of the record at offset, copied into decodeBytes, or -1 if none is there
+    private int validRecordAt(ByteBuffer segment, int offset) {
+        if (offset + HEADER > segmentBytes) {
+            return -1;
+        }
+        int length = segment.getInt(offset);
+        if (length <= 0 || length > MAX_PAYLOAD || offset + HEADER + length > segmentBytes) {
+            return -1;
+        }
+        segment.get(offset + HEADER, decodeBytes, 0, length);
+        readCrc.reset();
+        readCrc.update(decodeBytes, 0, length);
+        return (int) readCrc.getValue() == segment.getInt(offset + 4) ? length : -1;
+    }
+
+    private void recover() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("\\d{20}\\.seg"))
+                    .map(name -> Long.parseLong(name.substring(0, 20)))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        if (segments.isEmpty()) {
+            openWriteSegment(0);
+            published = new Position(0, 0);
+            return;
+        }
+
+        readSegment = segments.get(0);
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint)) {
+            ByteBuffer position = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+            long segment = position.getLong();
+            if (segments.contains(segment)) {
+                readSegment = segment;
+                readOffset = position.getInt();
+            }
+        }
+        for (long segment = segments.get(0); segment < readSegment; segment++) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        oldestSegment = readSegment;
+
+        // Count what is left to drain; the reader stops at the same torn tails later
+        long last = segments.get(segments.size() - 1);
+        for (long segment = readSegment; segment <= last; segment++) {
+            ByteBuffer buffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            int offset = segment == readSegment ? readOffset : 0;
+            int length;
+            while ((length = validRecordAt(buffer, offset)) >= 0) {
+                pending.incrementAndGet();
+                offset += HEADER + length;
+            }
+        }
+        openWriteSegment(last + 1);
+        published = new Position(writeSegment, 0);
+    }
+
+    private void openWriteSegment(long segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(segment).toFile(), "rw")) {
+            file.setLength(segmentBytes);
+        }
+        writeBuffer = map(segment, FileChannel.MapMode.READ_WRITE);
+        writeSegment = segment;
+        writeOffset = 0;
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel channel = mode == FileChannel.MapMode.READ_ONLY
+                ? FileChannel.open(segmentPath(segment), StandardOpenOption.READ)
+                : FileChannel.open(segmentPath(segment), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(mode, 0, segmentBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%020d.seg", segment));
+    }
+
+    @Override
+    public synchronized void close() {
+        // Mappings are released with the buffers; everything appended is already forced
+        writeBuffer = null;
+        readBuffer = null;
+    }
+}
@@ -0,0 +1,114 @@
+package org.binance.pastdataservice.ingest;
+
+import com.rabbitmq.stream.Consumer;
+
+/**
+ * Tracks in-flight offsets of one stream consumer and stores the highest offset below which
+ * every message has been committed. Writer lanes commit out of order, so an offset is only
+ * stored once all earlier offsets of the partition are settled as well. Once {@link #fence() fenced}
+ * for a rewind, it no longer stores offsets or reports rejections.
+ */
+class StreamOffsetAcknowledger implements IngestAcknowledger {
+
+    private final Consumer consumer;
+    private final Runnable onReject;
+
+    // Pending offsets in delivery (ascending) order, as a circular array
+    private long[] offsets = new long[1024];
+    private boolean[] settled = new boolean[1024];
+    private int head;
+    private int count;
+
+    private long committed = -1;
+    private long stored = -1;
+    private volatile boolean fenced;
+
+    StreamOffsetAcknowledger(Consumer consumer, Runnable onReject) {
+        this.consumer = consumer;
+        this.onReject = onReject;
+    }
+
+    synchronized void track(long offset) {
+        if (fenced) return;
+        if (count == offsets.length) {
+            grow();
+        }
+        int tail = (head + count) % offsets.length;
+        offsets[tail] = offset;
+        settled[tail] = false;
+        count++;
+    }
+
+    @Override
+    public synchronized void acknowledge(long offset) {
+        if (fenced) return;
+        int index = indexOf(offset);
+        if (index < 0) return;
+        settled[index] = true;
+        while (count > 0 && settled[head]) {
+            committed = offsets[head];
+            head = (head + 1) % offsets.length;
+            count--;
+        }
+    }
+
+    // Streams cannot redeliver a single message; the listener rewinds to the stored offset instead
+    @Override
+    public void reject(long offset) {
+        if (fenced) return;
+        onReject.run();
+    }
+
+    @Override
+    public void afterBatch() {
+        long offset;
+        synchronized (this) {
+            if (fenced || committed <= stored) return;
+            offset = committed;
+            stored = committed;
+        }
+        consumer.store(offset);
+    }
+
+    /**
+     * Detaches the batches still holding this acknowledger from its consumer, which is about to
+     * be replaced and replay from the stored offset.
+     */
+    synchronized void fence() {
+        fenced = true;
+        count = 0;
+    }
+
+    boolean isFenced() {
+        return fenced;
+    }
+
+    private int indexOf(long offset) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = offsets[(head + mid) % offsets.length];
+            if (value < offset) {
+                low = mid + 1;
+            } else if (value > offset) {
+                high = mid - 1;
+            } else {
+                return (head + mid) % offsets.length;
+            }
+        }
+        return -1;
+    }
+
+    private void grow() {
+        long[] newOffsets = new long[offsets.length * 2];
+        boolean[] newSettled = new boolean[settled.length * 2];
+        for (int i = 0; i < count; i++) {
+            newOffsets[i] = offsets[(head + i) % offsets.length];
+            newSettled[i] = settled[(head + i) % offsets.length];
+        }
+        offsets = newOffsets;
+        settled = newSettled;
+        head = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package org.binance.pastdataservice.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.rabbitmq.stream.Consumer;
+import com.rabbitmq.stream.MessageHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.DataListener;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.rabbit.stream.listener.StreamMessageListener;
+
+/**
+ * Feeds trades from a RabbitMQ super stream into the {@link IngestPipeline}. Offsets are stored
+ * per partition once the trades up to them are committed, so a restart resumes from the last
+ * committed trade. A failed batch restarts the container on {@code rewindExecutor}, which replays
+ * from that offset; the acknowledgers of the replaced consumers are fenced first, so batches still
+ * in the lanes cannot store their offsets.
+ */
+@Slf4j
+public class StreamTradeListener implements StreamMessageListener {
+
+    private final IngestPipeline ingestPipeline;
+    private final DataListener dataListener;
+    private final Runnable rewind;
+    private final Executor rewindExecutor;
+    private final Map<Consumer, StreamOffsetAcknowledger> acknowledgers = new ConcurrentHashMap<>();
+    private final ThreadLocal<TradeRecord> decoded = ThreadLocal.withInitial(TradeRecord::new);
+    private final AtomicBoolean rewindRequested = new AtomicBoolean();
+
+    public StreamTradeListener(
+            IngestPipeline ingestPipeline,
+            DataListener dataListener,
+            Runnable rewind,
+            Executor rewindExecutor
+    ) {
+        this.ingestPipeline = ingestPipeline;
+        this.dataListener = dataListener;
+        this.rewind = rewind;
+        this.rewindExecutor = rewindExecutor;
+    }
+
+    @Override
+    public void onStreamMessage(com.rabbitmq.stream.Message message, MessageHandler.Context context) {
+        long offset = context.offset();
+        StreamOffsetAcknowledger acknowledger = acknowledgers.computeIfAbsent(context.consumer(),
+                consumer -> new StreamOffsetAcknowledger(consumer, this::rejected));
+        acknowledger.track(offset);
+
+        byte[] body = message.getBodyAsBinary();
+        TradeRecord trade = decoded.get();
+        try {
+            dataListener.decode(body, trade);
+        } catch (Exception e) {
+            log.error("Error processing data at offset {} of {}: {}", offset, context.stream(),
+                    new String(body, StandardCharsets.UTF_8), e);
+            acknowledger.acknowledge(offset);
+            return;
+        }
+
+        dataListener.recordReceived(trade);
+        try {
+            ingestPipeline.publish(trade, acknowledger, offset);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Only reached if the container is given a message converter; without an offset the trade
+    // could never be committed, so it is refused rather than silently dropped
+    @Override
+    public void onMessage(Message message) {
+        throw new AmqpRejectAndDontRequeueException("Stream listener only accepts native stream messages");
+    }
+
+    // Every trade of a failed batch is rejected, but one restart covers them all
+    private void rejected() {
+        acknowledgers.values().forEach(StreamOffsetAcknowledger::fence);
+        if (!rewindRequested.compareAndSet(false, true)) return;
+        try {
+            rewindExecutor.execute(this::rewind);
+        } catch (RejectedExecutionException e) {
+            rewindRequested.set(false);
+            log.warn("Batch from stream failed while shutting down, consumers resume from the last stored offset");
+        }
+    }
+
+    private void rewind() {
+        // A batch failing after this point requests another rewind
+        rewindRequested.set(false);
+        List<StreamOffsetAcknowledger> replaced = acknowledgers.values().stream()
+                .filter(StreamOffsetAcknowledger::isFenced)
+                .toList();
+        log.warn("Batch from stream failed, restarting consumers from the last stored offset");
+        try {
+            rewind.run();
+        } finally {
+            // Consumers are recreated on restart, and their offsets re-tracked from the stored position
+            acknowledgers.values().removeAll(replaced);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.binance.pastdataservice.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reusable batch owned by one writer thread: pre-allocated records plus the acknowledgement
+ * handle of every message that contributed a record.
+ */
+@Slf4j
+class TradeBatch {
+
+    private final List<TradeRecord> records;
+    private final IngestAcknowledger[] acknowledgers;
+    private final long[] tokens;
+    private int size;
+    private long oldestEnqueuedAt;
+
+    TradeBatch(int capacity) {
+        this.records = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            records.add(new TradeRecord());
+        }
+        this.acknowledgers = new IngestAcknowledger[capacity];
+        this.tokens = new long[capacity];
+    }
+
+    void add(TradeRecord trade, IngestAcknowledger acknowledger, long token, long enqueuedAt) {
+        if (size == 0) {
+            oldestEnqueuedAt = enqueuedAt;
+        }
+        records.get(size).copyFrom(trade);
+        acknowledgers[size] = acknowledger;
+        tokens[size] = token;
+        size++;
+    }
+
+    List<TradeRecord> trades() {
+        return records.subList(0, size);
+    }
+
+    /**
+     * {@link System#nanoTime()} at which the first trade of the batch entered the buffer.
+     */
+    long oldestEnqueuedAt() {
+        return oldestEnqueuedAt;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void acknowledge() {
+        for (int i = 0; i < size; i++) {
+            try {
+                acknowledgers[i].acknowledge(tokens[i]);
+            } catch (RuntimeException e) {
+                log.warn("Failed to acknowledge committed message {}, it may be redelivered", tokens[i], e);
+            }
+        }
+        afterBatch();
+    }
+
+    void reject() {
+        for (int i = 0; i < size; i++) {
+            try {
+                acknowledgers[i].reject(tokens[i]);
+            } catch (RuntimeException e) {
+                log.warn("Failed to reject message {}", tokens[i], e);
+            }
+        }
+        afterBatch();
+    }
+
+    private void afterBatch() {
+        for (int i = 0; i < size; i++) {
+            IngestAcknowledger acknowledger = acknowledgers[i];
+            if (isFirstOccurrence(acknowledger, i)) {
+                try {
+                    acknowledger.afterBatch();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to complete batch acknowledgement", e);
+                }
+            }
+        }
+    }
+
+    // A batch carries very few distinct sources, usually in runs, so a backwards scan is cheap
+    private boolean isFirstOccurrence(IngestAcknowledger acknowledger, int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            if (acknowledgers[i] == acknowledger) return false;
+        }
+        return true;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            acknowledgers[i] = null;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,255 @@
+package org.binance.pastdataservice.ingest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.binance.pastdataservice.model.dto.request.CreateTradeDto;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-pass byte scanner for the Binance trade payload documented on {@link CreateTradeDto}.
+ * It reads the message body in place, interns symbol and trade type, and parses price and
+ * quantity from their digits without creating intermediate Strings. Payloads outside the
+ * expected shape (escapes, nested values, exponents) fall back to Jackson.
+ */
+@Component
+public class TradeMessageDecoder {
+
+    private static final int SEEN_SYMBOL = 1;
+    private static final int SEEN_TRADE_ID = 1 << 1;
+    private static final int SEEN_PRICE = 1 << 2;
+    private static final int SEEN_QUANTITY = 1 << 3;
+    private static final int SEEN_TRADE_TIME = 1 << 4;
+    private static final int REQUIRED = SEEN_SYMBOL | SEEN_TRADE_ID | SEEN_PRICE | SEEN_QUANTITY | SEEN_TRADE_TIME;
+
+    // Doubles hold every integer up to 2^53 exactly, and 10^22 is the largest exact power of ten,
+    // so mantissa / 10^scale within these bounds is correctly rounded, same as Double.parseDouble
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1d;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10d;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final ByteStringInterner interner = new ByteStringInterner(4096);
+
+    // Scanner position, per calling thread
+    private final ThreadLocal<int[]> cursor = ThreadLocal.withInitial(() -> new int[1]);
+
+    public TradeMessageDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void decode(byte[] body, TradeRecord into) throws IOException {
+        if (!scan(body, into)) {
+            CreateTradeDto dto = objectMapper.readValue(body, CreateTradeDto.class);
+            into.setSymbol(dto.getS());
+            into.setTradeId(dto.getT());
+            into.setPrice(Double.parseDouble(dto.getP()));
+            into.setQuantity(Double.parseDouble(dto.getQ()));
+            into.setTradeType(dto.getTradeType());
+            into.setBuyerMaker(dto.isM());
+            into.setEventTime(dto.getEventTime());
+            into.setTradeTime(dto.getTradeTime());
+        }
+    }
+
+    private boolean scan(byte[] b, TradeRecord into) {
+        int[] pos = cursor.get();
+        int len = b.length;
+        int seen = 0;
+        into.setTradeType(null);
+        into.setBuyerMaker(false);
+        into.setEventTime(0);
+
+        int i = skipWhitespace(b, 0);
+        if (i >= len || b[i] != '{') return false;
+        i = skipWhitespace(b, i + 1);
+        if (i < len && b[i] == '}') return false;
+
+        while (true) {
+            if (i >= len || b[i] != '"') return false;
+            int keyStart = i + 1;
+            int keyEnd = indexOfQuote(b, keyStart);
+            if (keyEnd < 0) return false;
+            i = skipWhitespace(b, keyEnd + 1);
+            if (i >= len || b[i] != ':') return false;
+            i = skipWhitespace(b, i + 1);
+            if (i >= len) return false;
+
+            pos[0] = i;
+            byte key = keyEnd - keyStart == 1 ? b[keyStart] : 0;
+            switch (key) {
+                case 'E' -> {
+                    long v = parseLong(b, pos);
+                    if (v < 0) return false;
+                    into.setEventTime(v);
+                }
+                case 'T' -> {
+                    long v = parseLong(b, pos);
+                    if (v < 0) return false;
+                    into.setTradeTime(v);
+                    seen |= SEEN_TRADE_TIME;
+                }
+                case 't' -> {
+                    long v = parseLong(b, pos);
+                    if (v < 0) return false;
+                    into.setTradeId(v);
+                    seen |= SEEN_TRADE_ID;
+                }
+                case 's' -> {
+                    String v = parseInternedString(b, pos);
+                    if (v == null) return false;
+                    into.setSymbol(v);
+                    seen |= SEEN_SYMBOL;
+                }
+                case 'X' -> {
+                    String v = parseInternedString(b, pos);
+                    if (v == null) return false;
+                    into.setTradeType(v);
+                }
+                case 'p' -> {
+                    double v = parseQuotedDecimal(b, pos);
+                    if (Double.isNaN(v)) return false;
+                    into.setPrice(v);
+                    seen |= SEEN_PRICE;
+                }
+                case 'q' -> {
+                    double v = parseQuotedDecimal(b, pos);
+                    if (Double.isNaN(v)) return false;
+                    into.setQuantity(v);
+                    seen |= SEEN_QUANTITY;
+                }
+                case 'm' -> {
+                    if (matches(b, pos[0], "true")) {
+                        into.setBuyerMaker(true);
+                        pos[0] += 4;
+                    } else if (matches(b, pos[0], "false")) {
+                        into.setBuyerMaker(false);
+                        pos[0] += 5;
+                    } else {
+                        return false;
+                    }
+                }
+                default -> {
+                    if (!skipScalar(b, pos)) return false;
+                }
+            }
+
+            i = skipWhitespace(b, pos[0]);
+            if (i >= len) return false;
+            if (b[i] == '}') break;
+            if (b[i] != ',') return false;
+            i = skipWhitespace(b, i + 1);
+        }
+        return (seen & REQUIRED) == REQUIRED;
+    }
+
+    private String parseInternedString(byte[] b, int[] pos) {
+        int i = pos[0];
+        if (b[i] != '"') return null;
+        int end = indexOfQuote(b, i + 1);
+        if (end < 0) return null;
+        pos[0] = end + 1;
+        return interner.intern(b, i + 1, end - i - 1);
+    }
+
+    private static long parseLong(byte[] b, int[] pos) {
+        int i = pos[0];
+        int start = i;
+        long value = 0;
+        while (i < b.length && b[i] >= '0' && b[i] <= '9') {
+            if (i - start >= 18) return -1;
+            value = value * 10 + (b[i] - '0');
+            i++;
+        }
+        if (i == start) return -1;
+        pos[0] = i;
+        return value;
+    }
+
+    private static double parseQuotedDecimal(byte[] b, int[] pos) {
+        int i = pos[0];
+        if (b[i] != '"') return Double.NaN;
+        i++;
+        boolean negative = i < b.length && b[i] == '-';
+        if (negative) i++;
+
+        int start = i;
+        long mantissa = 0;
+        int scale = -1;
+        boolean exact = true;
+        for (; i < b.length; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    exact = false;
+                } else {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                if (scale >= 0) scale++;
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i >= b.length || b[i] != '"' || i == start) return Double.NaN;
+        pos[0] = i + 1;
+
+        double value;
+        if (exact && scale < POWERS_OF_TEN.length) {
+            value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        } else {
+            // Too many significant digits for the exact path
+            value = Double.parseDouble(new String(b, start, i - start, StandardCharsets.US_ASCII));
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean skipScalar(byte[] b, int[] pos) {
+        int i = pos[0];
+        if (b[i] == '"') {
+            int end = indexOfQuote(b, i + 1);
+            if (end < 0) return false;
+            pos[0] = end + 1;
+            return true;
+        }
+        while (i < b.length && b[i] != ',' && b[i] != '}' && b[i] > ' ') {
+            if (b[i] == '{' || b[i] == '[') return false;
+            i++;
+        }
+        pos[0] = i;
+        return true;
+    }
+
+    // Position of the closing quote, or -1 when the string is unterminated or uses escapes
+    private static int indexOfQuote(byte[] b, int from) {
+        for (int i = from; i < b.length; i++) {
+            if (b[i] == '"') return i;
+            if (b[i] == '\\') return -1;
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] b, int from, String literal) {
+        if (from + literal.length() > b.length) return false;
+        for (int i = 0; i < literal.length(); i++) {
+            if (b[from + i] != literal.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(byte[] b, int i) {
+        while (i < b.length && (b[i] == ' ' || b[i] == '\n' || b[i] == '\r' || b[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+}
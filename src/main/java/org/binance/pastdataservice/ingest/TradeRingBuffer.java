@@ -0,0 +1,154 @@
+package org.binance.pastdataservice.ingest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+/**
+ * Bounded ring of pre-allocated trade slots feeding a single writer thread. Producers copy
+ * into a free slot and block while the ring is full, which is what pushes back on the
+ * consumers. The writer drains up to a batch at a time, waiting at most the linger time
+ * measured from the oldest buffered trade.
+ */
+class TradeRingBuffer {
+
+    enum DrainResult { SIZE, LINGER, FLUSH, CLOSED }
+
+    private final TradeRecord[] slots;
+    private final IngestAcknowledger[] acknowledgers;
+    private final long[] tokens;
+    private final long[] enqueuedAt;
+    private final int batchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private int head;
+    private int count;
+    private boolean flushRequested;
+    private boolean closed;
+
+    TradeRingBuffer(int capacity, int batchSize) {
+        this.slots = new TradeRecord[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new TradeRecord();
+        }
+        this.acknowledgers = new IngestAcknowledger[capacity];
+        this.tokens = new long[capacity];
+        this.enqueuedAt = new long[capacity];
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Copies the trade into the ring, blocking while it is full.
+     *
+     * @return nanoseconds spent waiting for space
+     */
+    long put(TradeRecord trade, IngestAcknowledger acknowledger, long token) throws InterruptedException {
+        long waited = 0;
+        lock.lockInterruptibly();
+        try {
+            if (count == slots.length) {
+                long start = System.nanoTime();
+                while (count == slots.length) {
+                    if (closed) throw new IllegalStateException("Ingest pipeline is stopped");
+                    notFull.await(100, TimeUnit.MILLISECONDS);
+                }
+                waited = System.nanoTime() - start;
+            }
+            if (closed) throw new IllegalStateException("Ingest pipeline is stopped");
+
+            int tail = (head + count) % slots.length;
+            slots[tail].copyFrom(trade);
+            acknowledgers[tail] = acknowledger;
+            tokens[tail] = token;
+            enqueuedAt[tail] = System.nanoTime();
+            count++;
+            if (count == 1 || count == batchSize) {
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return waited;
+    }
+
+    /**
+     * Moves up to one batch into {@code batch}, waiting until the batch is full, the oldest
+     * trade has lingered for {@code lingerNanos}, a flush is requested or the ring is closed.
+     */
+    DrainResult drainTo(TradeBatch batch, long lingerNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !flushRequested && !closed) {
+                notEmpty.await();
+            }
+            if (count > 0) {
+                long deadline = enqueuedAt[head] + lingerNanos;
+                long remaining = deadline - System.nanoTime();
+                while (count < batchSize && remaining > 0 && !flushRequested && !closed) {
+                    remaining = notEmpty.awaitNanos(remaining);
+                }
+            }
+
+            int n = Math.min(count, batchSize);
+            for (int i = 0; i < n; i++) {
+                int index = (head + i) % slots.length;
+                batch.add(slots[index], acknowledgers[index], tokens[index], enqueuedAt[index]);
+                acknowledgers[index] = null;
+            }
+            head = (head + n) % slots.length;
+            count -= n;
+            if (n > 0) {
+                notFull.signalAll();
+            }
+
+            if (n == batchSize) return DrainResult.SIZE;
+            if (closed) return DrainResult.CLOSED;
+            if (flushRequested) {
+                if (count == 0) flushRequested = false;
+                return DrainResult.FLUSH;
+            }
+            return DrainResult.LINGER;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void requestFlush() {
+        lock.lock();
+        try {
+            flushRequested = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
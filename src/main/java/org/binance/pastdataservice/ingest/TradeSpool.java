@@ -0,0 +1,263 @@
+package org.binance.pastdataservice.ingest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.service.TradeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Local write-ahead spool between the ingest lanes and the trade store, enabled with
+ * {@code ingest.spool.enabled}. Batches are journaled under {@code ingest.spool.path} and
+ * acknowledged once on disk; a drainer thread writes them to the store in batches of up to
+ * {@code ingest.spool.drain-batch-size}, retrying with backoff while the store is unavailable.
+ * A batch the store keeps refusing for other reasons is split until the offending trades are
+ * isolated, and those are moved to the {@code quarantine} journal next to the spool instead of
+ * blocking the drain. Past {@code ingest.spool.max-size}, or once the drainer has died, appends
+ * fail, so batches go back to the broker as without the spool.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "ingest.spool.enabled", havingValue = "true")
+public class TradeSpool {
+
+    private static final long FAILURE_BACKOFF_MS = 1000;
+    private static final long MAX_FAILURE_BACKOFF_MS = 30_000;
+    private static final long IDLE_WAIT_MS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // Attempts before a batch failing other than transiently is split up
+    private static final int PERMANENT_FAILURE_ATTEMPTS = 3;
+
+    private final TradeService tradeService;
+    private final SpoolJournal journal;
+    private final SpoolJournal quarantine;
+    private final long maxBytes;
+    private final int drainBatchSize;
+    private volatile boolean running = true;
+    private volatile boolean drainerFailed;
+    private Thread drainer;
+
+    private final Timer appendStageTimer;
+    private final Counter drainedCounter;
+    private final Counter drainFailureCounter;
+    private final Counter quarantinedCounter;
+
+    private long rateWindowStart = System.nanoTime();
+    private long rateWindowDrained;
+    private volatile double drainRate;
+
+    public TradeSpool(
+            TradeService tradeService,
+            MeterRegistry meterRegistry,
+            @Value("${ingest.spool.path:./data/spool}") Path path,
+            @Value("${ingest.spool.segment-size:64MB}") DataSize segmentSize,
+            @Value("${ingest.spool.max-size:8GB}") DataSize maxSize,
+            @Value("${ingest.spool.drain-batch-size:5000}") int drainBatchSize
+    ) throws IOException {
+        this.tradeService = tradeService;
+        this.journal = new SpoolJournal(path, Math.toIntExact(segmentSize.toBytes()));
+        this.quarantine = new SpoolJournal(path.resolve("quarantine"), Math.toIntExact(segmentSize.toBytes()));
+        this.maxBytes = maxSize.toBytes();
+        this.drainBatchSize = drainBatchSize;
+
+        this.appendStageTimer = Timer.builder("pastdata.ingest.stage")
+                .description("Time spent per stage of trade ingest")
+                .tag("stage", "spool")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.drainedCounter = Counter.builder("pastdata.ingest.spool.drained")
+                .description("Spooled trades written to the store")
+                .register(meterRegistry);
+        this.drainFailureCounter = Counter.builder("pastdata.ingest.spool.drain.failures")
+                .description("Failed attempts to write spooled trades to the store")
+                .register(meterRegistry);
+        this.quarantinedCounter = Counter.builder("pastdata.ingest.spool.quarantined")
+                .description("Spooled trades the store refused, moved to the quarantine journal")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.ingest.spool.quarantine.depth", quarantine, SpoolJournal::pending)
+                .description("Trades held in the quarantine journal")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.ingest.spool.depth", journal, SpoolJournal::pending)
+                .description("Spooled trades not yet written to the store")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.ingest.spool.bytes", journal, SpoolJournal::sizeBytes)
+                .description("Disk space held by spool segments")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Ingest spool at {} with {} trades left to drain", path.toAbsolutePath(), journal.pending());
+        if (quarantine.pending() > 0) {
+            log.warn("Ingest spool quarantine holds {} trades the store refused", quarantine.pending());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        drainer = new Thread(this::runDrainer, "ingest-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Journals {@code trades}; once this returns they are on local disk and will reach the store.
+     */
+    public void append(List<TradeRecord> trades) throws IOException {
+        if (drainerFailed) {
+            throw new IOException("Ingest spool drainer stopped, spooled trades stay on disk until restart");
+        }
+        if (journal.sizeBytes() >= maxBytes) {
+            throw new IOException("Ingest spool is full (" + journal.pending() + " trades pending)");
+        }
+        long started = System.nanoTime();
+        journal.append(trades);
+        appendStageTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    public long getDepth() {
+        return journal.pending();
+    }
+
+    public long getSizeBytes() {
+        return journal.sizeBytes();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getQuarantined() {
+        return quarantine.pending();
+    }
+
+    /**
+     * False once the drainer has stopped on an error; appends fail from then on.
+     */
+    public boolean isDraining() {
+        return !drainerFailed;
+    }
+
+    /**
+     * Trades written to the store per second over the last complete 10 second window.
+     */
+    public double getDrainRate() {
+        return drainRate;
+    }
+
+    private void runDrainer() {
+        List<TradeRecord> records = new ArrayList<>(drainBatchSize);
+        for (int i = 0; i < drainBatchSize; i++) {
+            records.add(new TradeRecord());
+        }
+        try {
+            while (running) {
+                int n = journal.read(records, drainBatchSize);
+                if (n == 0) {
+                    updateRate(0);
+                    journal.awaitAppend(IDLE_WAIT_MS);
+                    continue;
+                }
+                if (!insert(records.subList(0, n), PERMANENT_FAILURE_ATTEMPTS)) {
+                    return;
+                }
+                journal.commit();
+                drainedCounter.increment(n);
+                updateRate(n);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.error("Ingest spool drainer stopped; spooled trades stay on disk until restart", e);
+        } finally {
+            // Nothing drains the spool any more, so it must stop taking batches
+            if (running) {
+                drainerFailed = true;
+            }
+        }
+    }
+
+    // Retries transient failures until stored, splits batches the store refuses for other reasons
+    // after that many attempts; false if shutting down first
+    private boolean insert(List<TradeRecord> trades, int attempts) throws InterruptedException, IOException {
+        long backoff = FAILURE_BACKOFF_MS;
+        int permanentFailures = 0;
+        while (running) {
+            try {
+                tradeService.insertBatch(trades);
+                return true;
+            } catch (RuntimeException e) {
+                drainFailureCounter.increment();
+                if (!isTransient(e) && ++permanentFailures >= attempts) {
+                    return isolate(trades, e);
+                }
+                log.error("Failed to write {} spooled trades, retrying in {}ms", trades.size(), backoff, e);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_FAILURE_BACKOFF_MS);
+            }
+        }
+        return false;
+    }
+
+    private boolean isolate(List<TradeRecord> trades, RuntimeException failure) throws InterruptedException, IOException {
+        if (trades.size() == 1) {
+            quarantine.append(trades);
+            quarantinedCounter.increment();
+            log.error("Moved spooled trade {} {} to quarantine", trades.get(0).getSymbol(), trades.get(0).getTradeId(),
+                    failure);
+            return true;
+        }
+        // The whole batch was refused already, so halves are split again on their first refusal
+        int half = trades.size() / 2;
+        return insert(trades.subList(0, half), 1) && insert(trades.subList(half, trades.size()), 1);
+    }
+
+    // Failures that go away by themselves, e.g. the database being down, a deadlock or a full disk
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof UncheckedIOException
+                || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException;
+    }
+
+    private void updateRate(int drained) {
+        rateWindowDrained += drained;
+        long elapsed = System.nanoTime() - rateWindowStart;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            drainRate = rateWindowDrained * 1e9 / elapsed;
+            rateWindowStart += elapsed;
+            rateWindowDrained = 0;
+        }
+    }
+
+    // Destroyed after the ingest pipeline, so its final batches are already journaled
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        drainer.join(SHUTDOWN_TIMEOUT_MS);
+        if (drainer.isAlive()) {
+            drainer.interrupt();
+        }
+        journal.close();
+        quarantine.close();
+        log.info("Ingest spool stopped with {} trades left to drain", journal.pending());
+    }
+}
@@ -33,7 +33,6 @@ public class CreateTradeDto {
 
     public Trade toEntity() {
         return new Trade(
-            null,
             this.s,
             this.t,
             Double.parseDouble(this.p),
@@ -0,0 +1,22 @@
+package org.binance.pastdataservice.model.dto.response;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Candles of several symbols; symbols that failed or timed out are listed in {@code errors}
+ * instead of {@code candles}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandleBatchDto {
+    private Map<String, List<CandleDto>> candles;
+    private Map<String, String> errors;
+}
@@ -0,0 +1,74 @@
+package org.binance.pastdataservice.model.entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pre-aggregated OHLCV bucket maintained at ingest time. First/last trade positions make
+ * partial buckets mergeable in any order.
+ */
+@Entity
+@Table(name = "candle_rollups")
+@IdClass(CandleRollup.Key.class)
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandleRollup {
+    @Id
+    @Column(length = 20)
+    private String symbol;
+
+    @Id
+    private long tickMs;
+
+    @Id
+    private long openTime;
+
+    @Column(nullable = false)
+    private double open;
+
+    @Column(nullable = false)
+    private double high;
+
+    @Column(nullable = false)
+    private double low;
+
+    @Column(nullable = false)
+    private double close;
+
+    @Column(nullable = false)
+    private double volume;
+
+    @Column(nullable = false)
+    private long tradeCount;
+
+    @Column(nullable = false)
+    private long firstTradeTime;
+
+    @Column(nullable = false)
+    private long firstTradeId;
+
+    @Column(nullable = false)
+    private long lastTradeTime;
+
+    @Column(nullable = false)
+    private long lastTradeId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String symbol;
+        private long tickMs;
+        private long openTime;
+    }
+}
@@ -0,0 +1,28 @@
+package org.binance.pastdataservice.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Rollups of a symbol are complete for trades at or after {@code coveredFrom}. It starts at the
+ * first trade rolled up live and moves back as the backfill job processes older trades.
+ */
+@Entity
+@Table(name = "candle_rollup_coverage")
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandleRollupCoverage {
+    @Id
+    @Column(length = 20)
+    private String symbol;
+
+    @Column(nullable = false)
+    private long coveredFrom;
+}
@@ -1,33 +1,30 @@
 package org.binance.pastdataservice.model.entity;
 
+import java.io.Serializable;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Index;
+import jakarta.persistence.IdClass;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "trades", indexes = {
-    @Index(name = "idx_symbol_tradetime", columnList = "symbol, tradeTime")}
-)
+// Partitioned by day; the DDL is managed by TradePartitionManager
+@Table(name = "trades")
+@IdClass(Trade.Key.class)
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Trade {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    private String id;
-
-    @Column(nullable = false)
+    @Column(length = 20)
     private String symbol;
 
-    @Column(nullable = false)
+    @Id
     private long tradeId;
 
     @Column(nullable = false)
@@ -45,7 +42,8 @@ public class Trade {
     @Column(nullable = false)
     private long eventTime;
 
-    @Column(nullable = false)
+    // Part of the key only because partitioned tables require it; a trade id fixes its time
+    @Id
     private long tradeTime;
 
     public static boolean isPriceGt0(Trade trade) {
@@ -55,4 +53,13 @@ public class Trade {
     public static boolean isQuantityNot0(Trade trade) {
         return trade.getQuantity() != 0;
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String symbol;
+        private long tradeId;
+        private long tradeTime;
+    }
 }
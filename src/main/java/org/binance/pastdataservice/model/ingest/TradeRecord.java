@@ -0,0 +1,50 @@
+package org.binance.pastdataservice.model.ingest;
+
+import org.binance.pastdataservice.model.entity.Trade;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Mutable, primitive form of a decoded trade message. Instances are meant to be reused:
+ * the decoder overwrites every field, and {@link #copyFrom(TradeRecord)} moves a record
+ * into pre-allocated storage without going through {@link Trade} or {@code CreateTradeDto}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeRecord {
+    private String symbol;
+    private long tradeId;
+    private double price;
+    private double quantity;
+    private String tradeType;
+    private boolean buyerMaker;
+    private long eventTime;
+    private long tradeTime;
+
+    public void copyFrom(TradeRecord other) {
+        this.symbol = other.symbol;
+        this.tradeId = other.tradeId;
+        this.price = other.price;
+        this.quantity = other.quantity;
+        this.tradeType = other.tradeType;
+        this.buyerMaker = other.buyerMaker;
+        this.eventTime = other.eventTime;
+        this.tradeTime = other.tradeTime;
+    }
+
+    public Trade toEntity() {
+        return new Trade(
+            this.symbol,
+            this.tradeId,
+            this.price,
+            this.quantity,
+            this.tradeType,
+            this.buyerMaker,
+            this.eventTime,
+            this.tradeTime
+        );
+    }
+}
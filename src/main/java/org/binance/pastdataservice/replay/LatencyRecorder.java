@@ -0,0 +1,37 @@
+package org.binance.pastdataservice.replay;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency distribution of a replay run in an HdrHistogram, so memory stays bounded however many
+ * samples a run records; percentiles are exact to three significant digits.
+ */
+class LatencyRecorder {
+
+    private final Histogram histogram = new Histogram(3);
+
+    synchronized void record(long nanos) {
+        histogram.recordValue(Math.max(nanos, 0));
+    }
+
+    /**
+     * Count and p50/p90/p99/p99.9/max in milliseconds.
+     */
+    synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("p50", percentile(50));
+        summary.put("p90", percentile(90));
+        summary.put("p99", percentile(99));
+        summary.put("p999", percentile(99.9));
+        summary.put("max", histogram.getMaxValue() / 1e6);
+        return summary;
+    }
+
+    private double percentile(double p) {
+        return histogram.getTotalCount() == 0 ? 0.0 : histogram.getValueAtPercentile(p) / 1e6;
+    }
+}
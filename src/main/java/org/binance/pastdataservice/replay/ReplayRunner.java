@@ -0,0 +1,250 @@
+package org.binance.pastdataservice.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.DataListener;
+import org.binance.pastdataservice.ingest.IngestAcknowledger;
+import org.binance.pastdataservice.ingest.IngestPipeline;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.service.QueryRejectedException;
+import org.binance.pastdataservice.service.TradeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Load test harness ({@code ingest.source=replay}): replays a recording of raw Binance trade
+ * messages, one JSON message per line (optionally gzipped), through the same decode, hot window
+ * and ingest pipeline path as the broker listeners, paced by trade time at {@code replay.speed}
+ * ({@code 1}, any factor, or {@code max}). While it runs, {@code replay.query-threads} threads
+ * query candles of the replayed symbols. The run ends with a JSON report at {@code replay.report}:
+ * sustained trades/sec, the time from a trade's replay arrival (its paced slot, or its publish at
+ * {@code max} speed) to its commit, and candle query latency percentiles, next to the ingest and
+ * pool settings used. Recorded trade times are in the past, so lag against them says nothing here.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "ingest.source", havingValue = "replay")
+public class ReplayRunner implements ApplicationRunner {
+
+    private static final long COMMIT_TIMEOUT_MS = 60_000;
+    private static final String[] REPORTED_SETTINGS = {
+            "ingest.writer", "ingest.batch-size", "ingest.max-linger", "ingest.writers", "ingest.buffer-capacity",
+            "storage.engine", "spring.datasource.hikari.maximum-pool-size", "query-datasource.hikari.maximum-pool-size",
+            "candle-query.max-concurrent", "hot-window.enabled"
+    };
+
+    private final DataListener dataListener;
+    private final IngestPipeline ingestPipeline;
+    private final TradeService tradeService;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final ConfigurableApplicationContext context;
+
+    private final Path file;
+    private final String speed;
+    private final int queryThreads;
+    private final Duration queryRange;
+    private final String queryTickSize;
+    private final Path report;
+    private final boolean exitOnFinish;
+
+    private final LatencyRecorder arrivalToCommit = new LatencyRecorder();
+    private final LatencyRecorder queryLatency = new LatencyRecorder();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong queriesRejected = new AtomicLong();
+    private final AtomicLong queriesFailed = new AtomicLong();
+    private final Set<String> symbols = ConcurrentHashMap.newKeySet();
+    private volatile long latestTradeTime;
+    private volatile boolean running = true;
+
+    // Tokens are the trades' replay arrival times, so the ack alone yields the time to commit
+    private final IngestAcknowledger acknowledger = new IngestAcknowledger() {
+        @Override
+        public void acknowledge(long token) {
+            arrivalToCommit.record(System.nanoTime() - token);
+            committed.incrementAndGet();
+        }
+
+        @Override
+        public void reject(long token) {
+            failed.incrementAndGet();
+        }
+    };
+
+    public ReplayRunner(
+            DataListener dataListener,
+            IngestPipeline ingestPipeline,
+            TradeService tradeService,
+            ObjectMapper objectMapper,
+            Environment environment,
+            ConfigurableApplicationContext context,
+            @Value("${replay.file}") Path file,
+            @Value("${replay.speed:max}") String speed,
+            @Value("${replay.query-threads:2}") int queryThreads,
+            @Value("${replay.query-range:1d}") Duration queryRange,
+            @Value("${replay.query-tick-size:1m}") String queryTickSize,
+            @Value("${replay.report:replay-report.json}") Path report,
+            @Value("${replay.exit-on-finish:true}") boolean exitOnFinish
+    ) {
+        this.dataListener = dataListener;
+        this.ingestPipeline = ingestPipeline;
+        this.tradeService = tradeService;
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+        this.context = context;
+        this.file = file;
+        this.speed = speed;
+        this.queryThreads = queryThreads;
+        this.queryRange = queryRange;
+        this.queryTickSize = queryTickSize;
+        this.report = report;
+        this.exitOnFinish = exitOnFinish;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        double factor = "max".equals(speed) ? 0 : Double.parseDouble(speed);
+        log.info("Replaying {} at {} speed with {} query threads", file, "max".equals(speed) ? "max" : factor + "x",
+                queryThreads);
+
+        List<Thread> queriers = new ArrayList<>();
+        for (int i = 0; i < queryThreads; i++) {
+            Thread thread = new Thread(this::runQueries, "replay-query-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            queriers.add(thread);
+        }
+
+        long started = System.nanoTime();
+        long published = 0;
+        long malformed = 0;
+        long firstTradeTime = Long.MIN_VALUE;
+        TradeRecord trade = new TradeRecord();
+        try (BufferedReader reader = open(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    dataListener.decode(line.getBytes(StandardCharsets.UTF_8), trade);
+                } catch (IOException e) {
+                    malformed++;
+                    continue;
+                }
+                long arrival = System.nanoTime();
+                if (factor > 0) {
+                    if (firstTradeTime == Long.MIN_VALUE) firstTradeTime = trade.getTradeTime();
+                    arrival = started + (long) ((trade.getTradeTime() - firstTradeTime) * 1_000_000 / factor);
+                    long wait = arrival - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+                }
+                dataListener.recordReceived(trade);
+                symbols.add(trade.getSymbol());
+                latestTradeTime = Math.max(latestTradeTime, trade.getTradeTime());
+                ingestPipeline.publish(trade, acknowledger, arrival);
+                published++;
+            }
+        }
+        long publishedNanos = System.nanoTime() - started;
+
+        long deadline = System.currentTimeMillis() + COMMIT_TIMEOUT_MS;
+        while (committed.get() + failed.get() < published && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        running = false;
+        for (Thread thread : queriers) {
+            thread.join(5_000);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("file", file.toString());
+        result.put("speed", speed);
+        result.put("finishedAt", Instant.now().toString());
+        result.put("published", published);
+        result.put("malformed", malformed);
+        result.put("committed", committed.get());
+        result.put("failed", failed.get());
+        result.put("publishSeconds", publishedNanos / 1e9);
+        result.put("elapsedSeconds", elapsedNanos / 1e9);
+        result.put("tradesPerSecond", committed.get() / (elapsedNanos / 1e9));
+        result.put("arrivalToCommitMs", arrivalToCommit.summary());
+        result.put("queryLatencyMs", queryLatency.summary());
+        result.put("queriesRejected", queriesRejected.get());
+        result.put("queriesFailed", queriesFailed.get());
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (String key : REPORTED_SETTINGS) {
+            settings.put(key, environment.getProperty(key));
+        }
+        result.put("settings", settings);
+
+        if (report.getParent() != null) Files.createDirectories(report.getParent());
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), result);
+        log.info("Replay finished: {} trades committed at {} trades/s, report written to {}", committed.get(),
+                String.format("%.0f", result.get("tradesPerSecond")), report.toAbsolutePath());
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(context, () -> failed.get() == 0 ? 0 : 1));
+        }
+    }
+
+    // Ranges end at the newest replayed trade, so they cover data that is still being written
+    private void runQueries() {
+        while (running) {
+            List<String> known = List.copyOf(symbols);
+            if (known.isEmpty()) {
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+            String symbol = known.get(ThreadLocalRandom.current().nextInt(known.size()));
+            LocalDateTime to = LocalDateTime.ofInstant(Instant.ofEpochMilli(latestTradeTime), ZoneOffset.UTC);
+            long start = System.nanoTime();
+            try {
+                tradeService.findBySymbolAndFilters(symbol, to.minus(queryRange), to, queryTickSize);
+                queryLatency.record(System.nanoTime() - start);
+            } catch (QueryRejectedException e) {
+                queriesRejected.incrementAndGet();
+            } catch (RuntimeException e) {
+                queriesFailed.incrementAndGet();
+                log.warn("Replay query for {} failed", symbol, e);
+            }
+        }
+    }
+
+    private static BufferedReader open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+}
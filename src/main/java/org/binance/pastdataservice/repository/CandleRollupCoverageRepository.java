@@ -0,0 +1,20 @@
+package org.binance.pastdataservice.repository;
+
+import org.binance.pastdataservice.model.entity.CandleRollupCoverage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CandleRollupCoverageRepository extends JpaRepository<CandleRollupCoverage, String> {
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO candle_rollup_coverage (symbol, covered_from)
+            VALUES (:symbol, :coveredFrom)
+            ON CONFLICT (symbol) DO UPDATE SET covered_from = LEAST(candle_rollup_coverage.covered_from, EXCLUDED.covered_from)
+            """)
+    int extendCoverage(@Param("symbol") String symbol, @Param("coveredFrom") long coveredFrom);
+}
@@ -0,0 +1,67 @@
+package org.binance.pastdataservice.repository;
+
+import java.util.List;
+
+import org.binance.pastdataservice.model.entity.CandleRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CandleRollupRepository extends JpaRepository<CandleRollup, CandleRollup.Key> {
+
+    @Query(nativeQuery = true, value = """
+            SELECT
+                (open_time / :tickMs) * :tickMs AS open_time,
+                (ARRAY_AGG(open ORDER BY open_time ASC))[1] AS open,
+                MAX(high) AS high,
+                MIN(low) AS low,
+                (ARRAY_AGG(close ORDER BY open_time DESC))[1] AS close,
+                SUM(volume) AS volume,
+                SUM(trade_count) AS trade_count
+            FROM candle_rollups
+            WHERE symbol = :symbol
+              AND tick_ms = :baseTickMs
+              AND open_time >= :fromEpoch
+              AND open_time <= :toEpoch
+            GROUP BY 1
+            ORDER BY 1 ASC
+            """)
+    List<TradeRepository.CandleProjection> findCandlesBySymbolAndTimeRange(
+            @Param("symbol") String symbol,
+            @Param("baseTickMs") long baseTickMs,
+            @Param("fromEpoch") long fromEpoch,
+            @Param("toEpoch") long toEpoch,
+            @Param("tickMs") long tickMs);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO candle_rollups AS r " + CandleRollupWriter.COLUMNS + """
+            SELECT
+                symbol,
+                :tickMs,
+                (trade_time / :tickMs) * :tickMs,
+                (ARRAY_AGG(price ORDER BY trade_time ASC, trade_id ASC))[1],
+                MAX(price),
+                MIN(price),
+                (ARRAY_AGG(price ORDER BY trade_time DESC, trade_id DESC))[1],
+                SUM(quantity),
+                COUNT(*),
+                MIN(trade_time),
+                (ARRAY_AGG(trade_id ORDER BY trade_time ASC, trade_id ASC))[1],
+                MAX(trade_time),
+                (ARRAY_AGG(trade_id ORDER BY trade_time DESC, trade_id DESC))[1]
+            FROM trades
+            WHERE symbol = :symbol
+              AND trade_time >= :fromEpoch
+              AND trade_time < :toEpoch
+              AND price > 0
+              AND quantity != 0
+            GROUP BY symbol, 3
+            """ + CandleRollupWriter.MERGE)
+    int backfill(@Param("symbol") String symbol,
+                 @Param("tickMs") long tickMs,
+                 @Param("fromEpoch") long fromEpoch,
+                 @Param("toEpoch") long toEpoch);
+}
@@ -0,0 +1,72 @@
+package org.binance.pastdataservice.repository;
+
+import java.util.List;
+
+import org.binance.pastdataservice.model.entity.CandleRollup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class CandleRollupWriter {
+
+    static final String COLUMNS = "(symbol, tick_ms, open_time, open, high, low, close, volume, trade_count, "
+            + "first_trade_time, first_trade_id, last_trade_time, last_trade_id)";
+
+    // Merges a partial bucket into the stored one; open/close follow the earliest/latest trade
+    static final String MERGE = """
+             ON CONFLICT (symbol, tick_ms, open_time) DO UPDATE SET
+                open = CASE WHEN (EXCLUDED.first_trade_time, EXCLUDED.first_trade_id) < (r.first_trade_time, r.first_trade_id)
+                            THEN EXCLUDED.open ELSE r.open END,
+                first_trade_id = CASE WHEN (EXCLUDED.first_trade_time, EXCLUDED.first_trade_id) < (r.first_trade_time, r.first_trade_id)
+                            THEN EXCLUDED.first_trade_id ELSE r.first_trade_id END,
+                first_trade_time = LEAST(r.first_trade_time, EXCLUDED.first_trade_time),
+                close = CASE WHEN (EXCLUDED.last_trade_time, EXCLUDED.last_trade_id) > (r.last_trade_time, r.last_trade_id)
+                            THEN EXCLUDED.close ELSE r.close END,
+                last_trade_id = CASE WHEN (EXCLUDED.last_trade_time, EXCLUDED.last_trade_id) > (r.last_trade_time, r.last_trade_id)
+                            THEN EXCLUDED.last_trade_id ELSE r.last_trade_id END,
+                last_trade_time = GREATEST(r.last_trade_time, EXCLUDED.last_trade_time),
+                high = GREATEST(r.high, EXCLUDED.high),
+                low = LEAST(r.low, EXCLUDED.low),
+                volume = r.volume + EXCLUDED.volume,
+                trade_count = r.trade_count + EXCLUDED.trade_count
+            """;
+
+    private static final String UPSERT_SQL = "INSERT INTO candle_rollups AS r " + COLUMNS
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" + MERGE;
+
+    private static final String COVERAGE_SQL = "INSERT INTO candle_rollup_coverage (symbol, covered_from) "
+            + "VALUES (?, ?) ON CONFLICT (symbol) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void upsert(List<CandleRollup> rollups) {
+        if (rollups.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rollups, rollups.size(), (ps, r) -> {
+            ps.setString(1, r.getSymbol());
+            ps.setLong(2, r.getTickMs());
+            ps.setLong(3, r.getOpenTime());
+            ps.setDouble(4, r.getOpen());
+            ps.setDouble(5, r.getHigh());
+            ps.setDouble(6, r.getLow());
+            ps.setDouble(7, r.getClose());
+            ps.setDouble(8, r.getVolume());
+            ps.setLong(9, r.getTradeCount());
+            ps.setLong(10, r.getFirstTradeTime());
+            ps.setLong(11, r.getFirstTradeId());
+            ps.setLong(12, r.getLastTradeTime());
+            ps.setLong(13, r.getLastTradeId());
+        });
+    }
+
+    // Keeps the first registration, i.e. the earliest trade ever rolled up live
+    public void registerCoverage(List<CandleRollup> firstBuckets) {
+        if (firstBuckets.isEmpty()) return;
+        jdbcTemplate.batchUpdate(COVERAGE_SQL, firstBuckets, firstBuckets.size(), (ps, r) -> {
+            ps.setString(1, r.getSymbol());
+            ps.setLong(2, r.getFirstTradeTime());
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package org.binance.pastdataservice.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Streams trades with {@code COPY ... FROM STDIN (FORMAT BINARY)} into a temp staging table,
+ * created once per physical connection and emptied on commit, then moves them into
+ * {@code trades} with one {@code INSERT ... ON CONFLICT DO NOTHING}, so redelivered trades are
+ * skipped. Rows are encoded straight from the decoded records into a reusable buffer, so no
+ * entities, persistence context or per-row INSERT statements are involved.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "ingest.writer", havingValue = "copy", matchIfMissing = true)
+public class CopyTradeBatchWriter implements TradeBatchWriter {
+
+    private static final String COLUMNS = "symbol, trade_id, price, quantity, trade_type, is_buyer_maker, event_time, trade_time";
+    private static final String STAGING_SQL = "CREATE TEMP TABLE IF NOT EXISTS trades_staging "
+            + "(LIKE trades INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+    private static final String COPY_SQL = "COPY trades_staging (" + COLUMNS + ") FROM STDIN (FORMAT BINARY)";
+    private static final String INSERT_SQL = "INSERT INTO trades (" + COLUMNS + ") SELECT " + COLUMNS
+            + " FROM trades_staging ON CONFLICT DO NOTHING RETURNING symbol, trade_id";
+
+    private static final byte[] HEADER = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+            0, 0, 0, 0, // flags
+            0, 0, 0, 0  // header extension length
+    };
+    private static final short FIELD_COUNT = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final Counter bytesWrittenCounter;
+    private final Map<String, byte[]> encodedStrings = new ConcurrentHashMap<>();
+    // Physical connections holding the staging table; it lives as long as the session
+    private final Set<PGConnection> staged = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    public CopyTradeBatchWriter(DataSource dataSource, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.bytesWrittenCounter = Counter.builder("pastdata.batch.insert.bytes")
+                .description("Bytes streamed to Postgres by batch inserts")
+                .tag("writer", name())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String name() {
+        return "copy";
+    }
+
+    @Override
+    public List<TradeRecord> write(List<TradeRecord> trades) {
+        if (trades.isEmpty()) return trades;
+
+        // Bound to the surrounding transaction, so the COPY commits together with the caller
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (Statement statement = connection.createStatement()) {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            if (!staged.contains(pgConnection)) {
+                statement.execute(STAGING_SQL);
+                markStaged(pgConnection);
+            }
+            CopyIn copyIn = pgConnection.getCopyAPI().copyIn(COPY_SQL);
+            try {
+                long bytes = stream(copyIn, trades);
+                copyIn.endCopy();
+                bytesWrittenCounter.increment(bytes);
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            try (ResultSet inserted = statement.executeQuery(INSERT_SQL)) {
+                return insertedTrades(trades, inserted);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("COPY into trades failed", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    // A rolled back transaction takes the CREATE with it, so the table only counts once committed
+    private void markStaged(PGConnection pgConnection) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            staged.add(pgConnection);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    staged.add(pgConnection);
+                }
+            }
+        });
+    }
+
+    // Usually every trade is new; otherwise only trades whose key came back were inserted
+    private static List<TradeRecord> insertedTrades(List<TradeRecord> trades, ResultSet inserted) throws SQLException {
+        Map<String, Set<Long>> keys = new HashMap<>();
+        int count = 0;
+        while (inserted.next()) {
+            keys.computeIfAbsent(inserted.getString(1), symbol -> new HashSet<>()).add(inserted.getLong(2));
+            count++;
+        }
+        if (count == trades.size()) return trades;
+
+        // Removing claimed keys keeps a trade repeated within the batch from counting twice
+        List<TradeRecord> result = new ArrayList<>(count);
+        for (TradeRecord trade : trades) {
+            Set<Long> ids = keys.get(trade.getSymbol());
+            if (ids != null && ids.remove(trade.getTradeId())) {
+                result.add(trade);
+            }
+        }
+        return result;
+    }
+
+    private long stream(CopyIn copyIn, List<TradeRecord> trades) throws SQLException {
+        ByteBuffer buf = buffers.get();
+        buf.clear();
+        buf.put(HEADER);
+        long total = 0;
+
+        for (TradeRecord trade : trades) {
+            byte[] symbol = encode(trade.getSymbol());
+            byte[] tradeType = encode(trade.getTradeType());
+            int rowSize = 2 + (4 + symbol.length) + (4 + tradeType.length) + 6 * 4 + 5 * 8 + 1;
+            if (buf.remaining() < rowSize) {
+                total += flush(copyIn, buf);
+            }
+
+            buf.putShort(FIELD_COUNT);
+            buf.putInt(symbol.length).put(symbol);
+            buf.putInt(8).putLong(trade.getTradeId());
+            buf.putInt(8).putDouble(trade.getPrice());
+            buf.putInt(8).putDouble(trade.getQuantity());
+            buf.putInt(tradeType.length).put(tradeType);
+            buf.putInt(1).put((byte) (trade.isBuyerMaker() ? 1 : 0));
+            buf.putInt(8).putLong(trade.getEventTime());
+            buf.putInt(8).putLong(trade.getTradeTime());
+        }
+
+        if (buf.remaining() < 2) {
+            total += flush(copyIn, buf);
+        }
+        buf.putShort((short) -1);
+        total += flush(copyIn, buf);
+        return total;
+    }
+
+    private static int flush(CopyIn copyIn, ByteBuffer buf) throws SQLException {
+        int length = buf.position();
+        copyIn.writeToCopy(buf.array(), 0, length);
+        buf.clear();
+        return length;
+    }
+
+    private byte[] encode(String value) {
+        return encodedStrings.computeIfAbsent(value, v -> v.getBytes(StandardCharsets.UTF_8));
+    }
+}
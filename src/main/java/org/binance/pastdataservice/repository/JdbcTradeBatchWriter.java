@@ -0,0 +1,71 @@
+package org.binance.pastdataservice.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain statement writer: one {@code INSERT ... ON CONFLICT DO NOTHING} per trade, sent in JDBC
+ * batches of {@code spring.jpa.properties.hibernate.jdbc.batch_size} on the caller's connection.
+ * The per-statement update counts tell which trades were inserted, so the connection must not
+ * use {@code reWriteBatchedInserts}.
+ */
+@Component
+@ConditionalOnProperty(name = "ingest.writer", havingValue = "jdbc")
+public class JdbcTradeBatchWriter implements TradeBatchWriter {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO trades (symbol, trade_id, price, quantity, trade_type, is_buyer_maker, event_time, trade_time)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public JdbcTradeBatchWriter(
+            JdbcTemplate jdbcTemplate,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String name() {
+        return "jdbc";
+    }
+
+    @Override
+    public List<TradeRecord> write(List<TradeRecord> trades) {
+        if (trades.isEmpty()) return trades;
+
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, trades, batchSize, (statement, trade) -> {
+            statement.setString(1, trade.getSymbol());
+            statement.setLong(2, trade.getTradeId());
+            statement.setDouble(3, trade.getPrice());
+            statement.setDouble(4, trade.getQuantity());
+            statement.setString(5, trade.getTradeType());
+            statement.setBoolean(6, trade.isBuyerMaker());
+            statement.setLong(7, trade.getEventTime());
+            statement.setLong(8, trade.getTradeTime());
+        });
+
+        List<TradeRecord> inserted = new ArrayList<>(trades.size());
+        int index = 0;
+        for (int[] chunk : counts) {
+            for (int rows : chunk) {
+                if (rows > 0) {
+                    inserted.add(trades.get(index));
+                }
+                index++;
+            }
+        }
+        return inserted.size() == trades.size() ? trades : inserted;
+    }
+}
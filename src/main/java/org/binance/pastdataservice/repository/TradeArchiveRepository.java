@@ -0,0 +1,107 @@
+package org.binance.pastdataservice.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Archived trades as compressed hourly blocks per symbol in {@code trade_archive}, keyed by the
+ * hour they start in. {@code trade_archive_state} holds the watermark: every trade before it has
+ * moved from {@code trades} into the blocks. The watermark moves in the same transaction as the
+ * trades, so readers must read it in the snapshot of their own table and block reads.
+ */
+@Repository
+public class TradeArchiveRepository {
+
+    public static final long BLOCK_MS = 60 * 60 * 1000L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @FunctionalInterface
+    public interface BlockHandler {
+        /**
+         * @return whether to continue with the next block
+         */
+        boolean accept(long blockStart, byte[] data);
+    }
+
+    public TradeArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void ensureSchema() {
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS trade_archive (
+                    symbol varchar(20) NOT NULL,
+                    block_start bigint NOT NULL,
+                    trade_count int NOT NULL,
+                    data bytea NOT NULL,
+                    PRIMARY KEY (symbol, block_start))""");
+        // Already compressed, so Postgres should not try again
+        jdbcTemplate.execute("ALTER TABLE trade_archive ALTER COLUMN data SET STORAGE EXTERNAL");
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS trade_archive_state (
+                    id int PRIMARY KEY CHECK (id = 1),
+                    archived_before bigint NOT NULL)""");
+    }
+
+    /**
+     * Time before which trades are only in the archive, or null while nothing is archived. Only
+     * consistent with reads in the same REPEATABLE READ transaction; a value from an earlier
+     * snapshot can miss trades archived since.
+     */
+    public Long findArchivedBefore() {
+        List<Long> rows = jdbcTemplate.queryForList("SELECT archived_before FROM trade_archive_state", Long.class);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public void advanceArchivedBefore(long time) {
+        jdbcTemplate.update("""
+                INSERT INTO trade_archive_state (id, archived_before) VALUES (1, ?)
+                ON CONFLICT (id) DO UPDATE SET archived_before = GREATEST(trade_archive_state.archived_before, EXCLUDED.archived_before)
+                """, time);
+    }
+
+    public byte[] findBlock(String symbol, long blockStart) {
+        List<byte[]> rows = jdbcTemplate.query("SELECT data FROM trade_archive WHERE symbol = ? AND block_start = ?",
+                (rs, i) -> rs.getBytes(1), symbol, blockStart);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public void saveBlock(String symbol, long blockStart, int tradeCount, byte[] data) {
+        jdbcTemplate.update("""
+                INSERT INTO trade_archive (symbol, block_start, trade_count, data) VALUES (?, ?, ?, ?)
+                ON CONFLICT (symbol, block_start) DO UPDATE SET trade_count = EXCLUDED.trade_count, data = EXCLUDED.data
+                """, symbol, blockStart, tradeCount, data);
+    }
+
+    /**
+     * Passes the blocks that may hold trades of [fromEpoch, toEpoch] to {@code handler}, oldest first.
+     */
+    public void scanBlocks(String symbol, long fromEpoch, long toEpoch, BlockHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("""
+                    SELECT block_start, data
+                    FROM trade_archive
+                    WHERE symbol = ? AND block_start >= ? AND block_start <= ?
+                    ORDER BY block_start
+                    """, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // One block at a time, they can be large
+            ps.setFetchSize(1);
+            ps.setString(1, symbol);
+            ps.setLong(2, Math.floorDiv(fromEpoch, BLOCK_MS) * BLOCK_MS);
+            ps.setLong(3, toEpoch);
+            return ps;
+        }, (ResultSet rs) -> {
+            while (rs.next() && handler.accept(rs.getLong(1), rs.getBytes(2))) {
+                // next block
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package org.binance.pastdataservice.repository;
+
+import java.util.List;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+/**
+ * Writes a batch of trades into the {@code trades} table inside the caller's transaction,
+ * skipping trades whose natural key is already stored. Selected with {@code ingest.writer}
+ * ({@code copy} or {@code jdbc}).
+ */
+public interface TradeBatchWriter {
+
+    String name();
+
+    /**
+     * @return the trades that were actually inserted, in batch order
+     */
+    List<TradeRecord> write(List<TradeRecord> trades);
+}
@@ -9,7 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface TradeRepository extends JpaRepository<Trade, String> {
+public interface TradeRepository extends JpaRepository<Trade, Trade.Key> {
 
     @Query("SELECT t FROM Trade t WHERE t.symbol = :symbol AND t.tradeTime >= :from AND t.tradeTime <= :to ORDER BY t.tradeTime ASC")
     List<Trade> findBySymbolAndTimeRange(@Param("symbol") String symbol,
@@ -40,6 +40,25 @@ public interface TradeRepository extends JpaRepository<Trade, String> {
             @Param("toEpoch") long toEpoch,
             @Param("tickMs") long tickMs);
 
+    // Loose index scan over the (symbol, trade_time, trade_id) primary key instead of a full DISTINCT
+    @Query(nativeQuery = true, value = """
+            WITH RECURSIVE symbols AS (
+                (SELECT symbol FROM trades ORDER BY symbol LIMIT 1)
+                UNION ALL
+                SELECT (SELECT t.symbol FROM trades t WHERE t.symbol > s.symbol ORDER BY t.symbol LIMIT 1)
+                FROM symbols s
+                WHERE s.symbol IS NOT NULL
+            )
+            SELECT symbol FROM symbols WHERE symbol IS NOT NULL
+            """)
+    List<String> findDistinctSymbols();
+
+    @Query("SELECT MIN(t.tradeTime) FROM Trade t WHERE t.symbol = :symbol")
+    Long findMinTradeTime(@Param("symbol") String symbol);
+
+    @Query("SELECT MAX(t.tradeTime) FROM Trade t WHERE t.symbol = :symbol")
+    Long findMaxTradeTime(@Param("symbol") String symbol);
+
     interface CandleProjection {
         long getOpenTime();
         double getOpen();
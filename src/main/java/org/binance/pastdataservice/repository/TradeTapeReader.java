@@ -0,0 +1,76 @@
+package org.binance.pastdataservice.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.store.TradeStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads raw trades in keyset order over the {@code (symbol, trade_time, trade_id)} primary key.
+ * Rows are fetched through a server-side cursor of {@code trades.tape.fetch-size} rows and copied
+ * into one reused record, so neither entities nor a persistence context are involved. Postgres
+ * only opens the cursor inside a transaction; outside one the whole page is buffered by the driver.
+ */
+@Repository
+public class TradeTapeReader {
+
+    private static final String SCAN_SQL = """
+            SELECT trade_time, trade_id, price, quantity, is_buyer_maker
+            FROM trades
+            WHERE symbol = ?
+              AND (trade_time, trade_id) > (?, ?)
+              AND trade_time <= ?
+            ORDER BY trade_time, trade_id
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public TradeTapeReader(JdbcTemplate jdbcTemplate, @Value("${trades.tape.fetch-size:5000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    public int scan(String symbol, long afterTime, long afterTradeId, long toEpoch, int limit,
+                    TradeStore.TradeSink sink) throws IOException {
+        TradeRecord trade = new TradeRecord();
+        trade.setSymbol(symbol);
+        int[] count = {0};
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(SCAN_SQL, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setString(1, symbol);
+                ps.setLong(2, afterTime);
+                ps.setLong(3, afterTradeId);
+                ps.setLong(4, toEpoch);
+                ps.setInt(5, limit);
+                return ps;
+            }, rs -> {
+                trade.setTradeTime(rs.getLong(1));
+                trade.setTradeId(rs.getLong(2));
+                trade.setPrice(rs.getDouble(3));
+                trade.setQuantity(rs.getDouble(4));
+                trade.setBuyerMaker(rs.getBoolean(5));
+                try {
+                    sink.accept(trade);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            // The client went away; the cursor is closed with the statement
+            throw e.getCause();
+        }
+        return count[0];
+    }
+}
@@ -0,0 +1,141 @@
+package org.binance.pastdataservice.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.model.dto.response.CandleBatchDto;
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Candles of many symbols in one call. Symbols are looked up through
+ * {@link TradeService#findBySymbolAndFilters} on a shared pool of {@code candles.batch.threads}
+ * threads, which bounds the connections all batch calls together can hold; a single call runs at
+ * most {@code candles.batch.concurrency} symbols at a time, so it cannot occupy the whole pool.
+ * At most {@code candles.batch.max-queue} workers wait for a thread; a call that cannot queue any
+ * is rejected, and a call that times out withdraws the work it has not started.
+ */
+@Service
+@Slf4j
+public class CandleBatchService {
+
+    private final TradeService tradeService;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService monitored;
+    private final int concurrency;
+    private final Duration timeout;
+
+    public CandleBatchService(
+            TradeService tradeService,
+            MeterRegistry meterRegistry,
+            @Value("${candles.batch.threads:4}") int threads,
+            @Value("${candles.batch.concurrency:4}") int concurrency,
+            @Value("${candles.batch.max-queue:64}") int maxQueue,
+            @Value("${candles.batch.timeout:30s}") Duration timeout
+    ) {
+        this.tradeService = tradeService;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueue),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "candle-batch-" + threadIds.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.monitored = ExecutorServiceMetrics.monitor(meterRegistry, executor, "candle.batch");
+    }
+
+    public CandleBatchDto findCandles(List<String> symbols, LocalDateTime from, LocalDateTime to, String tickSize) {
+        Map<String, CompletableFuture<List<CandleDto>>> results = new LinkedHashMap<>();
+        for (String symbol : new LinkedHashSet<>(symbols)) {
+            results.put(symbol, new CompletableFuture<>());
+        }
+        Queue<Map.Entry<String, CompletableFuture<List<CandleDto>>>> pending =
+                new ConcurrentLinkedQueue<>(results.entrySet());
+
+        // A fixed number of workers per call drain the call's symbols
+        Runnable worker = () -> {
+            Map.Entry<String, CompletableFuture<List<CandleDto>>> next;
+            while ((next = pending.poll()) != null) {
+                try {
+                    next.getValue().complete(tradeService.findBySymbolAndFilters(next.getKey(), from, to, tickSize));
+                } catch (RuntimeException e) {
+                    log.warn("Batch candle query failed for {}", next.getKey(), e);
+                    next.getValue().completeExceptionally(e);
+                }
+            }
+        };
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(concurrency, results.size()); i++) {
+            try {
+                workers.add(monitored.submit(worker));
+            } catch (RejectedExecutionException e) {
+                // The workers already queued drain every symbol, just with less concurrency
+                if (workers.isEmpty()) {
+                    throw new QueryRejectedException("Too many batch candle queries queued");
+                }
+                break;
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(results.values().toArray(CompletableFuture[]::new))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Reported per symbol below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Symbols not started yet are abandoned, and so are workers still queued, so they
+            // stop holding queue slots; running queries finish in the background
+            pending.clear();
+            workers.forEach(future -> future.cancel(false));
+            executor.purge();
+            results.values().forEach(result -> result.cancel(false));
+        }
+
+        Map<String, List<CandleDto>> candles = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        results.forEach((symbol, result) -> {
+            if (result.isCancelled()) {
+                errors.put(symbol, "Timed out");
+                return;
+            }
+            try {
+                candles.put(symbol, result.join());
+            } catch (CompletionException e) {
+                errors.put(symbol, e.getCause() instanceof QueryRejectedException ? "Rejected" : "Query failed");
+            }
+        });
+        return CandleBatchDto.builder().candles(candles).errors(errors).build();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,124 @@
+package org.binance.pastdataservice.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Guards candle queries against the store. Identical queries in flight at the same time run once
+ * and every caller gets the result; distinct queries run at most {@code candle-query.max-concurrent}
+ * at a time, with up to {@code candle-query.max-queue} waiting at most {@code candle-query.queue-timeout}
+ * for a slot before being rejected, so bursts cannot take the connections ingest needs.
+ */
+@Component
+public class CandleQueryGate {
+
+    record Query(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+    }
+
+    private final Map<Query, CompletableFuture<CandleSeries>> inFlight = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int maxQueue;
+    private final Duration queueTimeout;
+
+    private final Counter coalescedCounter;
+    private final Counter rejectedCounter;
+
+    public CandleQueryGate(
+            MeterRegistry meterRegistry,
+            @Value("${candle-query.max-concurrent:4}") int maxConcurrent,
+            @Value("${candle-query.max-queue:32}") int maxQueue,
+            @Value("${candle-query.queue-timeout:5s}") Duration queueTimeout
+    ) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxQueue = maxQueue;
+        this.queueTimeout = queueTimeout;
+        this.coalescedCounter = Counter.builder("pastdata.candle.query.coalesced")
+                .description("Candle queries served by an identical query already in flight")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("pastdata.candle.query.rejected")
+                .description("Candle queries rejected because the admission queue was full or timed out")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.candle.query.queued", queued, AtomicInteger::get)
+                .description("Candle queries waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.candle.query.active", permits, p -> maxConcurrent - p.availablePermits())
+                .description("Candle queries running against the store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code query} for the given key, or joins the identical query already running.
+     *
+     * @throws QueryRejectedException if no slot frees up in time
+     */
+    public CandleSeries execute(String symbol, long fromEpoch, long toEpoch, long tickMs, Supplier<CandleSeries> query) {
+        Query key = new Query(symbol, fromEpoch, toEpoch, tickMs);
+        CompletableFuture<CandleSeries> mine = new CompletableFuture<>();
+        CompletableFuture<CandleSeries> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalescedCounter.increment();
+            return join(running).copy();
+        }
+
+        try {
+            acquire();
+            try {
+                mine.complete(query.get());
+            } finally {
+                permits.release();
+            }
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, mine);
+        }
+        // Callers may modify their series, so the shared result is never handed out, the leader
+        // included, and followers can copy it while the leader goes on
+        return join(mine).copy();
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) return;
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            rejectedCounter.increment();
+            throw new QueryRejectedException("Too many candle queries queued");
+        }
+        try {
+            if (!permits.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                rejectedCounter.increment();
+                throw new QueryRejectedException("Timed out waiting for a candle query slot");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryRejectedException("Interrupted waiting for a candle query slot");
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private static CandleSeries join(CompletableFuture<CandleSeries> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+}
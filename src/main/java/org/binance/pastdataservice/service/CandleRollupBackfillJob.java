@@ -0,0 +1,100 @@
+package org.binance.pastdataservice.service;
+
+import java.time.Duration;
+
+import org.binance.pastdataservice.model.entity.CandleRollupCoverage;
+import org.binance.pastdataservice.repository.CandleRollupCoverageRepository;
+import org.binance.pastdataservice.repository.CandleRollupRepository;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds rollups for trades ingested before live rollups existed. Each symbol is processed
+ * backwards from its coverage start in time chunks; a chunk's rollups and the new coverage
+ * start commit together, so the job can be stopped and restarted without double counting.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "rollups.backfill.enabled", havingValue = "true")
+public class CandleRollupBackfillJob {
+
+    private final TradeRepository tradeRepository;
+    private final CandleRollupRepository rollupRepository;
+    private final CandleRollupCoverageRepository coverageRepository;
+    private final CandleRollupService rollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final long chunkMs;
+
+    public CandleRollupBackfillJob(
+            TradeRepository tradeRepository,
+            CandleRollupRepository rollupRepository,
+            CandleRollupCoverageRepository coverageRepository,
+            CandleRollupService rollupService,
+            TransactionTemplate transactionTemplate,
+            @Value("${rollups.backfill.chunk:1d}") Duration chunk
+    ) {
+        this.tradeRepository = tradeRepository;
+        this.rollupRepository = rollupRepository;
+        this.coverageRepository = coverageRepository;
+        this.rollupService = rollupService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkMs = chunk.toMillis();
+        if (chunkMs % CandleRollupService.MINUTE_MS != 0) {
+            throw new IllegalArgumentException("rollups.backfill.chunk must be a whole number of minutes");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::run, "rollup-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        try {
+            for (String symbol : tradeRepository.findDistinctSymbols()) {
+                backfill(symbol);
+            }
+            log.info("Rollup backfill finished");
+        } catch (RuntimeException e) {
+            log.error("Rollup backfill stopped, it resumes from the stored coverage on next start", e);
+        }
+    }
+
+    private void backfill(String symbol) {
+        Long oldest = tradeRepository.findMinTradeTime(symbol);
+        if (oldest == null) return;
+
+        // Read through to the table: a cached coverage start may be stale and would re-add chunks
+        Long coveredFrom = coverageRepository.findById(symbol).map(CandleRollupCoverage::getCoveredFrom).orElse(null);
+        if (coveredFrom == null) {
+            // Nothing rolled up live yet: start right after the newest stored trade
+            coveredFrom = tradeRepository.findMaxTradeTime(symbol) + 1;
+            long start = coveredFrom;
+            transactionTemplate.executeWithoutResult(status -> coverageRepository.extendCoverage(symbol, start));
+        }
+
+        log.info("Backfilling rollups for {} from {} down to {}", symbol, coveredFrom, oldest);
+        long end = coveredFrom;
+        while (end > oldest) {
+            long start = Math.floorDiv(end - 1, chunkMs) * chunkMs;
+            long chunkEnd = end;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (long tickMs : CandleRollupService.BASE_TICKS) {
+                    rollupRepository.backfill(symbol, tickMs, start, chunkEnd);
+                }
+                coverageRepository.extendCoverage(symbol, start);
+            });
+            rollupService.coverageExtended(symbol, start);
+            end = start;
+        }
+    }
+}
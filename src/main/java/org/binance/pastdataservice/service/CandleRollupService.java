@@ -0,0 +1,124 @@
+package org.binance.pastdataservice.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.binance.pastdataservice.model.entity.CandleRollup;
+import org.binance.pastdataservice.model.entity.CandleRollupCoverage;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.repository.CandleRollupCoverageRepository;
+import org.binance.pastdataservice.repository.CandleRollupRepository;
+import org.binance.pastdataservice.repository.CandleRollupWriter;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Maintains 1s and 1m OHLCV rollups as trades are ingested and serves coarser candles from them.
+ */
+@Service
+@RequiredArgsConstructor
+public class CandleRollupService {
+
+    public static final long SECOND_MS = 1000L;
+    public static final long MINUTE_MS = 60 * 1000L;
+    static final long[] BASE_TICKS = {SECOND_MS, MINUTE_MS};
+
+    private static final Comparator<CandleRollup> KEY_ORDER = Comparator.comparing(CandleRollup::getSymbol)
+            .thenComparingLong(CandleRollup::getTickMs)
+            .thenComparingLong(CandleRollup::getOpenTime);
+
+    private final CandleRollupWriter rollupWriter;
+    private final CandleRollupRepository rollupRepository;
+    private final CandleRollupCoverageRepository coverageRepository;
+
+    // Coverage only ever moves back in time, so a stale entry just means a larger raw scan
+    private final Map<String, Long> coverage = new ConcurrentHashMap<>();
+
+    /**
+     * Folds a batch into the rollup tables; must run in the transaction that writes the trades.
+     */
+    public void apply(List<TradeRecord> trades) {
+        Map<CandleRollup.Key, CandleRollup> buckets = new HashMap<>();
+        Map<String, CandleRollup> firstBySymbol = new HashMap<>();
+
+        for (TradeRecord trade : trades) {
+            // Same filter as the raw candle query
+            if (trade.getPrice() <= 0 || trade.getQuantity() == 0) continue;
+
+            for (long tickMs : BASE_TICKS) {
+                long openTime = trade.getTradeTime() / tickMs * tickMs;
+                CandleRollup bucket = buckets.computeIfAbsent(new CandleRollup.Key(trade.getSymbol(), tickMs, openTime),
+                        key -> new CandleRollup(key.getSymbol(), key.getTickMs(), key.getOpenTime(),
+                                trade.getPrice(), trade.getPrice(), trade.getPrice(), trade.getPrice(), 0, 0,
+                                trade.getTradeTime(), trade.getTradeId(), trade.getTradeTime(), trade.getTradeId()));
+                merge(bucket, trade);
+                if (tickMs == MINUTE_MS) {
+                    firstBySymbol.merge(trade.getSymbol(), bucket,
+                            (a, b) -> a.getFirstTradeTime() <= b.getFirstTradeTime() ? a : b);
+                }
+            }
+        }
+
+        // Stable key order keeps concurrent upserts from deadlocking
+        List<CandleRollup> rows = new ArrayList<>(buckets.values());
+        rows.sort(KEY_ORDER);
+        rollupWriter.registerCoverage(new ArrayList<>(firstBySymbol.values()));
+        rollupWriter.upsert(rows);
+    }
+
+    private static void merge(CandleRollup bucket, TradeRecord trade) {
+        double price = trade.getPrice();
+        long time = trade.getTradeTime();
+        long id = trade.getTradeId();
+        if (time < bucket.getFirstTradeTime() || (time == bucket.getFirstTradeTime() && id < bucket.getFirstTradeId())) {
+            bucket.setOpen(price);
+            bucket.setFirstTradeTime(time);
+            bucket.setFirstTradeId(id);
+        }
+        if (time > bucket.getLastTradeTime() || (time == bucket.getLastTradeTime() && id >= bucket.getLastTradeId())) {
+            bucket.setClose(price);
+            bucket.setLastTradeTime(time);
+            bucket.setLastTradeId(id);
+        }
+        bucket.setHigh(Math.max(bucket.getHigh(), price));
+        bucket.setLow(Math.min(bucket.getLow(), price));
+        bucket.setVolume(bucket.getVolume() + trade.getQuantity());
+        bucket.setTradeCount(bucket.getTradeCount() + 1);
+    }
+
+    /**
+     * Coarsest rollup tick that evenly divides {@code tickMs}, or 0 when candles must come from raw trades.
+     */
+    public long baseTickFor(long tickMs) {
+        if (tickMs % MINUTE_MS == 0) return MINUTE_MS;
+        if (tickMs % SECOND_MS == 0) return SECOND_MS;
+        return 0;
+    }
+
+    /**
+     * Earliest trade time from which rollups of the symbol are complete, or null if it has none.
+     */
+    public Long coveredFrom(String symbol) {
+        Long cached = coverage.get(symbol);
+        if (cached != null) return cached;
+        return coverageRepository.findById(symbol)
+                .map(CandleRollupCoverage::getCoveredFrom)
+                .map(from -> coverage.merge(symbol, from, Math::min))
+                .orElse(null);
+    }
+
+    void coverageExtended(String symbol, long coveredFrom) {
+        coverage.merge(symbol, coveredFrom, Math::min);
+    }
+
+    public List<TradeRepository.CandleProjection> findCandles(String symbol, long baseTickMs, long fromEpoch,
+                                                              long toEpoch, long tickMs) {
+        return rollupRepository.findCandlesBySymbolAndTimeRange(symbol, baseTickMs, fromEpoch, toEpoch, tickMs);
+    }
+}
@@ -0,0 +1,504 @@
+package org.binance.pastdataservice.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the open candle of a symbol and tick to subscribers as trades are consumed. A feed reads
+ * its open bucket from the store once when it starts and then folds every consumed trade into it;
+ * every {@code candles.live.push-interval} each changed feed hands its candle to its subscribers.
+ * A subscriber keeps just the newest open candle plus the closes it has not sent yet, so a slow
+ * client skips intermediate states instead of queueing them; one that falls
+ * {@code candles.live.max-pending-closes} closes behind is disconnected and reloads on reconnect.
+ * <p>
+ * A bucket closes when a trade of a later bucket arrives; until then a quiet symbol keeps its
+ * last bucket open.
+ */
+@Service
+@Slf4j
+public class LiveCandleService {
+
+    public static final String HISTORY_EVENT = "history";
+    public static final String CANDLE_EVENT = "candle";
+    public static final String CLOSE_EVENT = "close";
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final TradeService tradeService;
+    private final Duration timeout;
+    private final int maxConnections;
+    private final int maxPendingCloses;
+    private final Map<String, List<Feed>> feeds = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService senders;
+
+    private final Counter evictedCounter;
+
+    public LiveCandleService(
+            TradeService tradeService,
+            MeterRegistry meterRegistry,
+            @Value("${candles.live.push-interval:250ms}") Duration pushInterval,
+            @Value("${candles.live.heartbeat:15s}") Duration heartbeat,
+            @Value("${candles.live.timeout:1h}") Duration timeout,
+            @Value("${candles.live.max-connections:1000}") int maxConnections,
+            @Value("${candles.live.max-pending-closes:16}") int maxPendingCloses,
+            @Value("${candles.live.sender-threads:4}") int senderThreads
+    ) {
+        this.tradeService = tradeService;
+        this.timeout = timeout;
+        this.maxConnections = maxConnections;
+        this.maxPendingCloses = maxPendingCloses;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-candles");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadIds = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "live-candles-send-" + threadIds.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::publish, pushInterval.toMillis(), pushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+                TimeUnit.MILLISECONDS);
+
+        Gauge.builder("pastdata.live.connections", connections, AtomicInteger::get)
+                .description("Open live candle subscriptions")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("pastdata.live.evicted")
+                .description("Live candle subscriptions closed for falling behind")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Called for every consumed trade; costs a map lookup for symbols nobody subscribes to.
+     */
+    public void onTrade(TradeRecord trade) {
+        List<Feed> symbolFeeds = feeds.get(trade.getSymbol());
+        if (symbolFeeds == null) return;
+        for (Feed feed : symbolFeeds) {
+            feed.fold(trade);
+        }
+    }
+
+    /**
+     * Opens a server-sent event stream that starts with a {@value #HISTORY_EVENT} event of the
+     * candles {@code history} returns and then carries {@value #CANDLE_EVENT} and
+     * {@value #CLOSE_EVENT} events of {@code tickMs} candles.
+     *
+     * @throws QueryRejectedException if {@code candles.live.max-connections} are open
+     */
+    public SseEmitter subscribe(String symbol, long tickMs, Supplier<List<CandleDto>> history) {
+        reserveConnection();
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Sink sink = new Sink() {
+            @Override
+            public void send(String event, Object data) throws IOException {
+                emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment(""));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        };
+        try {
+            sink.send(HISTORY_EVENT, history.get());
+        } catch (IOException e) {
+            connections.decrementAndGet();
+            emitter.completeWithError(e);
+            return emitter;
+        } catch (RuntimeException e) {
+            connections.decrementAndGet();
+            throw e;
+        }
+        Subscriber subscriber = register(symbol, tickMs, sink);
+        emitter.onCompletion(subscriber::unsubscribe);
+        emitter.onTimeout(subscriber::unsubscribe);
+        emitter.onError(error -> subscriber.unsubscribe());
+        return emitter;
+    }
+
+    Subscriber subscribe(String symbol, long tickMs, Sink sink) {
+        reserveConnection();
+        return register(symbol, tickMs, sink);
+    }
+
+    private void reserveConnection() {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new QueryRejectedException("Too many live candle subscriptions");
+        }
+    }
+
+    private Subscriber register(String symbol, long tickMs, Sink sink) {
+        Feed feed;
+        Subscriber subscriber;
+        boolean created = false;
+        synchronized (feeds) {
+            List<Feed> symbolFeeds = feeds.computeIfAbsent(symbol, s -> new CopyOnWriteArrayList<>());
+            feed = symbolFeeds.stream().filter(f -> f.tickMs == tickMs).findFirst().orElse(null);
+            if (feed == null) {
+                feed = new Feed(symbol, tickMs);
+                symbolFeeds.add(feed);
+                created = true;
+            }
+            subscriber = new Subscriber(feed, sink);
+            feed.subscribers.add(subscriber);
+        }
+        if (created) {
+            // Trades fold into the feed from here on, so the store is read only for those before
+            try {
+                feed.seed();
+            } catch (RuntimeException e) {
+                subscriber.unsubscribe();
+                throw e;
+            }
+        }
+        return subscriber;
+    }
+
+    // Hands the candles of every feed that received trades since the last run to its subscribers
+    void publish() {
+        for (List<Feed> symbolFeeds : feeds.values()) {
+            for (Feed feed : symbolFeeds) {
+                try {
+                    feed.publish();
+                } catch (RuntimeException e) {
+                    log.warn("Live candle update of {} failed", feed.symbol, e);
+                }
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (List<Feed> symbolFeeds : feeds.values()) {
+            for (Feed feed : symbolFeeds) {
+                feed.subscribers.forEach(Subscriber::heartbeat);
+            }
+        }
+    }
+
+    private void remove(Feed feed) {
+        synchronized (feeds) {
+            if (!feed.subscribers.isEmpty()) return;
+            List<Feed> symbolFeeds = feeds.get(feed.symbol);
+            if (symbolFeeds == null) return;
+            symbolFeeds.remove(feed);
+            if (symbolFeeds.isEmpty()) {
+                feeds.remove(feed.symbol);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+        for (List<Feed> symbolFeeds : feeds.values()) {
+            for (Feed feed : symbolFeeds) {
+                feed.subscribers.forEach(subscriber -> subscriber.sink.close());
+            }
+        }
+    }
+
+    interface Sink {
+        void send(String event, Object data) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        void close();
+    }
+
+    // Open candle of one symbol and tick, shared by all its subscribers
+    private final class Feed {
+        final String symbol;
+        final long tickMs;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        // Guarded by this
+        private final List<CandleDto> closes = new ArrayList<>();
+        private OpenCandle candle;
+        private long earliestFolded = UNSET;
+        private long maxTradeId = Long.MIN_VALUE;
+
+        Feed(String symbol, long tickMs) {
+            this.symbol = symbol;
+            this.tickMs = tickMs;
+        }
+
+        synchronized void fold(TradeRecord trade) {
+            // Same filter as the raw candle query
+            if (trade.getPrice() <= 0 || trade.getQuantity() == 0) return;
+            // Redelivered after a rewind
+            if (trade.getTradeId() <= maxTradeId) return;
+            maxTradeId = trade.getTradeId();
+            long tradeTime = trade.getTradeTime();
+            earliestFolded = earliestFolded == UNSET ? tradeTime : Math.min(earliestFolded, tradeTime);
+
+            long openTime = Math.floorDiv(tradeTime, tickMs) * tickMs;
+            if (candle != null && openTime < candle.openTime) return;
+            if (candle != null && openTime > candle.openTime) {
+                closes.add(candle.toDto(tickMs));
+                candle = null;
+            }
+            if (candle == null) {
+                candle = new OpenCandle(openTime);
+            }
+            candle.add(trade);
+            dirty.set(true);
+        }
+
+        /**
+         * Reads the trades of the open bucket from before the first folded one. Retries while
+         * trades older than the range read are folded meanwhile, which would count them twice.
+         */
+        void seed() {
+            long cutoff = System.currentTimeMillis() + 1;
+            for (int attempt = 0; attempt < 3; attempt++) {
+                synchronized (this) {
+                    if (earliestFolded != UNSET) cutoff = Math.min(cutoff, earliestFolded);
+                }
+                long openTime = Math.floorDiv(cutoff, tickMs) * tickMs;
+                CandleDto stored = null;
+                if (openTime < cutoff) {
+                    CandleSeries candles = tradeService.findOpenCandles(symbol, openTime, cutoff - 1, tickMs);
+                    stored = candles.size() == 0 ? null : candles.toDtos().get(candles.size() - 1);
+                }
+                synchronized (this) {
+                    if (earliestFolded != UNSET && earliestFolded < cutoff) continue;
+                    if (stored == null || candle != null && candle.openTime > openTime) return;
+                    if (candle == null) {
+                        candle = new OpenCandle(openTime);
+                    }
+                    candle.prepend(stored);
+                    dirty.set(true);
+                    return;
+                }
+            }
+            log.debug("Live {} candle started without stored trades, trades kept arriving out of order", symbol);
+        }
+
+        void publish() {
+            if (!dirty.getAndSet(false)) return;
+            List<CandleDto> closed;
+            CandleDto open;
+            synchronized (this) {
+                closed = new ArrayList<>(closes);
+                closes.clear();
+                open = candle != null ? candle.toDto(tickMs) : null;
+            }
+            for (CandleDto close : closed) {
+                subscribers.forEach(subscriber -> subscriber.closed(close));
+            }
+            if (open != null) {
+                subscribers.forEach(subscriber -> subscriber.update(open));
+            }
+        }
+    }
+
+    // Running OHLCV of one bucket; open and close follow the trade ids, as in the hot window
+    private static final class OpenCandle {
+        final long openTime;
+        double open;
+        double high = Double.NEGATIVE_INFINITY;
+        double low = Double.POSITIVE_INFINITY;
+        double close;
+        double volume;
+        int tradeCount;
+        long firstTradeId = Long.MAX_VALUE;
+        long lastTradeId = Long.MIN_VALUE;
+
+        OpenCandle(long openTime) {
+            this.openTime = openTime;
+        }
+
+        void add(TradeRecord trade) {
+            double price = trade.getPrice();
+            if (trade.getTradeId() < firstTradeId) {
+                open = price;
+                firstTradeId = trade.getTradeId();
+            }
+            if (trade.getTradeId() > lastTradeId) {
+                close = price;
+                lastTradeId = trade.getTradeId();
+            }
+            high = Math.max(high, price);
+            low = Math.min(low, price);
+            volume += trade.getQuantity();
+            tradeCount++;
+        }
+
+        // Trades stored before any folded one
+        void prepend(CandleDto stored) {
+            open = stored.getOpen();
+            firstTradeId = Long.MIN_VALUE;
+            if (tradeCount == 0) {
+                close = stored.getClose();
+            }
+            high = Math.max(high, stored.getHigh());
+            low = Math.min(low, stored.getLow());
+            volume += stored.getVolume();
+            tradeCount += stored.getTradeCount();
+        }
+
+        CandleDto toDto(long tickMs) {
+            return CandleDto.builder()
+                    .openTime(openTime)
+                    .closeTime(openTime + tickMs - 1)
+                    .open(open)
+                    .high(high)
+                    .low(low)
+                    .close(close)
+                    .volume(volume)
+                    .tradeCount(tradeCount)
+                    .build();
+        }
+    }
+
+    /**
+     * One connection. Updates replace the pending open candle, so at most one open candle and a
+     * bounded number of closes are held per connection whatever the client's speed.
+     */
+    final class Subscriber {
+        private final Feed feed;
+        private final Sink sink;
+        private final ArrayDeque<CandleDto> pendingCloses = new ArrayDeque<>();
+        private CandleDto pendingOpen;
+        private boolean pendingHeartbeat;
+        private boolean sending;
+        private boolean closed;
+
+        Subscriber(Feed feed, Sink sink) {
+            this.feed = feed;
+            this.sink = sink;
+        }
+
+        void update(CandleDto open) {
+            synchronized (this) {
+                if (closed) return;
+                pendingOpen = open;
+            }
+            schedule();
+        }
+
+        void closed(CandleDto candle) {
+            boolean behind;
+            synchronized (this) {
+                if (closed) return;
+                behind = pendingCloses.size() == maxPendingCloses;
+                if (!behind) {
+                    pendingCloses.add(candle);
+                    // A pending open candle belongs to the bucket that just closed
+                    pendingOpen = null;
+                }
+            }
+            if (behind) {
+                evictedCounter.increment();
+                log.info("Closing live {} subscription that fell {} candles behind", feed.symbol, maxPendingCloses);
+                unsubscribe();
+                sink.close();
+                return;
+            }
+            schedule();
+        }
+
+        void heartbeat() {
+            synchronized (this) {
+                if (closed) return;
+                pendingHeartbeat = true;
+            }
+            schedule();
+        }
+
+        void unsubscribe() {
+            synchronized (this) {
+                closed = true;
+            }
+            if (feed.subscribers.remove(this)) {
+                connections.decrementAndGet();
+                remove(feed);
+            }
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (sending) return;
+                sending = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        // Runs on a sender thread; a blocked write holds that thread, not the publisher
+        private void drain() {
+            while (true) {
+                List<CandleDto> closes;
+                CandleDto open;
+                boolean heartbeat;
+                synchronized (this) {
+                    if (closed || pendingCloses.isEmpty() && pendingOpen == null && !pendingHeartbeat) {
+                        sending = false;
+                        return;
+                    }
+                    closes = new ArrayList<>(pendingCloses);
+                    pendingCloses.clear();
+                    open = pendingOpen;
+                    pendingOpen = null;
+                    heartbeat = pendingHeartbeat;
+                    pendingHeartbeat = false;
+                }
+                try {
+                    for (CandleDto candle : closes) {
+                        sink.send(CLOSE_EVENT, candle);
+                    }
+                    if (open != null) {
+                        sink.send(CANDLE_EVENT, open);
+                    } else if (heartbeat) {
+                        sink.heartbeat();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Live {} subscription gone", feed.symbol, e);
+                    synchronized (this) {
+                        sending = false;
+                    }
+                    unsubscribe();
+                    return;
+                }
+            }
+        }
+    }
+}
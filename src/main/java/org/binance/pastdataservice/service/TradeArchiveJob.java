@@ -0,0 +1,210 @@
+package org.binance.pastdataservice.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.repository.TradeArchiveRepository;
+import org.binance.pastdataservice.store.GorillaTradeCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves trades older than {@code trades.archive.after} out of {@code trades} into compressed
+ * hourly blocks, one UTC day per transaction that also advances the archive watermark. Blocks
+ * keep every column, event time and trade type included. Trades that arrive for archived days
+ * later are folded into their blocks on the next run, and every partition below the watermark is
+ * dropped once empty, including day partitions re-created for such late trades.
+ * <p>
+ * Each transaction runs at REPEATABLE READ, so its delete only removes the rows its read saw;
+ * trades inserted meanwhile stay in the table for the next run.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "trades.archive.enabled", havingValue = "true")
+public class TradeArchiveJob {
+
+    private static final String SELECT_SQL = """
+            SELECT symbol, trade_id, price, quantity, trade_type, is_buyer_maker, event_time, trade_time
+            FROM trades
+            WHERE trade_time >= ? AND trade_time < ?
+            ORDER BY symbol, trade_time, trade_id
+            """;
+
+    private static final Comparator<TradeRecord> TRADE_ORDER =
+            Comparator.comparingLong(TradeRecord::getTradeTime).thenComparingLong(TradeRecord::getTradeId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate archiveTransaction;
+    private final TradeArchiveRepository archiveRepository;
+    private final TradePartitionManager partitionManager;
+    private final long afterMs;
+    private final int fetchSize;
+
+    private final Counter archivedTradesCounter;
+    private final Counter archivedBytesCounter;
+
+    public TradeArchiveJob(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            TradeArchiveRepository archiveRepository,
+            TradePartitionManager partitionManager,
+            MeterRegistry meterRegistry,
+            @Value("${trades.archive.after:30d}") Duration after,
+            @Value("${trades.tape.fetch-size:5000}") int fetchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.archiveTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.archiveTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.archiveRepository = archiveRepository;
+        this.partitionManager = partitionManager;
+        this.afterMs = after.toMillis();
+        this.fetchSize = fetchSize;
+        if (afterMs < TradePartitionManager.DAY_MS) {
+            throw new IllegalArgumentException("trades.archive.after must be at least 1d");
+        }
+        this.archivedTradesCounter = Counter.builder("pastdata.archive.trades")
+                .description("Trades moved into compressed archive blocks")
+                .register(meterRegistry);
+        this.archivedBytesCounter = Counter.builder("pastdata.archive.bytes")
+                .description("Bytes of archive blocks written")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${trades.archive.interval:1h}", fixedDelayString = "${trades.archive.interval:1h}")
+    public void run() {
+        try {
+            Long archivedBefore = archiveRepository.findArchivedBefore();
+            long day;
+            if (archivedBefore != null) {
+                int late = archive(Long.MIN_VALUE, archivedBefore, null);
+                if (late > 0) {
+                    log.info("Merged {} late trades into the archive", late);
+                }
+                day = Math.floorDiv(archivedBefore, TradePartitionManager.DAY_MS);
+            } else {
+                Long oldest = jdbcTemplate.queryForObject("SELECT MIN(trade_time) FROM trades", Long.class);
+                if (oldest == null) return;
+                day = Math.floorDiv(oldest, TradePartitionManager.DAY_MS);
+            }
+
+            long cutoffDay = Math.floorDiv(System.currentTimeMillis() - afterMs, TradePartitionManager.DAY_MS);
+            for (; day < cutoffDay; day++) {
+                long from = day * TradePartitionManager.DAY_MS;
+                long to = from + TradePartitionManager.DAY_MS;
+                int archived = archive(from, to, to);
+                log.info("Archived {} trades of {}", archived, LocalDate.ofEpochDay(day));
+            }
+            dropArchivedPartitions();
+        } catch (DataAccessException e) {
+            log.error("Trade archiving failed, retrying on the next run", e);
+        }
+    }
+
+    // Streams the range per symbol and hour into blocks, merging with blocks already archived,
+    // and moves the watermark to archivedBefore in the same transaction
+    private int archive(long from, long to, Long archivedBefore) {
+        Integer archived = archiveTransaction.execute(status -> {
+            BlockBuilder blocks = new BlockBuilder();
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(SELECT_SQL, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setLong(1, from);
+                ps.setLong(2, to);
+                return ps;
+            }, rs -> {
+                TradeRecord trade = new TradeRecord(rs.getString(1), rs.getLong(2), rs.getDouble(3), rs.getDouble(4),
+                        rs.getString(5), rs.getBoolean(6), rs.getLong(7), rs.getLong(8));
+                blocks.add(trade);
+            });
+            blocks.flush();
+            if (blocks.trades > 0) {
+                jdbcTemplate.update("DELETE FROM trades WHERE trade_time >= ? AND trade_time < ?", from, to);
+            }
+            if (archivedBefore != null) {
+                archiveRepository.advanceArchivedBefore(archivedBefore);
+            }
+            return blocks.trades;
+        });
+        return archived == null ? 0 : archived;
+    }
+
+    private void dropArchivedPartitions() {
+        Long archivedBefore = archiveRepository.findArchivedBefore();
+        if (archivedBefore == null) return;
+        for (TradePartitionManager.Partition partition : partitionManager.partitions()) {
+            if (partition.to() > archivedBefore) continue;
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("LOCK TABLE " + partition.name() + " IN ACCESS EXCLUSIVE MODE");
+                Boolean empty = jdbcTemplate.queryForObject(
+                        "SELECT NOT EXISTS (SELECT 1 FROM " + partition.name() + ")", Boolean.class);
+                if (Boolean.TRUE.equals(empty)) {
+                    jdbcTemplate.execute("DROP TABLE " + partition.name());
+                    log.info("Dropped archived partition {}", partition.name());
+                }
+            });
+        }
+    }
+
+    private class BlockBuilder {
+        private final List<TradeRecord> current = new ArrayList<>();
+        private String symbol;
+        private long blockStart;
+        int trades;
+
+        void add(TradeRecord trade) {
+            long start = Math.floorDiv(trade.getTradeTime(), TradeArchiveRepository.BLOCK_MS) * TradeArchiveRepository.BLOCK_MS;
+            if (!trade.getSymbol().equals(symbol) || start != blockStart) {
+                flush();
+                symbol = trade.getSymbol();
+                blockStart = start;
+            }
+            current.add(trade);
+        }
+
+        void flush() {
+            if (current.isEmpty()) return;
+            trades += current.size();
+            byte[] existing = archiveRepository.findBlock(symbol, blockStart);
+            List<TradeRecord> block = current;
+            if (existing != null) {
+                block = GorillaTradeCodec.decodeAll(existing, symbol);
+                block.addAll(current);
+                block.sort(TRADE_ORDER);
+                // Drop trades the block already held
+                List<TradeRecord> unique = new ArrayList<>(block.size());
+                for (TradeRecord trade : block) {
+                    TradeRecord last = unique.isEmpty() ? null : unique.get(unique.size() - 1);
+                    if (last == null || last.getTradeTime() != trade.getTradeTime() || last.getTradeId() != trade.getTradeId()) {
+                        unique.add(trade);
+                    }
+                }
+                block = unique;
+            }
+            byte[] data = GorillaTradeCodec.encode(block);
+            archiveRepository.saveBlock(symbol, blockStart, block.size(), data);
+            archivedTradesCounter.increment(current.size());
+            archivedBytesCounter.increment(data.length);
+            current.clear();
+        }
+    }
+}
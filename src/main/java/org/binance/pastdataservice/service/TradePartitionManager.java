@@ -0,0 +1,332 @@
+package org.binance.pastdataservice.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Owns the DDL of the {@code trades} table, which Hibernate leaves alone: it is range
+ * partitioned on {@code trade_time} by UTC day, with a default partition for trades outside
+ * every daily range. The primary key is the natural trade identity plus the partition key,
+ * ordered {@code (symbol, trade_time, trade_id)} so the same B-tree serves symbol range scans.
+ * Maintenance creates partitions ahead of time, moves rows that landed in the default partition
+ * into their own day, applies the retention policy and, optionally, adds BRIN indexes for
+ * time-only scans of old partitions.
+ * <p>
+ * A pre-existing unpartitioned table is renamed to {@code trades_legacy} and attached as the
+ * partition for everything before the day after its newest trade. Retention and the archive job
+ * treat it like any other partition of that range, so it is retired once its newest day expires
+ * or is archived. Tables from before the natural key lose their surrogate {@code id} and any
+ * duplicate trades once: duplicates are deleted per symbol and day while the table stays
+ * writable, and only trades written meanwhile are checked again under the exclusive lock.
+ */
+@Component
+@Slf4j
+public class TradePartitionManager {
+
+    static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private static final String LEGACY = "trades_legacy";
+    private static final String DEFAULT = "trades_default";
+    private static final String PREFIX = "trades_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Pattern SCANNED = Pattern.compile(" on (trades_p\\d{8}|trades_default|trades_legacy)\\b");
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\('?([^')]+)'?\\) TO \\('?([^')]+)'?\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int premakeDays;
+    private final long retentionMs;
+    private final boolean dropExpired;
+    private final long brinAfterMs;
+
+    private record Span(String symbol, long from, long to) {
+    }
+
+    record Partition(String name, long from, long to) {
+
+        boolean overlaps(long start, long end) {
+            return from < end && start < to;
+        }
+    }
+
+    public TradePartitionManager(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${trades.partitioning.premake-days:3}") int premakeDays,
+            @Value("${trades.partitioning.retention:0d}") Duration retention,
+            @Value("${trades.partitioning.retention-action:detach}") String retentionAction,
+            @Value("${trades.partitioning.brin-after:0d}") Duration brinAfter
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.premakeDays = premakeDays;
+        this.retentionMs = retention.toMillis();
+        this.brinAfterMs = brinAfter.toMillis();
+        this.dropExpired = switch (retentionAction) {
+            case "drop" -> true;
+            case "detach" -> false;
+            default -> throw new IllegalArgumentException("trades.partitioning.retention-action must be detach or drop");
+        };
+    }
+
+    // Runs before listener containers start, so ingest never sees a half-migrated table
+    @PostConstruct
+    public void ensureSchema() {
+        String kind = jdbcTemplate.query("SELECT relkind FROM pg_class WHERE oid = to_regclass('trades')",
+                rs -> rs.next() ? rs.getString(1) : null);
+        if (kind == null) {
+            transactionTemplate.executeWithoutResult(status -> createPartitionedTable(null));
+            log.info("Created partitioned trades table");
+        } else if ("r".equals(kind)) {
+            migrateLegacyTable();
+        } else if (hasSurrogateId()) {
+            migrateToNaturalKey();
+        }
+        maintain();
+        verifyPruning();
+    }
+
+    @Scheduled(initialDelayString = "${trades.partitioning.maintenance-interval:1h}",
+            fixedDelayString = "${trades.partitioning.maintenance-interval:1h}")
+    public void maintain() {
+        try {
+            long today = Math.floorDiv(System.currentTimeMillis(), DAY_MS);
+            for (long day = today - 1; day <= today + premakeDays; day++) {
+                createPartition(day);
+            }
+            adoptDefaultRows();
+            applyRetention();
+            applyBrin();
+        } catch (DataAccessException e) {
+            log.error("Trade partition maintenance failed, retrying on the next run", e);
+        }
+    }
+
+    private void createPartitionedTable(String like) {
+        String columns = like != null
+                ? "LIKE " + like + " INCLUDING DEFAULTS"
+                : """
+                symbol varchar(20) NOT NULL,
+                trade_id bigint NOT NULL,
+                price float(53) NOT NULL,
+                quantity float(53) NOT NULL,
+                trade_type varchar(255) NOT NULL,
+                is_buyer_maker boolean NOT NULL,
+                event_time bigint NOT NULL,
+                trade_time bigint NOT NULL""";
+        jdbcTemplate.execute("CREATE TABLE trades (" + columns + ") PARTITION BY RANGE (trade_time)");
+        // Unique constraints on a partitioned table must include the partition key
+        jdbcTemplate.execute("ALTER TABLE trades ADD PRIMARY KEY (symbol, trade_time, trade_id)");
+        jdbcTemplate.execute("CREATE TABLE " + DEFAULT + " PARTITION OF trades DEFAULT");
+    }
+
+    private void migrateLegacyTable() {
+        log.info("Migrating unpartitioned trades table; attaching it scans the table once");
+        long checked = deleteDuplicatesInBatches("trades");
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE trades IN ACCESS EXCLUSIVE MODE");
+            Long newest = jdbcTemplate.queryForObject("SELECT MAX(trade_time) FROM trades", Long.class);
+            jdbcTemplate.execute("ALTER TABLE trades RENAME TO " + LEGACY);
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_symbol_tradetime RENAME TO " + LEGACY + "_symbol_time");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS trades_pkey RENAME TO " + LEGACY + "_pkey");
+            deleteDuplicatesSince(LEGACY, checked);
+            jdbcTemplate.execute("ALTER TABLE " + LEGACY + " DROP COLUMN IF EXISTS id");
+            createPartitionedTable(LEGACY);
+            if (newest == null) {
+                jdbcTemplate.execute("DROP TABLE " + LEGACY);
+                return;
+            }
+            long upper = (Math.floorDiv(newest, DAY_MS) + 1) * DAY_MS;
+            jdbcTemplate.execute("ALTER TABLE trades ATTACH PARTITION " + LEGACY
+                    + " FOR VALUES FROM (MINVALUE) TO (" + upper + ")");
+            // Attaching built the primary key, which covers the old index
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + LEGACY + "_symbol_time");
+            log.info("Attached {} for trade times before {}", LEGACY, upper);
+        });
+    }
+
+    // Rows a day partition would hold are moved out of the default partition before attaching it
+    private void createPartition(long day) {
+        long from = day * DAY_MS;
+        long to = from + DAY_MS;
+        if (partitions().stream().anyMatch(p -> p.overlaps(from, to))) return;
+
+        String name = PREFIX + LocalDate.ofEpochDay(day).format(SUFFIX);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE trades INCLUDING DEFAULTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT
+                    + " WHERE trade_time >= ? AND trade_time < ? RETURNING *) INSERT INTO " + name
+                    + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE trades ATTACH PARTITION " + name
+                    + " FOR VALUES FROM (" + from + ") TO (" + to + ")");
+            if (moved > 0) {
+                log.info("Created partition {} with {} trades from the default partition", name, moved);
+            } else {
+                log.info("Created partition {}", name);
+            }
+        });
+    }
+
+    private void adoptDefaultRows() {
+        long oldestKept = retentionMs > 0 ? Math.floorDiv(System.currentTimeMillis() - retentionMs, DAY_MS) : Long.MIN_VALUE;
+        List<Long> days = jdbcTemplate.queryForList(
+                "SELECT DISTINCT trade_time / " + DAY_MS + " FROM " + DEFAULT + " ORDER BY 1", Long.class);
+        for (long day : days) {
+            if (day >= oldestKept) {
+                createPartition(day);
+            } else {
+                log.warn("Default partition holds trades of {}, which is past retention", LocalDate.ofEpochDay(day));
+            }
+        }
+    }
+
+    private void applyRetention() {
+        if (retentionMs <= 0) return;
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        for (Partition partition : partitions()) {
+            if (partition.to() > cutoff) continue;
+            transactionTemplate.executeWithoutResult(status -> {
+                if (dropExpired) {
+                    jdbcTemplate.execute("DROP TABLE " + partition.name());
+                } else {
+                    jdbcTemplate.execute("ALTER TABLE trades DETACH PARTITION " + partition.name());
+                    jdbcTemplate.execute("ALTER TABLE " + partition.name() + " RENAME TO " + partition.name() + "_detached");
+                }
+            });
+            log.info("{} expired partition {}", dropExpired ? "Dropped" : "Detached", partition.name());
+        }
+    }
+
+    // Time-only scans over old days (e.g. rollup backfill) are served by a tiny BRIN index
+    private void applyBrin() {
+        if (brinAfterMs <= 0) return;
+        long cutoff = System.currentTimeMillis() - brinAfterMs;
+        for (Partition partition : partitions()) {
+            if (!partition.name().startsWith(PREFIX) || partition.to() > cutoff) continue;
+            String brin = partition.name() + "_brin";
+            Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, brin);
+            if (Boolean.TRUE.equals(exists)) continue;
+            jdbcTemplate.execute("CREATE INDEX " + brin + " ON " + partition.name() + " USING brin (trade_time)");
+            log.info("Created BRIN index on {}", partition.name());
+        }
+    }
+
+    private boolean hasSurrogateId() {
+        Boolean exists = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM information_schema.columns
+                               WHERE table_name = 'trades' AND column_name = 'id' AND table_schema = current_schema())
+                """, Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    private void migrateToNaturalKey() {
+        log.info("Replacing the surrogate id of trades by the natural key; duplicates are removed once");
+        long checked = deleteDuplicatesInBatches("trades");
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE trades IN ACCESS EXCLUSIVE MODE");
+            deleteDuplicatesSince("trades", checked);
+            // Drops the (id, trade_time) primary key along with the column
+            jdbcTemplate.execute("ALTER TABLE trades DROP COLUMN id");
+            jdbcTemplate.execute("ALTER TABLE trades ADD PRIMARY KEY (symbol, trade_time, trade_id)");
+            for (Partition partition : partitions()) {
+                jdbcTemplate.execute("DROP INDEX IF EXISTS " + partition.name() + "_symbol_time");
+            }
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + DEFAULT + "_symbol_time");
+        });
+    }
+
+    // One autocommitted delete per symbol and day, each a range of the (symbol, trade_time) index.
+    // Returns the newest trade time seen; trades written afterwards are left to deleteDuplicatesSince
+    private long deleteDuplicatesInBatches(String table) {
+        List<Span> spans = jdbcTemplate.query("SELECT symbol, MIN(trade_time), MAX(trade_time) FROM " + table
+                + " GROUP BY symbol", (rs, i) -> new Span(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+        long newest = Long.MIN_VALUE;
+        int deleted = 0;
+        for (Span span : spans) {
+            for (long day = Math.floorDiv(span.from(), DAY_MS); day <= Math.floorDiv(span.to(), DAY_MS); day++) {
+                long from = day * DAY_MS;
+                deleted += jdbcTemplate.update(duplicatesSql(table) + " AND a.symbol = ? AND b.symbol = ?"
+                        + " AND a.trade_time >= ? AND a.trade_time < ? AND b.trade_time >= ? AND b.trade_time < ?",
+                        span.symbol(), span.symbol(), from, from + DAY_MS, from, from + DAY_MS);
+            }
+            newest = Math.max(newest, span.to());
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} duplicate trades from {}", deleted, table);
+        }
+        return newest;
+    }
+
+    // A late redelivery of an older trade in between fails the primary key, and the next start retries
+    private void deleteDuplicatesSince(String table, long since) {
+        int deleted = jdbcTemplate.update(duplicatesSql(table) + " AND a.trade_time >= ? AND b.trade_time >= ?",
+                since, since);
+        if (deleted > 0) {
+            log.info("Deleted {} duplicate trades written to {} during the migration", deleted, table);
+        }
+    }
+
+    // A trade's time never changes, so duplicates always share a partition
+    private static String duplicatesSql(String table) {
+        return "DELETE FROM " + table + " a USING " + table + " b"
+                + " WHERE a.tableoid = b.tableoid AND a.symbol = b.symbol AND a.trade_id = b.trade_id"
+                + " AND a.trade_time = b.trade_time AND a.ctid > b.ctid";
+    }
+
+    /**
+     * Range partitions of {@code trades} with their bounds; MINVALUE/MAXVALUE map to the long limits.
+     */
+    List<Partition> partitions() {
+        return jdbcTemplate.query("""
+                SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'trades'::regclass
+                """, (rs, i) -> {
+            Matcher m = BOUNDS.matcher(rs.getString(2));
+            if (!m.find()) return null;
+            return new Partition(rs.getString(1), bound(m.group(1)), bound(m.group(2)));
+        }).stream().filter(p -> p != null).toList();
+    }
+
+    private static long bound(String value) {
+        return switch (value) {
+            case "MINVALUE" -> Long.MIN_VALUE;
+            case "MAXVALUE" -> Long.MAX_VALUE;
+            default -> Long.parseLong(value);
+        };
+    }
+
+    // Range scans pass trade_time bounds, so a one-day scan should only touch that day's partition
+    private void verifyPruning() {
+        long from = Math.floorDiv(System.currentTimeMillis(), DAY_MS) * DAY_MS;
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN SELECT 1 FROM trades WHERE symbol = 'BTCUSDT'"
+                + " AND trade_time >= " + from + " AND trade_time <= " + (from + DAY_MS - 1), String.class);
+        Set<String> scanned = new TreeSet<>();
+        for (String line : plan) {
+            Matcher m = SCANNED.matcher(line);
+            if (m.find()) scanned.add(m.group(1));
+        }
+        if (scanned.size() > 1) {
+            log.warn("Trade range scans are not pruned to a single partition:\n{}", String.join("\n", plan));
+        } else {
+            log.info("Trade range scans prune to a single partition {}", scanned);
+        }
+    }
+}
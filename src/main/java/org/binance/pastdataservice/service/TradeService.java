@@ -1,22 +1,28 @@
 package org.binance.pastdataservice.service;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import org.binance.pastdataservice.candle.CandleSegmentCache;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.candle.HotCandleEngine;
 import org.binance.pastdataservice.model.dto.request.CreateTradeDto;
 import org.binance.pastdataservice.model.dto.response.CandleDto;
 import org.binance.pastdataservice.model.entity.Trade;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
 import org.binance.pastdataservice.repository.TradeRepository;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
+import org.binance.pastdataservice.store.TradeStore;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,43 +31,106 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 //@RequiredArgsConstructor
 public class TradeService {
+    private static final int MAX_CHUNK_SEGMENTS = 64;
+    // Tick sizes of parseTickSize, finest first
+    private static final long[] TICKS_MS = {1L, 1000L, 60 * 1000L, 5 * 60 * 1000L, 15 * 60 * 1000L,
+            60 * 60 * 1000L, 4 * 60 * 60 * 1000L, 24 * 60 * 60 * 1000L};
+
     private final TradeRepository tradeRepository;
-    private final CacheManager cacheManager;
+    private final TradeStore tradeStore;
+    private final HotCandleEngine hotCandleEngine;
+    private final CandleSegmentCache candleSegmentCache;
+    private final CandleQueryGate candleQueryGate;
 
 //    Metrics
     private final Timer aggregateTradesTimer;
-    private final Counter cacheHitCounter;
-    private final Counter cacheMissCounter;
+    private final Counter rowsInsertedCounter;
+    private final Counter duplicatesCounter;
+    private final Counter tapeRowsCounter;
+    private final Timer storeStageTimer;
+    private final Timer hotStageTimer;
+    private final Timer mappingStageTimer;
+    private final Timer commitLagTimer;
+
+    // Newest committed times, for the lag gauges and health
+    private final AtomicLong newestCommittedEventTime = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong newestCommittedTradeTime = new AtomicLong(Long.MIN_VALUE);
 
     public TradeService(
             TradeRepository tradeRepository,
-            CacheManager cacheManager,
+            TradeStore tradeStore,
+            HotCandleEngine hotCandleEngine,
+            CandleSegmentCache candleSegmentCache,
+            CandleQueryGate candleQueryGate,
             MeterRegistry meterRegistry
     ) {
         this.tradeRepository = tradeRepository;
-        this.cacheManager = cacheManager;
+        this.tradeStore = tradeStore;
+        this.hotCandleEngine = hotCandleEngine;
+        this.candleSegmentCache = candleSegmentCache;
+        this.candleQueryGate = candleQueryGate;
         this.aggregateTradesTimer = Timer.builder("pastdata.candle.query.duration")
                 .description("Duration of candlestick aggregation queries")
                 .register(meterRegistry);
-        this.cacheHitCounter = Counter.builder("pastdata.cache.hits")
-                .description("Number of cache hits for candle queries")
+        this.rowsInsertedCounter = Counter.builder("pastdata.batch.insert.rows")
+                .description("Trades written by batch inserts")
+                .tag("writer", tradeStore.name())
+                .register(meterRegistry);
+        this.duplicatesCounter = Counter.builder("pastdata.batch.insert.duplicates")
+                .description("Trades skipped by batch inserts because they were already stored")
+                .tag("writer", tradeStore.name())
+                .register(meterRegistry);
+        this.tapeRowsCounter = Counter.builder("pastdata.trade.tape.rows")
+                .description("Raw trades streamed by the trade tape endpoint")
                 .register(meterRegistry);
-        this.cacheMissCounter = Counter.builder("pastdata.cache.misses")
-                .description("Number of cache misses for candle queries")
+        this.storeStageTimer = queryStage("store").register(meterRegistry);
+        this.hotStageTimer = queryStage("hot").register(meterRegistry);
+        this.mappingStageTimer = queryStage("mapping").register(meterRegistry);
+        this.commitLagTimer = Timer.builder("pastdata.ingest.commit.lag")
+                .description("Time from a trade's trade time until its batch committed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("pastdata.ingest.lag", newestCommittedEventTime, TradeService::ageMs)
+                .description("Age of the newest committed trade by its event time")
+                .tag("basis", "event")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.ingest.lag", newestCommittedTradeTime, TradeService::ageMs)
+                .description("Age of the newest committed trade by its trade time")
+                .tag("basis", "trade")
+                .baseUnit("milliseconds")
                 .register(meterRegistry);
     }
 
-    public String insert(CreateTradeDto createTradeDto) {
-        return tradeRepository.save(createTradeDto.toEntity()).getId();
+    public Trade.Key insert(CreateTradeDto createTradeDto) {
+        Trade trade = tradeRepository.save(createTradeDto.toEntity());
+        return new Trade.Key(trade.getSymbol(), trade.getTradeId(), trade.getTradeTime());
     }
 
-    @Transactional
-    public void insertBatch(List<CreateTradeDto> dtos) {
-        List<Trade> trades = dtos.stream()
-                .map(CreateTradeDto::toEntity)
-                .collect(Collectors.toList());
-        tradeRepository.saveAll(trades);
+    public void insertBatch(List<TradeRecord> trades) {
+        int stored = tradeStore.append(trades);
+        rowsInsertedCounter.increment(stored);
+        duplicatesCounter.increment(trades.size() - stored);
 //        log.info("Batch inserted {} trades", trades.size());
+
+        long committedAt = System.currentTimeMillis();
+        long newestEventTime = Long.MIN_VALUE;
+        long newestTradeTime = Long.MIN_VALUE;
+        for (TradeRecord trade : trades) {
+            commitLagTimer.record(Math.max(committedAt - trade.getTradeTime(), 0), TimeUnit.MILLISECONDS);
+            newestEventTime = Math.max(newestEventTime, trade.getEventTime());
+            newestTradeTime = Math.max(newestTradeTime, trade.getTradeTime());
+        }
+        newestCommittedEventTime.accumulateAndGet(newestEventTime, Math::max);
+        newestCommittedTradeTime.accumulateAndGet(newestTradeTime, Math::max);
+    }
+
+    /**
+     * Age of the newest committed trade by trade time, or null before the first commit.
+     */
+    public Duration getIngestLag() {
+        long newest = newestCommittedTradeTime.get();
+        return newest == Long.MIN_VALUE ? null : Duration.ofMillis(Math.max(System.currentTimeMillis() - newest, 0));
     }
 
 
@@ -71,50 +140,211 @@ public class TradeService {
             LocalDateTime to,
             String tickSize
     ) {
+        return toDtos(findCandleSeries(symbol, from, to, tickSize));
+    }
+
+    public List<CandleDto> toDtos(CandleSeries candles) {
+        long started = System.nanoTime();
+        List<CandleDto> dtos = candles.toDtos();
+        mappingStageTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return dtos;
+    }
+
+    /**
+     * Candles of {@link #findBySymbolAndFilters} in columnar form, for encoders that do not need
+     * a {@link CandleDto} per candle.
+     */
+    public CandleSeries findCandleSeries(
+            String symbol,
+            LocalDateTime from,
+            LocalDateTime to,
+            String tickSize
+    ) {
 
         long fromEpochRounded = from.truncatedTo(ChronoUnit.HOURS).atZone(ZoneId.of("UTC")).toInstant().toEpochMilli();
         long toEpochRounded = to.truncatedTo(ChronoUnit.HOURS).plusHours(1).minusNanos(1).atZone(ZoneId.of("UTC")).toInstant().toEpochMilli();
-        long tickSizeMs = parseTickSize(tickSize);
-
-        String cacheKey = symbol + "-" + from.toString() + "-" + to.toString() + "-" + tickSize;
-
-        Cache cache = cacheManager.getCache("candles");
-        if (cache != null) {
-            Cache.ValueWrapper cachedValue = cache.get(cacheKey);
-            if (cachedValue != null) {
-                cacheHitCounter.increment();
-                log.info("Cache hit for key: {}", cacheKey);
-                return (List<CandleDto>) cachedValue.get();
-            } else {
-                cacheMissCounter.increment();
-                log.info("Cache miss for key: {}", cacheKey);
+        return findCandleSeries(symbol, fromEpochRounded, toEpochRounded, parseTickSize(tickSize));
+    }
+
+    /**
+     * Like {@link #findCandleSeries(String, LocalDateTime, LocalDateTime, String)}, but with the
+     * finest tick of at least {@code tickSize} (any tick for {@code auto}) that yields at most
+     * {@code maxPoints} candles. Past daily candles, whole days are merged. The tick used is the
+     * result's {@link CandleSeries#getTickMs()}.
+     */
+    public CandleSeries findCandleSeries(
+            String symbol,
+            LocalDateTime from,
+            LocalDateTime to,
+            String tickSize,
+            int maxPoints
+    ) {
+        long fromEpochRounded = from.truncatedTo(ChronoUnit.HOURS).atZone(ZoneId.of("UTC")).toInstant().toEpochMilli();
+        long toEpochRounded = to.truncatedTo(ChronoUnit.HOURS).plusHours(1).minusNanos(1).atZone(ZoneId.of("UTC")).toInstant().toEpochMilli();
+        long minTickMs = "auto".equals(tickSize) ? TICKS_MS[0] : parseTickSize(tickSize);
+
+        for (long tickMs : TICKS_MS) {
+            if (tickMs >= minTickMs && buckets(fromEpochRounded, toEpochRounded, tickMs) <= maxPoints) {
+                return findCandleSeries(symbol, fromEpochRounded, toEpochRounded, tickMs);
             }
         }
+        // Even daily candles are too many; merge them from the (cached) daily series
+        long dayMs = TICKS_MS[TICKS_MS.length - 1];
+        int factor = (int) ((buckets(fromEpochRounded, toEpochRounded, dayMs) + maxPoints - 1) / maxPoints);
+        while (buckets(fromEpochRounded, toEpochRounded, dayMs * factor) > maxPoints) {
+            factor++;
+        }
+        CandleSeries days = findCandleSeries(symbol, fromEpochRounded, toEpochRounded, dayMs);
+        return days.merge(factor);
+    }
 
+    private CandleSeries findCandleSeries(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        return candleSegmentCache.get(symbol, tickMs, fromEpoch, toEpoch,
+                (segmentFrom, segmentTo) -> aggregateTradesTimer.record(() ->
+                        loadCandles(symbol, segmentFrom, segmentTo, tickMs)
+                ));
+    }
 
+    /**
+     * Candles of [fromEpoch, toEpoch] from the hot window and the store, bypassing the segment
+     * cache, for buckets that are still filling.
+     */
+    public CandleSeries findOpenCandles(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        return loadCandles(symbol, fromEpoch, toEpoch, tickMs);
+    }
+
+    // Buckets a range touches, including partial ones at either end
+    private static long buckets(long fromEpoch, long toEpoch, long tickMs) {
+        return Math.floorDiv(toEpoch, tickMs) - Math.floorDiv(fromEpoch, tickMs) + 1;
+    }
+
+    /**
+     * Label of a tick size as accepted by {@link #parseTickSize}, e.g. {@code 5m}, or in the same
+     * style for merged ticks such as {@code 3d}.
+     */
+    public static String formatTick(long tickMs) {
+        if (tickMs % (24 * 60 * 60 * 1000L) == 0) return tickMs / (24 * 60 * 60 * 1000L) + "d";
+        if (tickMs % (60 * 60 * 1000L) == 0) return tickMs / (60 * 60 * 1000L) + "h";
+        if (tickMs % (60 * 1000L) == 0) return tickMs / (60 * 1000L) + "m";
+        if (tickMs % 1000L == 0) return tickMs / 1000L + "s";
+        return tickMs + "ms";
+    }
+
+
+    /**
+     * Writes the candles of [fromEpoch, toEpoch] in chunks of whole cache segments, stopping
+     * after {@code maxRows}, so memory stays bounded by the chunk size whatever the range. Chunks
+     * use cached segments but are not cached themselves, so a stream does not evict other queries.
+     *
+     * @return open time to continue from, or null once the range is exhausted
+     */
+    public Long streamCandles(String symbol, long tickMs, long fromEpoch, long toEpoch, int maxRows,
+                              CandleChunkWriter writer) throws IOException {
+        long segmentMs = CandleSegmentCache.segmentMs(tickMs);
+        int segments = 1;
+        int remaining = maxRows;
+        long start = fromEpoch;
+        while (start <= toEpoch) {
+            long end = Math.min(toEpoch, (Math.floorDiv(start, segmentMs) + segments) * segmentMs - 1);
+            CandleSeries chunk = candleSegmentCache.read(symbol, tickMs, start, end,
+                    (segmentFrom, segmentTo) -> aggregateTradesTimer.record(() ->
+                            loadCandles(symbol, segmentFrom, segmentTo, tickMs)
+                    ));
+            if (chunk.size() > remaining || chunk.size() == remaining && end < toEpoch) {
+                writer.write(chunk, remaining);
+                long next = chunk.getOpenTime(remaining - 1) + tickMs;
+                return next <= toEpoch ? next : null;
+            }
+            writer.write(chunk, chunk.size());
+            remaining -= chunk.size();
+            start = end + 1;
+
+            // Sparse ranges widen the window so they do not cost a query per segment
+            if (chunk.size() < CandleSegmentCache.SEGMENT_CANDLES / 4 && segments < MAX_CHUNK_SEGMENTS) {
+                segments *= 2;
+            } else if (chunk.size() > CandleSegmentCache.SEGMENT_CANDLES && segments > 1) {
+                segments /= 2;
+            }
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    public interface CandleChunkWriter {
+        void write(CandleSeries candles, int count) throws IOException;
+    }
+
+    /**
+     * Writes up to {@code maxRows} raw trades after the keyset ({@code afterTime},
+     * {@code afterTradeId}) with time up to {@code toEpoch}, straight from the store's cursor.
+     *
+     * @return whether trades remain after the last one written
+     */
+    public boolean streamTrades(String symbol, long afterTime, long afterTradeId, long toEpoch, int maxRows,
+                                TradeStore.TradeSink sink) throws IOException {
+        int[] written = {0};
+        // One extra row tells whether another page exists without an empty final page
+        int scanned = tradeStore.scanTrades(symbol, afterTime, afterTradeId, toEpoch, maxRows + 1, trade -> {
+            if (written[0] < maxRows) {
+                sink.accept(trade);
+                written[0]++;
+            }
+        });
+        tapeRowsCounter.increment(written[0]);
+        return scanned > maxRows;
+    }
+
+    // The recent part of a range comes from the in-memory window, everything older from the store
+    private CandleSeries loadCandles(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        Long hotFrom = hotCandleEngine.coveredFrom(symbol, tickMs);
+        if (hotFrom == null) {
+            return findStoredCandles(symbol, fromEpoch, toEpoch, tickMs);
+        }
 
-        List<TradeRepository.CandleProjection> data = aggregateTradesTimer.record(() ->
-                tradeRepository.findCandlesBySymbolAndTimeRange(symbol, fromEpochRounded, toEpochRounded, tickSizeMs)
-        );
+        long split = CandleSeries.alignUp(hotFrom, tickMs);
+        if (split <= fromEpoch) {
+            return aggregateHot(symbol, fromEpoch, toEpoch, tickMs);
+        }
+        if (split > toEpoch) {
+            return findStoredCandles(symbol, fromEpoch, toEpoch, tickMs);
+        }
+        CandleSeries candles = findStoredCandles(symbol, fromEpoch, split - 1, tickMs);
+        candles.addAll(aggregateHot(symbol, split, toEpoch, tickMs));
+        return candles;
+    }
 
-        List<CandleDto> result = data.stream()
-                                        .map(p -> CandleDto.builder()
-                                                .openTime(p.getOpenTime())
-                                                .closeTime(p.getOpenTime() + tickSizeMs - 1)
-                                                .open(p.getOpen())
-                                                .high(p.getHigh())
-                                                .low(p.getLow())
-                                                .close(p.getClose())
-                                                .volume(p.getVolume())
-                                                .tradeCount((int) p.getTradeCount())
-                                                .build())
-                                        .collect(Collectors.toList());
-        cache.put(cacheKey, result);
-        return result;
+    private CandleSeries findStoredCandles(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        return candleQueryGate.execute(symbol, fromEpoch, toEpoch, tickMs,
+                () -> storeStageTimer.record(() -> tradeStore.findCandles(symbol, fromEpoch, toEpoch, tickMs)));
     }
 
+    private CandleSeries aggregateHot(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        return hotStageTimer.record(() -> hotCandleEngine.aggregate(symbol, fromEpoch, toEpoch, tickMs));
+    }
+
+    private static Timer.Builder queryStage(String stage) {
+        return Timer.builder("pastdata.query.stage")
+                .description("Time spent per stage of candle queries")
+                .tag("stage", stage)
+                .publishPercentileHistogram();
+    }
+
+    private static double ageMs(AtomicLong newest) {
+        long value = newest.get();
+        return value == Long.MIN_VALUE ? Double.NaN : System.currentTimeMillis() - value;
+    }
+
+    /**
+     * Whether {@code tickMs} is one of the tick sizes of {@link #parseTickSize}.
+     */
+    public static boolean isTickSize(long tickMs) {
+        for (long tick : TICKS_MS) {
+            if (tick == tickMs) return true;
+        }
+        return false;
+    }
 
-    private long parseTickSize(String tickSize) {
+    public long parseTickSize(String tickSize) {
         return switch (tickSize) {
             case "1ms" -> 1L;
             case "1s" -> 1000L;
@@ -0,0 +1,57 @@
+package org.binance.pastdataservice.store;
+
+import org.binance.pastdataservice.candle.CandleSeries;
+
+/**
+ * Folds time-ordered trades into candles of one tick size. The open bucket carries over
+ * between calls, so consecutive column files feed one series.
+ */
+final class CandleAccumulator {
+
+    private final long tickMs;
+    private final CandleSeries series;
+
+    private long bucket = Long.MIN_VALUE;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+    private double volume;
+    private long count;
+
+    CandleAccumulator(long tickMs) {
+        this.tickMs = tickMs;
+        this.series = new CandleSeries(tickMs, 0);
+    }
+
+    void add(long time, double price, double quantity) {
+        long openTime = Math.floorDiv(time, tickMs) * tickMs;
+        if (openTime != bucket) {
+            emit();
+            bucket = openTime;
+            open = price;
+            high = price;
+            low = price;
+            volume = 0;
+            count = 0;
+        }
+        if (price > high) high = price;
+        if (price < low) low = price;
+        close = price;
+        volume += quantity;
+        count++;
+    }
+
+    CandleSeries finish() {
+        emit();
+        bucket = Long.MIN_VALUE;
+        return series;
+    }
+
+    private void emit() {
+        if (count > 0) {
+            series.add(bucket, open, high, low, close, volume, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package org.binance.pastdataservice.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+/**
+ * Append-only column files of one symbol and UTC day: trade time, price, quantity, trade id and
+ * buyer-maker flag, one fixed-width value per row. {@code time.idx} holds the time of every
+ * {@link #INDEX_INTERVAL}th row, so range scans seek with a binary search and then read the
+ * memory-mapped columns in place.
+ * <p>
+ * Writes come from a single ingest lane per symbol; reads may run concurrently and see every
+ * row published before they started. Rows are kept in trade id order, which for Binance also
+ * orders them by time. Trades above the newest stored id are appended; older ones are looked up
+ * in the id column and skipped if stored, so redelivered batches are idempotent, while ones the
+ * file is missing (a failed batch redelivered after a later one committed) are merged into place
+ * by rewriting the tail. A rewrite is journaled to {@code rewrite.tmp} first and blocks readers
+ * while it is applied.
+ */
+final class ColumnarDayFile implements Closeable {
+
+    static final int INDEX_INTERVAL = 1024;
+
+    private static final int TIME = 0;
+    private static final int PRICE = 1;
+    private static final int QUANTITY = 2;
+    private static final int TRADE_ID = 3;
+    private static final int BUYER_MAKER = 4;
+    private static final String[] NAMES = {"time.col", "price.col", "quantity.col", "trade_id.col", "buyer_maker.col"};
+    private static final int[] WIDTHS = {8, 8, 8, 8, 1};
+    private static final String INDEX = "time.idx";
+    private static final String REWRITE = "rewrite.tmp";
+
+    private final Path dir;
+    private final boolean fsync;
+
+    private volatile int rows;
+    private volatile long[] index = new long[16];
+    private long lastTradeId = Long.MIN_VALUE;
+
+    private FileChannel[] writers;
+    private FileChannel indexWriter;
+    private ByteBuffer[] writeBuffers;
+    private final Object mapLock = new Object();
+    // Held by readers; a tail rewrite takes it exclusively since it changes published rows
+    private final ReadWriteLock rewriteLock = new ReentrantReadWriteLock();
+    private volatile Mapping mapping;
+
+    private record Mapping(int rows, ByteBuffer time, ByteBuffer price, ByteBuffer quantity, ByteBuffer tradeId,
+                           ByteBuffer buyerMaker) {
+    }
+
+    private static final Mapping EMPTY = new Mapping(0, null, null, null, null, null);
+
+    ColumnarDayFile(Path dir, boolean fsync) throws IOException {
+        this.dir = dir;
+        this.fsync = fsync;
+        if (Files.isDirectory(dir)) {
+            recover();
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long sizeBytes() {
+        return (long) rows * (4 * Long.BYTES + 1);
+    }
+
+    /**
+     * Stores {@code trades}, all of this file's symbol and day, skipping ids already stored.
+     *
+     * @return number of rows skipped as duplicates
+     */
+    synchronized int append(List<TradeRecord> trades) throws IOException {
+        List<TradeRecord> newer = new ArrayList<>(trades.size());
+        List<TradeRecord> older = new ArrayList<>();
+        long newest = lastTradeId;
+        for (TradeRecord trade : trades) {
+            if (trade.getTradeId() > newest) {
+                newer.add(trade);
+                newest = trade.getTradeId();
+            } else {
+                older.add(trade);
+            }
+        }
+        int stored = 0;
+        if (!newer.isEmpty()) {
+            appendNewer(newer);
+            stored += newer.size();
+        }
+        if (!older.isEmpty()) {
+            stored += mergeMissing(older);
+        }
+        return trades.size() - stored;
+    }
+
+    // Trades in increasing id order above every stored id go to the end of the columns
+    private void appendNewer(List<TradeRecord> trades) throws IOException {
+        openWriters(trades.size());
+        int start = rows;
+        int n = trades.size();
+        long[] previousIndex = index;
+        try {
+            if ((long) start + n > Integer.MAX_VALUE / Long.BYTES) {
+                throw new IOException("Column files in " + dir + " exceed the mappable size");
+            }
+            for (int i = 0; i < n; i++) {
+                TradeRecord trade = trades.get(i);
+                put(trade.getTradeTime(), trade.getPrice(), trade.getQuantity(), trade.getTradeId(), trade.isBuyerMaker());
+                if ((start + i) % INDEX_INTERVAL == 0) {
+                    addIndexEntry((start + i) / INDEX_INTERVAL, trade.getTradeTime());
+                }
+            }
+            // Bytes past the published row count are simply overwritten by the next append
+            writeColumns(start);
+            writeIndex(start, start + n);
+            force();
+        } catch (IOException | RuntimeException e) {
+            index = previousIndex;
+            throw e;
+        } finally {
+            clearBuffers();
+        }
+        lastTradeId = trades.get(n - 1).getTradeId();
+        rows = start + n;
+    }
+
+    // Trades at or below the newest stored id: stored ones are skipped, missing ones merged in
+    private int mergeMissing(List<TradeRecord> older) throws IOException {
+        older.sort(Comparator.comparingLong(TradeRecord::getTradeId));
+        Mapping m = mapping();
+        List<TradeRecord> missing = new ArrayList<>();
+        for (TradeRecord trade : older) {
+            boolean duplicate = !missing.isEmpty() && missing.get(missing.size() - 1).getTradeId() == trade.getTradeId();
+            if (!duplicate && findRow(m, trade.getTradeId()) < 0) {
+                missing.add(trade);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        int from = firstRowAbove(m, missing.get(0).getTradeId());
+        int total = m.rows - from + missing.size();
+        openWriters(total);
+        try {
+            int row = from;
+            int next = 0;
+            for (int i = 0; i < total; i++) {
+                if (next < missing.size() && (row == m.rows || missing.get(next).getTradeId() < m.tradeId.getLong(row << 3))) {
+                    TradeRecord trade = missing.get(next++);
+                    put(trade.getTradeTime(), trade.getPrice(), trade.getQuantity(), trade.getTradeId(), trade.isBuyerMaker());
+                } else {
+                    put(m.time.getLong(row << 3), m.price.getDouble(row << 3), m.quantity.getDouble(row << 3),
+                            m.tradeId.getLong(row << 3), m.buyerMaker.get(row) != 0);
+                    row++;
+                }
+            }
+            journalRewrite(from);
+            rewriteLock.writeLock().lock();
+            try {
+                writeColumns(from);
+                rows = from + total;
+                rebuildIndex(from);
+                writeIndex(from, rows);
+                force();
+                // Remapped on the next read, the old mapping does not cover the new rows
+                mapping = null;
+            } finally {
+                rewriteLock.writeLock().unlock();
+            }
+            Files.delete(dir.resolve(REWRITE));
+        } finally {
+            clearBuffers();
+        }
+        return missing.size();
+    }
+
+    /**
+     * Feeds the valid trades with time in [fromEpoch, toEpoch] to {@code candles} in time order.
+     */
+    void aggregate(long fromEpoch, long toEpoch, CandleAccumulator candles) throws IOException {
+        rewriteLock.readLock().lock();
+        try {
+            Mapping m = mapping();
+            if (m.rows == 0) return;
+            ByteBuffer time = m.time;
+            ByteBuffer price = m.price;
+            ByteBuffer quantity = m.quantity;
+
+            for (int row = seek(m, fromEpoch); row < m.rows; row++) {
+                long t = time.getLong(row << 3);
+                if (t > toEpoch) break;
+                double p = price.getDouble(row << 3);
+                double q = quantity.getDouble(row << 3);
+                // Same filter as the raw candle query
+                if (p <= 0 || q == 0) continue;
+                candles.add(t, p, q);
+            }
+        } finally {
+            rewriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes the trades after ({@code afterTime}, {@code afterTradeId}) with time up to
+     * {@code toEpoch} to {@code sink}, at most {@code limit} of them, reusing {@code trade}.
+     *
+     * @return number of trades passed
+     */
+    int scan(long afterTime, long afterTradeId, long toEpoch, int limit, TradeRecord trade,
+             TradeStore.TradeSink sink) throws IOException {
+        rewriteLock.readLock().lock();
+        try {
+            Mapping m = mapping();
+            int n = 0;
+            for (int row = seek(m, afterTime); row < m.rows && n < limit; row++) {
+                long t = m.time.getLong(row << 3);
+                if (t > toEpoch) break;
+                long id = m.tradeId.getLong(row << 3);
+                if (t == afterTime && id <= afterTradeId) continue;
+                trade.setTradeTime(t);
+                trade.setTradeId(id);
+                trade.setPrice(m.price.getDouble(row << 3));
+                trade.setQuantity(m.quantity.getDouble(row << 3));
+                trade.setBuyerMaker(m.buyerMaker.get(row) != 0);
+                sink.accept(trade);
+                n++;
+            }
+            return n;
+        } finally {
+            rewriteLock.readLock().unlock();
+        }
+    }
+
+    // Row holding tradeId, or -1; the id column is sorted
+    private static int findRow(Mapping m, long tradeId) {
+        int row = firstRowAbove(m, tradeId - 1);
+        return row < m.rows && m.tradeId.getLong(row << 3) == tradeId ? row : -1;
+    }
+
+    private static int firstRowAbove(Mapping m, long tradeId) {
+        int low = 0;
+        int high = m.rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (m.tradeId.getLong(mid << 3) <= tradeId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Starts from the block before the first one indexed at or after fromEpoch, since equal
+    // times may begin in it
+    private int seek(Mapping m, long fromEpoch) {
+        long[] entries = index;
+        int low = 0;
+        int high = (m.rows + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid] < fromEpoch) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int row = Math.max(low - 1, 0) * INDEX_INTERVAL;
+        while (row < m.rows && m.time.getLong(row << 3) < fromEpoch) {
+            row++;
+        }
+        return row;
+    }
+
+    // Finished days are mapped once; the current day is remapped when it has grown
+    private Mapping mapping() throws IOException {
+        int published = rows;
+        Mapping current = mapping;
+        if (current != null && current.rows >= published) {
+            return current;
+        }
+        if (published == 0) {
+            return EMPTY;
+        }
+        synchronized (mapLock) {
+            if (mapping == null || mapping.rows < published) {
+                mapping = new Mapping(published, map(TIME, published), map(PRICE, published), map(QUANTITY, published),
+                        map(TRADE_ID, published), map(BUYER_MAKER, published));
+            }
+            return mapping;
+        }
+    }
+
+    private MappedByteBuffer map(int column, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(NAMES[column]), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * WIDTHS[column]);
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+    }
+
+    private void openWriters(int batchSize) throws IOException {
+        if (writers == null) {
+            Files.createDirectories(dir);
+            writers = new FileChannel[NAMES.length];
+            writeBuffers = new ByteBuffer[NAMES.length];
+            for (int c = 0; c < NAMES.length; c++) {
+                writers[c] = FileChannel.open(dir.resolve(NAMES[c]), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            indexWriter = FileChannel.open(dir.resolve(INDEX), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        for (int c = 0; c < NAMES.length; c++) {
+            if (writeBuffers[c] == null || writeBuffers[c].capacity() < batchSize * WIDTHS[c]) {
+                writeBuffers[c] = ByteBuffer.allocateDirect(Math.max(batchSize, 1024) * WIDTHS[c])
+                        .order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    private void put(long time, double price, double quantity, long tradeId, boolean buyerMaker) {
+        writeBuffers[TIME].putLong(time);
+        writeBuffers[PRICE].putDouble(price);
+        writeBuffers[QUANTITY].putDouble(quantity);
+        writeBuffers[TRADE_ID].putLong(tradeId);
+        writeBuffers[BUYER_MAKER].put((byte) (buyerMaker ? 1 : 0));
+    }
+
+    private void writeColumns(int fromRow) throws IOException {
+        for (int c = 0; c < writers.length; c++) {
+            ByteBuffer buffer = writeBuffers[c].duplicate().flip();
+            long position = (long) fromRow * WIDTHS[c];
+            while (buffer.hasRemaining()) {
+                position += writers[c].write(buffer, position);
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        if (!fsync) return;
+        for (FileChannel writer : writers) {
+            writer.force(false);
+        }
+        indexWriter.force(false);
+    }
+
+    private void clearBuffers() {
+        for (ByteBuffer buffer : writeBuffers) {
+            buffer.clear();
+        }
+    }
+
+    // The buffered rows from fromRow on: row, count, then each column's bytes
+    private void journalRewrite(int fromRow) throws IOException {
+        Path journal = dir.resolve(REWRITE);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder())
+                    .putInt(fromRow).putInt(writeBuffers[TIME].position() / WIDTHS[TIME]).flip();
+            channel.write(header);
+            for (ByteBuffer column : writeBuffers) {
+                ByteBuffer buffer = column.duplicate().flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(false);
+        }
+    }
+
+    // A journaled rewrite is applied again in full; a torn journal never reached the columns
+    private void replayRewrite() throws IOException {
+        Path journal = dir.resolve(REWRITE);
+        if (!Files.exists(journal)) return;
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(journal)).order(ByteOrder.nativeOrder());
+        int rowWidth = 0;
+        for (int width : WIDTHS) {
+            rowWidth += width;
+        }
+        if (bytes.remaining() >= 8) {
+            int fromRow = bytes.getInt();
+            int count = bytes.getInt();
+            if (count >= 0 && bytes.remaining() == (long) count * rowWidth) {
+                for (int c = 0; c < NAMES.length; c++) {
+                    ByteBuffer column = bytes.slice(bytes.position(), count * WIDTHS[c]);
+                    bytes.position(bytes.position() + count * WIDTHS[c]);
+                    try (FileChannel channel = FileChannel.open(dir.resolve(NAMES[c]), StandardOpenOption.WRITE)) {
+                        long position = (long) fromRow * WIDTHS[c];
+                        while (column.hasRemaining()) {
+                            position += channel.write(column, position);
+                        }
+                        channel.force(false);
+                    }
+                }
+            }
+        }
+        Files.delete(journal);
+    }
+
+    private void rebuildIndex(int fromRow) {
+        int firstBlock = (fromRow + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        int lastBlock = (rows - 1) / INDEX_INTERVAL;
+        ByteBuffer time = writeBuffers[TIME];
+        for (int block = firstBlock; block <= lastBlock; block++) {
+            addIndexEntry(block, time.getLong((block * INDEX_INTERVAL - fromRow) << 3));
+        }
+    }
+
+    private void addIndexEntry(int block, long time) {
+        long[] entries = index;
+        if (block == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        entries[block] = time;
+        // Published before the rows it covers, so readers never see a block without its entry
+        index = entries;
+    }
+
+    private void writeIndex(int fromRow, int toRow) throws IOException {
+        int firstBlock = (fromRow + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        int lastBlock = (toRow - 1) / INDEX_INTERVAL;
+        if (firstBlock > lastBlock) return;
+        ByteBuffer buffer = ByteBuffer.allocate((lastBlock - firstBlock + 1) * Long.BYTES).order(ByteOrder.nativeOrder());
+        for (int block = firstBlock; block <= lastBlock; block++) {
+            buffer.putLong(index[block]);
+        }
+        buffer.flip();
+        long position = (long) firstBlock * Long.BYTES;
+        while (buffer.hasRemaining()) {
+            position += indexWriter.write(buffer, position);
+        }
+    }
+
+    // A crash can leave columns of different lengths; only rows present in every column count
+    private void recover() throws IOException {
+        replayRewrite();
+        long count = Long.MAX_VALUE;
+        for (int c = 0; c < NAMES.length; c++) {
+            Path file = dir.resolve(NAMES[c]);
+            count = Math.min(count, Files.exists(file) ? Files.size(file) / WIDTHS[c] : 0);
+        }
+        int recovered = (int) count;
+        for (int c = 0; c < NAMES.length; c++) {
+            try (FileChannel channel = FileChannel.open(dir.resolve(NAMES[c]), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                channel.truncate((long) recovered * WIDTHS[c]);
+            }
+        }
+        rows = recovered;
+        if (recovered == 0) {
+            Files.deleteIfExists(dir.resolve(INDEX));
+            return;
+        }
+
+        // Rebuild the sparse index from the time column rather than trusting a torn index file
+        ByteBuffer time = map(TIME, recovered);
+        int blocks = (recovered + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        long[] entries = new long[Math.max(16, blocks)];
+        for (int block = 0; block < blocks; block++) {
+            entries[block] = time.getLong(block * INDEX_INTERVAL * Long.BYTES);
+        }
+        index = entries;
+        lastTradeId = map(TRADE_ID, recovered).getLong((recovered - 1) * Long.BYTES);
+
+        try (FileChannel channel = FileChannel.open(dir.resolve(INDEX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            indexWriter = channel;
+            writeIndex(0, recovered);
+        } finally {
+            indexWriter = null;
+        }
+    }
+
+    /**
+     * Releases the write handles; the file stays readable and reopens them on the next append.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writers == null) return;
+        for (FileChannel writer : writers) {
+            writer.close();
+        }
+        indexWriter.close();
+        writers = null;
+        indexWriter = null;
+        writeBuffers = null;
+    }
+}
@@ -0,0 +1,191 @@
+package org.binance.pastdataservice.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local trade storage in memory-mapped column files under {@code storage.columnar.path}, one
+ * directory per symbol and UTC day. Candles are aggregated by a primitive loop over the mapped
+ * columns, so even 1ms and 1s ranges over many days need no database round trips and create no
+ * per-trade objects. Enabled with {@code storage.engine=columnar}; the rollup tables are not
+ * maintained in this mode.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "storage.engine", havingValue = "columnar")
+public class ColumnarTradeStore implements TradeStore {
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final Pattern SYMBOL = Pattern.compile("[A-Za-z0-9_-]{1,20}");
+
+    private final Path root;
+    private final boolean fsync;
+    private final Map<DayKey, ColumnarDayFile> files = new ConcurrentHashMap<>();
+    private final Map<String, Long> writingDay = new ConcurrentHashMap<>();
+    private final Timer writeStageTimer;
+
+    private record DayKey(String symbol, long day) {
+    }
+
+    public ColumnarTradeStore(
+            MeterRegistry meterRegistry,
+            @Value("${storage.columnar.path:./data/trades}") Path root,
+            @Value("${storage.columnar.fsync:true}") boolean fsync
+    ) throws IOException {
+        this.root = root;
+        this.fsync = fsync;
+        Files.createDirectories(root);
+        this.writeStageTimer = Timer.builder("pastdata.ingest.stage")
+                .description("Time spent per stage of trade ingest")
+                .tag("stage", "write")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("pastdata.store.columnar.files", files, Map::size)
+                .description("Symbol/day column files opened by this instance")
+                .register(meterRegistry);
+        Gauge.builder("pastdata.store.columnar.bytes", this, ColumnarTradeStore::sizeBytes)
+                .description("Bytes in column files opened by this instance")
+                .register(meterRegistry);
+        log.info("Columnar trade store at {} (fsync {})", root.toAbsolutePath(), fsync);
+    }
+
+    @Override
+    public String name() {
+        return "columnar";
+    }
+
+    @Override
+    public int append(List<TradeRecord> trades) {
+        Map<DayKey, List<TradeRecord>> byDay = new LinkedHashMap<>();
+        for (TradeRecord trade : trades) {
+            if (!SYMBOL.matcher(trade.getSymbol()).matches()) {
+                log.warn("Dropping trade {} with unsupported symbol '{}'", trade.getTradeId(), trade.getSymbol());
+                continue;
+            }
+            byDay.computeIfAbsent(new DayKey(trade.getSymbol(), Math.floorDiv(trade.getTradeTime(), DAY_MS)),
+                    key -> new ArrayList<>()).add(trade);
+        }
+        int stored = 0;
+        long started = System.nanoTime();
+        try {
+            for (Map.Entry<DayKey, List<TradeRecord>> entry : byDay.entrySet()) {
+                DayKey key = entry.getKey();
+                stored += entry.getValue().size() - file(key).append(entry.getValue());
+                rollDay(key);
+            }
+            return stored;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // Includes the fsync, which is the commit of this store
+            writeStageTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public CandleSeries findCandles(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        CandleAccumulator candles = new CandleAccumulator(tickMs);
+        if (!SYMBOL.matcher(symbol).matches()) {
+            return candles.finish();
+        }
+        try {
+            for (long day = Math.floorDiv(fromEpoch, DAY_MS); day <= Math.floorDiv(toEpoch, DAY_MS); day++) {
+                DayKey key = new DayKey(symbol, day);
+                if (!files.containsKey(key) && !Files.isDirectory(dirOf(key))) continue;
+                file(key).aggregate(fromEpoch, toEpoch, candles);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return candles.finish();
+    }
+
+    @Override
+    public int scanTrades(String symbol, long afterTime, long afterTradeId, long toEpoch, int limit, TradeSink sink)
+            throws IOException {
+        if (!SYMBOL.matcher(symbol).matches()) {
+            return 0;
+        }
+        TradeRecord trade = new TradeRecord();
+        trade.setSymbol(symbol);
+        int n = 0;
+        for (long day = Math.floorDiv(afterTime, DAY_MS); day <= Math.floorDiv(toEpoch, DAY_MS) && n < limit; day++) {
+            DayKey key = new DayKey(symbol, day);
+            if (!files.containsKey(key) && !Files.isDirectory(dirOf(key))) continue;
+            n += file(key).scan(afterTime, afterTradeId, toEpoch, limit - n, trade, sink);
+        }
+        return n;
+    }
+
+    private ColumnarDayFile file(DayKey key) throws IOException {
+        ColumnarDayFile file = files.get(key);
+        if (file != null) {
+            return file;
+        }
+        try {
+            return files.computeIfAbsent(key, k -> {
+                try {
+                    return new ColumnarDayFile(dirOf(k), fsync);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Yesterday stays writable for trades around midnight; older days release their write handles
+    private void rollDay(DayKey key) throws IOException {
+        Long latest = writingDay.get(key.symbol());
+        if (latest == null || key.day() > latest) {
+            writingDay.put(key.symbol(), key.day());
+            ColumnarDayFile old = files.get(new DayKey(key.symbol(), key.day() - 2));
+            if (old != null) old.close();
+        }
+    }
+
+    private Path dirOf(DayKey key) {
+        return root.resolve(key.symbol()).resolve(LocalDate.ofEpochDay(key.day()).toString());
+    }
+
+    private long sizeBytes() {
+        long bytes = 0;
+        for (ColumnarDayFile file : files.values()) {
+            bytes += file.sizeBytes();
+        }
+        return bytes;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (ColumnarDayFile file : files.values()) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.warn("Failed to close column files", e);
+            }
+        }
+    }
+}
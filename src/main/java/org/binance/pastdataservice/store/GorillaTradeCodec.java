@@ -0,0 +1,348 @@
+package org.binance.pastdataservice.store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+/**
+ * Compressed blocks of one symbol's trades in time order, after Facebook's Gorilla: trade time,
+ * trade id and event-time lag are delta-of-delta encoded, price and quantity XOR encoded against
+ * the previous value, and the buyer-maker flag takes one bit. Trade types are stored once per
+ * block and referenced by index, which costs no bits when the block has a single type.
+ * <p>
+ * Layout: trade count (int), type count (byte), each type as length (byte) and ASCII bytes,
+ * then the bit stream. The first trade is stored in full, each later one as
+ * {@code time, id, lag, price, quantity, flag[, type]}.
+ */
+public final class GorillaTradeCodec {
+
+    private GorillaTradeCodec() {
+    }
+
+    /**
+     * Encodes {@code trades}, which must be ordered by trade time and id; the symbol is not stored.
+     */
+    public static byte[] encode(List<TradeRecord> trades) {
+        List<String> types = new ArrayList<>();
+        for (TradeRecord trade : trades) {
+            if (!types.contains(trade.getTradeType())) {
+                types.add(trade.getTradeType());
+            }
+        }
+        int typeBits = 32 - Integer.numberOfLeadingZeros(types.size() - 1);
+
+        BitWriter out = new BitWriter(trades.size() * 12 + 64);
+        out.writeBits(trades.size(), 32);
+        out.writeBits(types.size(), 8);
+        for (String type : types) {
+            byte[] bytes = type == null ? new byte[0] : type.getBytes(StandardCharsets.US_ASCII);
+            out.writeBits(bytes.length, 8);
+            for (byte b : bytes) {
+                out.writeBits(b & 0xFF, 8);
+            }
+        }
+
+        DeltaOfDelta time = new DeltaOfDelta();
+        DeltaOfDelta id = new DeltaOfDelta();
+        DeltaOfDelta lag = new DeltaOfDelta();
+        XorFloat price = new XorFloat();
+        XorFloat quantity = new XorFloat();
+        for (int i = 0; i < trades.size(); i++) {
+            TradeRecord trade = trades.get(i);
+            if (i == 0) {
+                out.writeBits(trade.getTradeTime(), 64);
+                out.writeBits(trade.getTradeId(), 64);
+                out.writeBits(trade.getEventTime() - trade.getTradeTime(), 64);
+                out.writeBits(Double.doubleToRawLongBits(trade.getPrice()), 64);
+                out.writeBits(Double.doubleToRawLongBits(trade.getQuantity()), 64);
+                time.first(trade.getTradeTime());
+                id.first(trade.getTradeId());
+                lag.first(trade.getEventTime() - trade.getTradeTime());
+                price.first(Double.doubleToRawLongBits(trade.getPrice()));
+                quantity.first(Double.doubleToRawLongBits(trade.getQuantity()));
+            } else {
+                time.write(out, trade.getTradeTime());
+                id.write(out, trade.getTradeId());
+                lag.write(out, trade.getEventTime() - trade.getTradeTime());
+                price.write(out, Double.doubleToRawLongBits(trade.getPrice()));
+                quantity.write(out, Double.doubleToRawLongBits(trade.getQuantity()));
+            }
+            out.writeBits(trade.isBuyerMaker() ? 1 : 0, 1);
+            if (typeBits > 0) {
+                out.writeBits(types.indexOf(trade.getTradeType()), typeBits);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes {@code block} in full, e.g. to merge late trades into it.
+     */
+    public static List<TradeRecord> decodeAll(byte[] block, String symbol) {
+        Decoder decoder = new Decoder(block);
+        List<TradeRecord> trades = new ArrayList<>(decoder.remaining());
+        TradeRecord trade = new TradeRecord();
+        trade.setSymbol(symbol);
+        while (decoder.next(trade)) {
+            TradeRecord copy = new TradeRecord();
+            copy.copyFrom(trade);
+            trades.add(copy);
+        }
+        return trades;
+    }
+
+    /**
+     * Reads a block trade by trade into a reused record; the symbol is left to the caller.
+     */
+    public static final class Decoder {
+
+        private final BitReader in;
+        private final String[] types;
+        private final int typeBits;
+        private int remaining;
+        private boolean started;
+
+        private final DeltaOfDelta time = new DeltaOfDelta();
+        private final DeltaOfDelta id = new DeltaOfDelta();
+        private final DeltaOfDelta lag = new DeltaOfDelta();
+        private final XorFloat price = new XorFloat();
+        private final XorFloat quantity = new XorFloat();
+
+        public Decoder(byte[] block) {
+            this.in = new BitReader(block);
+            this.remaining = (int) in.readBits(32);
+            this.types = new String[(int) in.readBits(8)];
+            for (int t = 0; t < types.length; t++) {
+                byte[] bytes = new byte[(int) in.readBits(8)];
+                for (int b = 0; b < bytes.length; b++) {
+                    bytes[b] = (byte) in.readBits(8);
+                }
+                types[t] = bytes.length == 0 ? null : new String(bytes, StandardCharsets.US_ASCII);
+            }
+            this.typeBits = 32 - Integer.numberOfLeadingZeros(types.length - 1);
+        }
+
+        public int remaining() {
+            return remaining;
+        }
+
+        public boolean next(TradeRecord into) {
+            if (remaining == 0) {
+                return false;
+            }
+            long t;
+            long tradeId;
+            long eventLag;
+            long p;
+            long q;
+            if (!started) {
+                t = time.first(in.readBits(64));
+                tradeId = id.first(in.readBits(64));
+                eventLag = lag.first(in.readBits(64));
+                p = price.first(in.readBits(64));
+                q = quantity.first(in.readBits(64));
+                started = true;
+            } else {
+                t = time.read(in);
+                tradeId = id.read(in);
+                eventLag = lag.read(in);
+                p = price.read(in);
+                q = quantity.read(in);
+            }
+            into.setTradeTime(t);
+            into.setTradeId(tradeId);
+            into.setEventTime(t + eventLag);
+            into.setPrice(Double.longBitsToDouble(p));
+            into.setQuantity(Double.longBitsToDouble(q));
+            into.setBuyerMaker(in.readBits(1) != 0);
+            into.setTradeType(types[typeBits > 0 ? (int) in.readBits(typeBits) : 0]);
+            remaining--;
+            return true;
+        }
+    }
+
+    // Zigzag-encoded delta of delta in the smallest of four widths, or all 64 bits
+    private static final class DeltaOfDelta {
+        private long previous;
+        private long delta;
+
+        long first(long value) {
+            previous = value;
+            delta = 0;
+            return value;
+        }
+
+        void write(BitWriter out, long value) {
+            long newDelta = value - previous;
+            long dod = newDelta - delta;
+            long zigzag = (dod << 1) ^ (dod >> 63);
+            if (zigzag == 0) {
+                out.writeBits(0b0, 1);
+            } else if (zigzag >>> 7 == 0) {
+                out.writeBits(0b10, 2);
+                out.writeBits(zigzag, 7);
+            } else if (zigzag >>> 12 == 0) {
+                out.writeBits(0b110, 3);
+                out.writeBits(zigzag, 12);
+            } else if (zigzag >>> 20 == 0) {
+                out.writeBits(0b1110, 4);
+                out.writeBits(zigzag, 20);
+            } else {
+                out.writeBits(0b1111, 4);
+                out.writeBits(zigzag, 64);
+            }
+            previous = value;
+            delta = newDelta;
+        }
+
+        long read(BitReader in) {
+            long zigzag;
+            if (in.readBits(1) == 0) {
+                zigzag = 0;
+            } else if (in.readBits(1) == 0) {
+                zigzag = in.readBits(7);
+            } else if (in.readBits(1) == 0) {
+                zigzag = in.readBits(12);
+            } else if (in.readBits(1) == 0) {
+                zigzag = in.readBits(20);
+            } else {
+                zigzag = in.readBits(64);
+            }
+            delta += (zigzag >>> 1) ^ -(zigzag & 1);
+            previous += delta;
+            return previous;
+        }
+    }
+
+    // '0' for an unchanged value, '10' for meaningful bits inside the previous window, '11' with a new window
+    private static final class XorFloat {
+        private long previous;
+        private int leading = Integer.MAX_VALUE;
+        private int trailing;
+
+        long first(long bits) {
+            previous = bits;
+            leading = Integer.MAX_VALUE;
+            trailing = 0;
+            return bits;
+        }
+
+        void write(BitWriter out, long bits) {
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBits(0b0, 1);
+                return;
+            }
+            int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading != Integer.MAX_VALUE && newLeading >= leading && newTrailing >= trailing) {
+                out.writeBits(0b10, 2);
+                out.writeBits(xor >>> trailing, 64 - leading - trailing);
+                return;
+            }
+            leading = newLeading;
+            trailing = newTrailing;
+            int meaningful = 64 - leading - trailing;
+            out.writeBits(0b11, 2);
+            out.writeBits(leading, 5);
+            // 64 meaningful bits do not fit in six bits and are written as 0
+            out.writeBits(meaningful & 63, 6);
+            out.writeBits(xor >>> trailing, meaningful);
+        }
+
+        long read(BitReader in) {
+            if (in.readBits(1) == 0) {
+                return previous;
+            }
+            if (in.readBits(1) != 0) {
+                leading = (int) in.readBits(5);
+                int meaningful = (int) in.readBits(6);
+                if (meaningful == 0) {
+                    meaningful = 64;
+                }
+                trailing = 64 - leading - meaningful;
+            }
+            long xor = in.readBits(64 - leading - trailing) << trailing;
+            previous ^= xor;
+            return previous;
+        }
+    }
+
+    private static final class BitWriter {
+        private byte[] bytes;
+        private long bitPosition;
+
+        BitWriter(int initialBytes) {
+            this.bytes = new byte[Math.max(initialBytes, 16)];
+        }
+
+        // Writes the low 'bits' bits of value, most significant first
+        void writeBits(long value, int bits) {
+            while (bits > 0) {
+                int index = (int) (bitPosition >>> 3);
+                if (index == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                int free = 8 - (int) (bitPosition & 7);
+                int n = Math.min(free, bits);
+                int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+                bytes[index] |= (byte) (chunk << (free - n));
+                bits -= n;
+                bitPosition += n;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, (int) ((bitPosition + 7) >>> 3));
+        }
+    }
+
+    private static final class BitReader {
+        private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+        private final byte[] bytes;
+        private long bitPosition;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        // Reads from a 64-bit window at the current byte, plus one more byte when the bits cross it
+        long readBits(int bits) {
+            if (bits == 0) {
+                return 0;
+            }
+            int index = (int) (bitPosition >>> 3);
+            int offset = (int) (bitPosition & 7);
+            long value = (word(index) << offset) >>> (64 - bits);
+            int extra = offset + bits - 64;
+            if (extra > 0) {
+                value |= (byteAt(index + 8) & 0xFFL) >>> (8 - extra);
+            }
+            bitPosition += bits;
+            return value;
+        }
+
+        private long word(int index) {
+            if (index + Long.BYTES <= bytes.length) {
+                return (long) LONG_BE.get(bytes, index);
+            }
+            long word = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                word = (word << 8) | (byteAt(index + i) & 0xFFL);
+            }
+            return word;
+        }
+
+        private int byteAt(int index) {
+            return index < bytes.length ? bytes[index] : 0;
+        }
+    }
+}
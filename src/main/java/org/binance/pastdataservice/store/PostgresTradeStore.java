@@ -0,0 +1,194 @@
+package org.binance.pastdataservice.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.repository.TradeArchiveRepository;
+import org.binance.pastdataservice.repository.TradeBatchWriter;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.binance.pastdataservice.repository.TradeTapeReader;
+import org.binance.pastdataservice.service.CandleRollupService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Trades in the {@code trades} table, with candles served from the rollups where they cover
+ * the range and aggregated from raw trades elsewhere. Raw trades before the archive watermark
+ * are decoded from the compressed blocks of {@link TradeArchiveRepository} instead.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.engine", havingValue = "postgres", matchIfMissing = true)
+public class PostgresTradeStore implements TradeStore {
+
+    private final TradeRepository tradeRepository;
+    private final TradeBatchWriter tradeBatchWriter;
+    private final CandleRollupService candleRollupService;
+    private final TradeTapeReader tradeTapeReader;
+    private final TradeArchiveRepository tradeArchiveRepository;
+
+    private final Timer writeStageTimer;
+    private final Timer rollupStageTimer;
+    private final Timer commitStageTimer;
+
+    public PostgresTradeStore(
+            TradeRepository tradeRepository,
+            TradeBatchWriter tradeBatchWriter,
+            CandleRollupService candleRollupService,
+            TradeTapeReader tradeTapeReader,
+            TradeArchiveRepository tradeArchiveRepository,
+            MeterRegistry meterRegistry
+    ) {
+        this.tradeRepository = tradeRepository;
+        this.tradeBatchWriter = tradeBatchWriter;
+        this.candleRollupService = candleRollupService;
+        this.tradeTapeReader = tradeTapeReader;
+        this.tradeArchiveRepository = tradeArchiveRepository;
+        this.writeStageTimer = ingestStage(meterRegistry, "write");
+        this.rollupStageTimer = ingestStage(meterRegistry, "rollup");
+        this.commitStageTimer = ingestStage(meterRegistry, "commit");
+    }
+
+    @Override
+    public String name() {
+        return tradeBatchWriter.name();
+    }
+
+    @Override
+    @Transactional
+    public int append(List<TradeRecord> trades) {
+        TransactionSynchronizationManager.registerSynchronization(new CommitTiming());
+        List<TradeRecord> inserted = writeStageTimer.record(() -> tradeBatchWriter.write(trades));
+        // Duplicates are already part of the rollups
+        rollupStageTimer.record(() -> candleRollupService.apply(inserted));
+        return inserted.size();
+    }
+
+    // Rollups serve every bucket from their coverage start on; only older buckets and 1ms ticks scan raw trades.
+    // Read-only, so the queries run on the query pool; one snapshot, so the archive watermark matches the rows
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public CandleSeries findCandles(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        long baseTickMs = candleRollupService.baseTickFor(tickMs);
+        Long coveredFrom = baseTickMs == 0 ? null : candleRollupService.coveredFrom(symbol);
+        if (coveredFrom == null) {
+            return rawCandles(symbol, fromEpoch, toEpoch, tickMs);
+        }
+
+        long split = CandleSeries.alignUp(coveredFrom, tickMs);
+        if (split <= fromEpoch) {
+            return CandleSeries.of(tickMs, candleRollupService.findCandles(symbol, baseTickMs, fromEpoch, toEpoch, tickMs));
+        }
+        if (split > toEpoch) {
+            return rawCandles(symbol, fromEpoch, toEpoch, tickMs);
+        }
+        CandleSeries candles = rawCandles(symbol, fromEpoch, split - 1, tickMs);
+        candles.addAll(CandleSeries.of(tickMs, candleRollupService.findCandles(symbol, baseTickMs, split, toEpoch, tickMs)));
+        return candles;
+    }
+
+    // Read-only transaction on the query pool, so the driver streams through a cursor instead of buffering the page;
+    // one snapshot, so the archive watermark matches the rows
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public int scanTrades(String symbol, long afterTime, long afterTradeId, long toEpoch, int limit, TradeSink sink)
+            throws IOException {
+        Long archivedBefore = tradeArchiveRepository.findArchivedBefore();
+        if (archivedBefore == null || afterTime >= archivedBefore) {
+            return tradeTapeReader.scan(symbol, afterTime, afterTradeId, toEpoch, limit, sink);
+        }
+        int n = scanArchive(symbol, afterTime, afterTradeId, Math.min(toEpoch, archivedBefore - 1), limit, sink);
+        if (n < limit && toEpoch >= archivedBefore) {
+            // Every trade id sorts before Long.MAX_VALUE, so this starts at the watermark itself
+            n += tradeTapeReader.scan(symbol, archivedBefore - 1, Long.MAX_VALUE, toEpoch, limit - n, sink);
+        }
+        return n;
+    }
+
+    private CandleSeries rawCandles(String symbol, long fromEpoch, long toEpoch, long tickMs) {
+        Long archivedBefore = tradeArchiveRepository.findArchivedBefore();
+        if (archivedBefore == null || archivedBefore <= fromEpoch) {
+            return CandleSeries.of(tickMs, tradeRepository.findCandlesBySymbolAndTimeRange(symbol, fromEpoch, toEpoch, tickMs));
+        }
+        // The watermark is a day boundary, so no bucket is split between archive and table
+        long archivedTo = Math.min(toEpoch, archivedBefore - 1);
+        CandleAccumulator candles = new CandleAccumulator(tickMs);
+        TradeRecord trade = new TradeRecord();
+        tradeArchiveRepository.scanBlocks(symbol, fromEpoch, archivedTo, (blockStart, data) -> {
+            GorillaTradeCodec.Decoder decoder = new GorillaTradeCodec.Decoder(data);
+            while (decoder.next(trade)) {
+                long t = trade.getTradeTime();
+                if (t < fromEpoch) continue;
+                if (t > archivedTo) return false;
+                // Same filter as the raw candle query
+                if (trade.getPrice() <= 0 || trade.getQuantity() == 0) continue;
+                candles.add(t, trade.getPrice(), trade.getQuantity());
+            }
+            return true;
+        });
+        CandleSeries series = candles.finish();
+        if (toEpoch >= archivedBefore) {
+            series.addAll(CandleSeries.of(tickMs,
+                    tradeRepository.findCandlesBySymbolAndTimeRange(symbol, archivedBefore, toEpoch, tickMs)));
+        }
+        return series;
+    }
+
+    private int scanArchive(String symbol, long afterTime, long afterTradeId, long toEpoch, int limit, TradeSink sink)
+            throws IOException {
+        TradeRecord trade = new TradeRecord();
+        int[] count = {0};
+        try {
+            tradeArchiveRepository.scanBlocks(symbol, afterTime, toEpoch, (blockStart, data) -> {
+                GorillaTradeCodec.Decoder decoder = new GorillaTradeCodec.Decoder(data);
+                while (decoder.next(trade)) {
+                    long t = trade.getTradeTime();
+                    if (t < afterTime || t == afterTime && trade.getTradeId() <= afterTradeId) continue;
+                    if (t > toEpoch || count[0] == limit) return false;
+                    trade.setSymbol(symbol);
+                    try {
+                        sink.accept(trade);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                }
+                return true;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    private static Timer ingestStage(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("pastdata.ingest.stage")
+                .description("Time spent per stage of trade ingest")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private class CommitTiming implements TransactionSynchronization {
+        private long started;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            started = System.nanoTime();
+        }
+
+        @Override
+        public void afterCommit() {
+            commitStageTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.binance.pastdataservice.store;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+
+/**
+ * Persists ingested trades and computes candles over them. Selected per deployment with
+ * {@code storage.engine} ({@code postgres} or {@code columnar}).
+ */
+public interface TradeStore {
+
+    String name();
+
+    /**
+     * Stores the trades not stored yet, so redelivered or replayed trades are skipped.
+     *
+     * @return number of trades actually stored
+     */
+    int append(List<TradeRecord> trades);
+
+    /**
+     * Candles of {@code tickMs} opening in [fromEpoch, toEpoch], ordered by open time.
+     */
+    CandleSeries findCandles(String symbol, long fromEpoch, long toEpoch, long tickMs);
+
+    /**
+     * Feeds the trades of {@code symbol} after the keyset ({@code afterTime}, {@code afterTradeId})
+     * up to {@code toEpoch} to {@code sink}, ordered by trade time then trade id, stopping after
+     * {@code limit} trades. Rows are streamed rather than collected.
+     *
+     * @return number of trades passed to {@code sink}
+     */
+    int scanTrades(String symbol, long afterTime, long afterTradeId, long toEpoch, int limit, TradeSink sink)
+            throws IOException;
+
+    /**
+     * Receives scanned trades. The record is reused for the next row, and only symbol, trade id,
+     * trade time, price, quantity and buyer-maker are populated.
+     */
+    @FunctionalInterface
+    interface TradeSink {
+        void accept(TradeRecord trade) throws IOException;
+    }
+}
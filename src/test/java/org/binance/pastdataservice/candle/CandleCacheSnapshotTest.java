@@ -0,0 +1,89 @@
+package org.binance.pastdataservice.candle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CandleCacheSnapshotTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long DAY = 1440 * MINUTE;
+    private static final long D0 = 20_000 * DAY;
+
+    @TempDir
+    Path dir;
+
+    private final List<long[]> loads = new ArrayList<>();
+    private SimpleMeterRegistry registry;
+    private CandleCacheSnapshot snapshot;
+
+    @Test
+    void restoresSegmentsAfterRestartWithoutLoading() {
+        CandleSegmentCache before = segmentCache(Duration.ofHours(1));
+        CandleSeries expected = before.get("BTCUSDT", MINUTE, D0, D0 + 2 * DAY - 1, this::load);
+        snapshot.stop();
+
+        // A new cache and snapshot, as after a restart
+        CandleSegmentCache after = segmentCache(Duration.ofHours(1));
+        CandleSeries restored = after.get("BTCUSDT", MINUTE, D0, D0 + 2 * DAY - 1, this::load);
+
+        assertEquals(1, loads.size());
+        assertEquals(expected.size(), restored.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getOpenTime(i), restored.getOpenTime(i));
+            assertEquals(expected.getClose(i), restored.getClose(i));
+            assertEquals(expected.getTradeCount(i), restored.getTradeCount(i));
+        }
+        assertEquals(2, registry.counter("pastdata.cache.snapshot.restored").count());
+        // Taken once; the cache holds it from now on
+        assertNull(snapshot.take(new CandleSegmentKey("BTCUSDT", MINUTE, D0 / DAY)));
+    }
+
+    @Test
+    void carriesOverSegmentsNotYetRestored() {
+        segmentCache(Duration.ofHours(1)).get("BTCUSDT", MINUTE, D0, D0 + DAY - 1, this::load);
+        snapshot.stop();
+        segmentCache(Duration.ofHours(1));
+        snapshot.stop();
+
+        segmentCache(Duration.ofHours(1)).get("BTCUSDT", MINUTE, D0, D0 + DAY - 1, this::load);
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    void skipsSegmentsPastTheirExpiry() {
+        segmentCache(Duration.ofHours(1)).get("BTCUSDT", MINUTE, D0, D0 + DAY - 1, this::load);
+        snapshot.stop();
+
+        segmentCache(Duration.ZERO).get("BTCUSDT", MINUTE, D0, D0 + DAY - 1, this::load);
+        assertEquals(2, loads.size());
+    }
+
+    private CandleSegmentCache segmentCache(Duration expireAfterWrite) {
+        registry = new SimpleMeterRegistry();
+        Cache<CandleSegmentKey, CandleSeries> cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+        snapshot = new CandleCacheSnapshot(cache, registry, dir.resolve("candles.snap"), expireAfterWrite);
+        return new CandleSegmentCache(cache, registry, Duration.ofMinutes(1), snapshot);
+    }
+
+    private CandleSeries load(long fromEpoch, long toEpoch) {
+        loads.add(new long[] {fromEpoch, toEpoch});
+        CandleSeries series = new CandleSeries(MINUTE, 0);
+        for (long t = fromEpoch; t <= toEpoch; t += 7 * MINUTE) {
+            series.add(t, 1, 2, 0.5, t % 13, 3, t % 5);
+        }
+        return series;
+    }
+}
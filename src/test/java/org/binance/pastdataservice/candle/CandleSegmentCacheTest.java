@@ -0,0 +1,119 @@
+package org.binance.pastdataservice.candle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class CandleSegmentCacheTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 1440 * MINUTE;
+    private static final long D0 = 20_000 * DAY; // day aligned, long closed
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Cache<CandleSegmentKey, CandleSeries> segments = Caffeine.newBuilder().build();
+    private final CandleSegmentCache cache = new CandleSegmentCache(segments, registry, Duration.ofMinutes(1), null);
+    private final List<long[]> loads = new ArrayList<>();
+
+    @Test
+    void servesRepeatedQueriesFromClosedSegments() {
+        CandleSeries first = cache.get("BTCUSDT", MINUTE, D0 + 60 * MINUTE, D0 + DAY + 120 * MINUTE - 1, this::load);
+        CandleSeries second = cache.get("BTCUSDT", MINUTE, D0 + 90 * MINUTE, D0 + DAY + 30 * MINUTE - 1, this::load);
+
+        // Both adjacent days come from a single query and are then reused
+        assertEquals(1, loads.size());
+        assertEquals(D0, loads.get(0)[0]);
+        assertEquals(D0 + 2 * DAY - 1, loads.get(0)[1]);
+
+        assertEquals(1500, first.size());
+        assertEquals(D0 + 60 * MINUTE, first.getOpenTime(0));
+        assertEquals(D0 + DAY + 119 * MINUTE, first.getOpenTime(first.size() - 1));
+        assertEquals(1380, second.size());
+        assertEquals(D0 + 90 * MINUTE, second.getOpenTime(0));
+
+        assertEquals(2, registry.counter("pastdata.cache.hits").count());
+        assertEquals(2, registry.counter("pastdata.cache.misses").count());
+    }
+
+    @Test
+    void computesOpenSegmentOnEveryQuery() {
+        long now = System.currentTimeMillis();
+        long today = Math.floorDiv(now, DAY) * DAY;
+
+        cache.get("BTCUSDT", MINUTE, today - DAY, now, this::load);
+        cache.get("BTCUSDT", MINUTE, today - DAY, now, this::load);
+
+        assertEquals(3, loads.size());
+        assertEquals(today, loads.get(1)[0]);
+        assertEquals(today, loads.get(2)[0]);
+    }
+
+    @Test
+    void capsSegmentsOfCoarseTicksAtADay() {
+        assertEquals(DAY, CandleSegmentCache.segmentMs(MINUTE));
+        assertEquals(DAY, CandleSegmentCache.segmentMs(HOUR));
+        assertEquals(DAY, CandleSegmentCache.segmentMs(4 * HOUR));
+        assertEquals(DAY, CandleSegmentCache.segmentMs(DAY));
+        assertEquals(24 * MINUTE, CandleSegmentCache.segmentMs(1000));
+    }
+
+    @Test
+    void cachesClosedDaysOfCoarseTicks() {
+        long now = System.currentTimeMillis();
+        long today = Math.floorDiv(now, DAY) * DAY;
+
+        cache.get("BTCUSDT", HOUR, today - 30 * DAY, now, (from, to) -> load(HOUR, from, to));
+        loads.clear();
+        CandleSeries second = cache.get("BTCUSDT", HOUR, today - 30 * DAY, now, (from, to) -> load(HOUR, from, to));
+
+        // Only the day still open is computed again
+        assertEquals(1, loads.size());
+        assertTrue(loads.get(0)[0] >= today - DAY);
+        assertTrue(registry.counter("pastdata.cache.hits").count() >= 29);
+        assertEquals(today - 30 * DAY, second.getOpenTime(0));
+        assertEquals(Math.floorDiv(now, HOUR) * HOUR, second.getOpenTime(second.size() - 1));
+    }
+
+    @Test
+    void readsAroundCachedSegmentsWithoutCachingOthers() {
+        cache.get("BTCUSDT", MINUTE, D0 + DAY, D0 + 2 * DAY - 1, this::load);
+        loads.clear();
+
+        CandleSeries read = cache.read("BTCUSDT", MINUTE, D0 + 30 * MINUTE, D0 + 3 * DAY - 1, this::load);
+
+        // The cached day splits the range into two loads, and nothing new is cached
+        assertEquals(2, loads.size());
+        assertEquals(D0 + 30 * MINUTE, loads.get(0)[0]);
+        assertEquals(D0 + DAY - 1, loads.get(0)[1]);
+        assertEquals(D0 + 2 * DAY, loads.get(1)[0]);
+        assertEquals(D0 + 3 * DAY - 1, loads.get(1)[1]);
+        assertEquals(3 * 1440 - 30, read.size());
+        for (int i = 1; i < read.size(); i++) {
+            assertEquals(MINUTE, read.getOpenTime(i) - read.getOpenTime(i - 1));
+        }
+        assertEquals(1, segments.estimatedSize());
+        assertEquals(1, registry.counter("pastdata.cache.hits").count());
+    }
+
+    private CandleSeries load(long fromEpoch, long toEpoch) {
+        return load(MINUTE, fromEpoch, toEpoch);
+    }
+
+    private CandleSeries load(long tickMs, long fromEpoch, long toEpoch) {
+        loads.add(new long[] {fromEpoch, toEpoch});
+        CandleSeries series = new CandleSeries(tickMs, 0);
+        for (long t = fromEpoch; t <= toEpoch; t += tickMs) {
+            series.add(t, 1, 2, 0.5, 1.5, 10, 3);
+        }
+        return series;
+    }
+}
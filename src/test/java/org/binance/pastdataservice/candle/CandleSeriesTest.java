@@ -0,0 +1,34 @@
+package org.binance.pastdataservice.candle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class CandleSeriesTest {
+
+    private static final long DAY = 86_400_000L;
+    private static final long D0 = 20_001 * DAY; // 3-day aligned
+
+    @Test
+    void mergesAdjacentCandlesExactly() {
+        CandleSeries days = new CandleSeries(DAY, 0);
+        days.add(D0, 10, 12, 9, 11, 1.0, 2);
+        days.add(D0 + DAY, 11, 15, 10, 14, 2.0, 3);
+        // gap day D0 + 2 * DAY
+        days.add(D0 + 3 * DAY, 14, 14, 8, 9, 0.5, 1);
+
+        CandleSeries merged = days.merge(3);
+
+        assertEquals(3 * DAY, merged.getTickMs());
+        assertEquals(2, merged.size());
+        assertEquals(D0, merged.getOpenTime(0));
+        assertEquals(10, merged.getOpen(0));
+        assertEquals(15, merged.getHigh(0));
+        assertEquals(9, merged.getLow(0));
+        assertEquals(14, merged.getClose(0));
+        assertEquals(3.0, merged.getVolume(0));
+        assertEquals(5, merged.getTradeCount(0));
+        assertEquals(D0 + 3 * DAY, merged.getOpenTime(1));
+        assertEquals(9, merged.getClose(1));
+    }
+}
@@ -0,0 +1,68 @@
+package org.binance.pastdataservice.candle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.Test;
+
+class HotCandleEngineTest {
+
+    private static final long T0 = 1_769_333_640_000L; // minute aligned
+
+    private final HotCandleEngine engine = new HotCandleEngine(new SimpleMeterRegistry(), true,
+            Duration.ofSeconds(1), Duration.ofMinutes(10), 4);
+
+    @Test
+    void aggregatesSlotsIntoRequestedTick() {
+        // The first slot seen may be partial, so coverage starts right after it
+        trade(0, T0 - 500, 7.0, 1.0);
+        trade(1, T0 + 1_500, 10.0, 1.0);
+        trade(2, T0 + 2_100, 12.0, 2.0);
+        trade(3, T0 + 59_000, 9.0, 0.5);
+        trade(4, T0 + 61_000, 11.0, 1.0);
+
+        CandleSeries candles = engine.aggregate("BTCUSDT", T0, T0 + 120_000, 60_000);
+
+        assertEquals(2, candles.size());
+        assertEquals(T0, candles.getOpenTime(0));
+        assertEquals(10.0, candles.getOpen(0));
+        assertEquals(12.0, candles.getHigh(0));
+        assertEquals(9.0, candles.getLow(0));
+        assertEquals(9.0, candles.getClose(0));
+        assertEquals(3.5, candles.getVolume(0));
+        assertEquals(3, candles.getTradeCount(0));
+        assertEquals(T0 + 60_000, candles.getOpenTime(1));
+        assertEquals(1, candles.getTradeCount(1));
+    }
+
+    @Test
+    void skipsRedeliveredTradesAndCoversFromNextSlot() {
+        trade(9, T0 + 1_500, 10.0, 1.0);
+        trade(10, T0 + 2_500, 10.0, 1.0);
+        trade(10, T0 + 2_500, 10.0, 1.0);
+        trade(11, T0 + 2_600, 10.0, 1.0);
+
+        assertEquals(T0 + 2_000, engine.coveredFrom("BTCUSDT", 1_000));
+        assertNull(engine.coveredFrom("BTCUSDT", 1));
+        CandleSeries candles = engine.aggregate("BTCUSDT", T0, T0 + 3_000, 1_000);
+        assertEquals(1, candles.size());
+        assertEquals(2, candles.getTradeCount(0));
+    }
+
+    @Test
+    void expiresSlotsOlderThanWindow() {
+        trade(1, T0, 10.0, 1.0);
+        trade(2, T0 + Duration.ofMinutes(15).toMillis(), 11.0, 1.0);
+
+        assertEquals(T0 + Duration.ofMinutes(5).toMillis() + 1_000, engine.coveredFrom("BTCUSDT", 60_000));
+        assertEquals(1, engine.aggregate("BTCUSDT", T0, T0 + Duration.ofMinutes(20).toMillis(), 60_000).size());
+    }
+
+    private void trade(long id, long time, double price, double quantity) {
+        engine.onTrade(new TradeRecord("BTCUSDT", id, price, quantity, "MARKET", false, time, time));
+    }
+}
@@ -0,0 +1,123 @@
+package org.binance.pastdataservice.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.repository.TradeArchiveRepository;
+import org.binance.pastdataservice.repository.TradeBatchWriter;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.binance.pastdataservice.repository.TradeTapeReader;
+import org.binance.pastdataservice.service.CandleRollupService;
+import org.binance.pastdataservice.store.PostgresTradeStore;
+import org.binance.pastdataservice.store.TradeStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+/**
+ * Runs {@link PostgresTradeStore} in a transactional context on two stub pools and checks which
+ * pool its statements end up on.
+ */
+class DataSourceConfigTest {
+
+    private static final HikariDataSource writePool = Mockito.mock(HikariDataSource.class);
+    private static final HikariDataSource queryPool = Mockito.mock(HikariDataSource.class);
+    private static final TradeRepository tradeRepository = Mockito.mock(TradeRepository.class);
+    private static final TradeBatchWriter tradeBatchWriter = Mockito.mock(TradeBatchWriter.class);
+
+    private final Connection writeConnection = Mockito.mock(Connection.class);
+    private final Connection queryConnection = Mockito.mock(Connection.class);
+    private AnnotationConfigApplicationContext context;
+    private TradeStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Mockito.reset(writePool, queryPool, tradeRepository, tradeBatchWriter);
+        stubPool(writePool, writeConnection);
+        stubPool(queryPool, queryConnection);
+        context = new AnnotationConfigApplicationContext(TestConfig.class);
+        store = context.getBean(TradeStore.class);
+        DataSource dataSource = context.getBean(DataSource.class);
+
+        // The repositories run one statement on the transaction's connection
+        Mockito.when(tradeRepository.findCandlesBySymbolAndTimeRange(
+                Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong())).thenAnswer(invocation -> {
+            DataSourceUtils.getConnection(dataSource).prepareStatement("SELECT 1");
+            return List.of();
+        });
+        Mockito.when(tradeBatchWriter.write(Mockito.anyList())).thenAnswer(invocation -> {
+            DataSourceUtils.getConnection(dataSource).prepareStatement("INSERT");
+            return invocation.getArgument(0);
+        });
+    }
+
+    @AfterEach
+    void close() {
+        context.close();
+    }
+
+    @Test
+    void routesReadOnlyTransactionsToTheQueryPool() throws Exception {
+        store.findCandles("BTCUSDT", 0, 60_000, 60_000);
+
+        Mockito.verify(queryConnection).prepareStatement("SELECT 1");
+        Mockito.verify(queryConnection).setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        Mockito.verify(queryConnection).commit();
+        Mockito.verify(writeConnection, Mockito.never()).prepareStatement(Mockito.anyString());
+    }
+
+    @Test
+    void keepsWritesOnTheWritePool() throws Exception {
+        TradeRecord trade = new TradeRecord("BTCUSDT", 1, 1.0, 1.0, "MARKET", false, 1, 1);
+        assertEquals(1, store.append(List.of(trade)));
+
+        Mockito.verify(writeConnection).prepareStatement("INSERT");
+        Mockito.verify(writeConnection).commit();
+        Mockito.verify(queryPool, Mockito.never()).getConnection();
+    }
+
+    private static void stubPool(HikariDataSource pool, Connection connection) throws Exception {
+        Mockito.when(pool.getConnection()).thenReturn(connection);
+        Mockito.when(connection.getAutoCommit()).thenReturn(true);
+        Mockito.when(connection.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+        Mockito.when(connection.prepareStatement(Mockito.anyString())).thenReturn(Mockito.mock(PreparedStatement.class));
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TestConfig {
+
+        @Bean
+        DataSource dataSource() {
+            return new DataSourceConfig().dataSource(writePool, queryPool);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        TradeStore tradeStore() {
+            return new PostgresTradeStore(tradeRepository, tradeBatchWriter, Mockito.mock(CandleRollupService.class),
+                    Mockito.mock(TradeTapeReader.class), Mockito.mock(TradeArchiveRepository.class),
+                    new SimpleMeterRegistry());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.binance.pastdataservice.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RabbitShardConfigTest {
+
+    @Test
+    void refusesToStartWithoutAHashSource() {
+        RabbitShardConfig config = config("", false);
+
+        assertThrows(IllegalStateException.class, config::shardTopology);
+    }
+
+    @Test
+    void hashesTheConfiguredHeader() {
+        CustomExchange exchange = shardExchange(config("symbol", false));
+
+        assertEquals(Map.of("hash-header", "symbol"), exchange.getArguments());
+    }
+
+    @Test
+    void hashesTheRoutingKeyWhenAskedTo() {
+        CustomExchange exchange = shardExchange(config("", true));
+
+        assertEquals(Map.of(), exchange.getArguments());
+    }
+
+    private static CustomExchange shardExchange(RabbitShardConfig config) {
+        return config.shardTopology().getDeclarablesByType(CustomExchange.class).get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RabbitShardConfig config(String hashHeader, boolean hashRoutingKey) {
+        RabbitShardConfig config = new RabbitShardConfig(null, new SimpleMeterRegistry(),
+                Mockito.mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(config, "exchange", "trades");
+        ReflectionTestUtils.setField(config, "shardExchange", "trades.sharded");
+        ReflectionTestUtils.setField(config, "shards", 2);
+        ReflectionTestUtils.setField(config, "owned", "all");
+        ReflectionTestUtils.setField(config, "hashHeader", hashHeader);
+        ReflectionTestUtils.setField(config, "hashRoutingKey", hashRoutingKey);
+        return config;
+    }
+}
@@ -0,0 +1,76 @@
+package org.binance.pastdataservice.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.junit.jupiter.api.Test;
+
+class CandleBinaryEncoderTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long T0 = 1_700_000_000_000L / MINUTE * MINUTE;
+
+    @Test
+    void roundTripsSparseSeries() throws IOException {
+        CandleSeries candles = new CandleSeries(MINUTE, 4);
+        candles.add(T0, 100.5, 101, 99.25, 100, 3.5, 7);
+        candles.add(T0 + MINUTE, 100, 100, 100, 100, 0.001, 1);
+        // Gaps wider than one varint byte
+        candles.add(T0 + 500 * MINUTE, 90, 95, 89, 94, 12, 300_000);
+
+        CandleSeries decoded = CandleBinaryEncoder.decode(new ByteArrayInputStream(encode(candles)));
+
+        assertEquals(MINUTE, decoded.getTickMs());
+        assertEquals(candles.toDtos(), decoded.toDtos());
+    }
+
+    @Test
+    void roundTripsEmptySeries() throws IOException {
+        CandleSeries decoded = CandleBinaryEncoder.decode(new ByteArrayInputStream(encode(new CandleSeries(MINUTE, 0))));
+        assertEquals(0, decoded.size());
+    }
+
+    @Test
+    void rejectsForeignPayload() {
+        assertThrows(IOException.class, () -> CandleBinaryEncoder.decode(new ByteArrayInputStream("[{}]".getBytes())));
+    }
+
+    @Test
+    void isSmallerThanJson() throws IOException {
+        CandleSeries candles = new CandleSeries(MINUTE, 50_000);
+        double price = 30_000;
+        for (int i = 0; i < 50_000; i++) {
+            double next = price + Math.sin(i) * 15;
+            candles.add(T0 + i * MINUTE, price, Math.max(price, next) + 2.5, Math.min(price, next) - 2.5, next,
+                    Math.abs(Math.cos(i)) * 40, 100 + i % 900);
+            price = next;
+        }
+
+        byte[] json = new ObjectMapper().writeValueAsBytes(candles.toDtos());
+        byte[] binary = encode(candles);
+        assertTrue(binary.length * 2 < json.length, binary.length + " vs " + json.length);
+        assertTrue(gzip(binary).length < gzip(json).length);
+    }
+
+    private static byte[] encode(CandleSeries candles) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CandleBinaryEncoder.encode(candles, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,47 @@
+package org.binance.pastdataservice.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+class CandleCursorTest {
+
+    @Test
+    void decodesWhatItEncodes() {
+        CandleCursor cursor = new CandleCursor("BTCUSDT", 300_000, 1_700_000_100_000L, 1_700_003_699_999L);
+        assertEquals(cursor, CandleCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void rejectsTickSizesNotOffered() {
+        assertThrows(InvalidCursorException.class, () -> CandleCursor.decode(token("c1:BTCUSDT:7:0:999")));
+        assertThrows(InvalidCursorException.class, () -> CandleCursor.decode(token("c1:BTCUSDT:0:0:999")));
+    }
+
+    @Test
+    void rejectsInvertedRanges() {
+        assertThrows(InvalidCursorException.class, () -> CandleCursor.decode(token("c1:BTCUSDT:60000:120000:59999")));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(InvalidCursorException.class, () -> CandleCursor.decode("not base64!"));
+        assertThrows(InvalidCursorException.class, () -> CandleCursor.decode(token("c1:BTCUSDT:60000:x:1")));
+        assertThrows(InvalidCursorException.class, () -> CandleCursor.decode(token("t1:BTCUSDT:60000:0:1")));
+    }
+
+    @Test
+    void invalidCursorIsABadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, InvalidCursorException.class.getAnnotation(ResponseStatus.class).value());
+    }
+
+    private static String token(String plain) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,61 @@
+package org.binance.pastdataservice.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.binance.pastdataservice.service.CandleBatchService;
+import org.binance.pastdataservice.service.LiveCandleService;
+import org.binance.pastdataservice.service.TradeService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TradeControllerTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2024, 1, 10, 23, 0);
+
+    @Test
+    void negotiatesGzipByQValue() {
+        assertTrue(TradeController.acceptsGzip("gzip"));
+        assertTrue(TradeController.acceptsGzip("br;q=1.0, gzip;q=0.5"));
+        assertTrue(TradeController.acceptsGzip("deflate, *;q=0.1"));
+        assertTrue(TradeController.acceptsGzip("GZIP ; Q=0.8"));
+
+        assertFalse(TradeController.acceptsGzip(null));
+        assertFalse(TradeController.acceptsGzip("identity"));
+        assertFalse(TradeController.acceptsGzip("gzip;q=0"));
+        assertFalse(TradeController.acceptsGzip("gzip;q=0.000, *"));
+        assertFalse(TradeController.acceptsGzip("*;q=0"));
+    }
+
+    @Test
+    void namesTheTickUsedInTheHeader() {
+        TradeService tradeService = Mockito.mock(TradeService.class);
+        TradeController controller = new TradeController(tradeService, Mockito.mock(CandleBatchService.class),
+                Mockito.mock(LiveCandleService.class), new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(controller, "autoMaxPoints", 1000);
+        Mockito.when(tradeService.findCandleSeries("BTCUSDT", FROM, TO, "auto", 1000))
+                .thenReturn(new CandleSeries(15 * 60_000L, 0));
+        Mockito.when(tradeService.findCandleSeries("BTCUSDT", FROM, TO, "1h", 4))
+                .thenReturn(new CandleSeries(3 * 86_400_000L, 0));
+
+        assertEquals("1h", tickHeader(controller.getCandles("BTCUSDT", FROM, TO, "1h", null)));
+        assertEquals("15m", tickHeader(controller.getCandles("BTCUSDT", FROM, TO, "auto", null)));
+        // Merged daily candles
+        assertEquals("3d", tickHeader(controller.getCandles("BTCUSDT", FROM, TO, "1h", 4)));
+    }
+
+    private static String tickHeader(ResponseEntity<List<CandleDto>> response) {
+        return response.getHeaders().getFirst(TradeController.TICK_HEADER);
+    }
+}
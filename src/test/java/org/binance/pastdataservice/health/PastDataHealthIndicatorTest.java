@@ -0,0 +1,96 @@
+package org.binance.pastdataservice.health;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.binance.pastdataservice.DataListener;
+import org.binance.pastdataservice.ingest.IngestPipeline;
+import org.binance.pastdataservice.ingest.TradeSpool;
+import org.binance.pastdataservice.service.TradeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PastDataHealthIndicatorTest {
+
+    private final DataListener dataListener = Mockito.mock(DataListener.class);
+    private final IngestPipeline ingestPipeline = Mockito.mock(IngestPipeline.class);
+    private final TradeService tradeService = Mockito.mock(TradeService.class);
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<TradeSpool> spool = Mockito.mock(ObjectProvider.class);
+    private PastDataHealthIndicator indicator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Mockito.when(dataListener.getTotalTradesReceived()).thenReturn(new AtomicLong(100));
+        Mockito.when(ingestPipeline.getTotalBatchesInserted()).thenReturn(new AtomicLong(10));
+        Mockito.when(ingestPipeline.getBufferCapacity()).thenReturn(1000);
+        indicator = new PastDataHealthIndicator(dataListener, ingestPipeline, tradeService, spool,
+                Mockito.mock(ObjectProvider.class), Mockito.mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(indicator, "lagDegraded", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(indicator, "lagDown", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(indicator, "bufferDegraded", 0.8);
+        ReflectionTestUtils.setField(indicator, "bufferDown", 0.98);
+    }
+
+    @Test
+    void isUnknownBeforeAnyTradeArrives() {
+        Mockito.when(dataListener.getTotalTradesReceived()).thenReturn(new AtomicLong());
+
+        assertEquals(Status.UNKNOWN, indicator.health().getStatus());
+    }
+
+    @Test
+    void degradesAndFailsWithIngestLag() {
+        Mockito.when(tradeService.getIngestLag()).thenReturn(Duration.ofSeconds(2));
+        assertEquals(Status.UP, indicator.health().getStatus());
+
+        Mockito.when(tradeService.getIngestLag()).thenReturn(Duration.ofSeconds(10));
+        Health health = indicator.health();
+        assertEquals(PastDataHealthIndicator.DEGRADED, health.getStatus());
+        assertEquals(10_000L, health.getDetails().get("ingestLagMs"));
+
+        Mockito.when(tradeService.getIngestLag()).thenReturn(Duration.ofSeconds(60));
+        assertEquals(Status.DOWN, indicator.health().getStatus());
+    }
+
+    @Test
+    void degradesAndFailsWithBufferFill() {
+        Mockito.when(ingestPipeline.getBufferSize()).thenReturn(800);
+        assertEquals(PastDataHealthIndicator.DEGRADED, indicator.health().getStatus());
+
+        Mockito.when(ingestPipeline.getBufferSize()).thenReturn(980);
+        assertEquals(Status.DOWN, indicator.health().getStatus());
+    }
+
+    @Test
+    void countsSpoolBytesAgainstItsBudget() {
+        TradeSpool tradeSpool = Mockito.mock(TradeSpool.class);
+        Mockito.when(tradeSpool.isDraining()).thenReturn(true);
+        Mockito.when(tradeSpool.getMaxBytes()).thenReturn(1000L);
+        Mockito.when(tradeSpool.getSizeBytes()).thenReturn(850L);
+        Mockito.when(spool.getIfAvailable()).thenReturn(tradeSpool);
+
+        assertEquals(PastDataHealthIndicator.DEGRADED, indicator.health().getStatus());
+    }
+
+    @Test
+    void failsOnceTheSpoolStopsDraining() {
+        TradeSpool tradeSpool = Mockito.mock(TradeSpool.class);
+        Mockito.when(tradeSpool.getMaxBytes()).thenReturn(1000L);
+        Mockito.when(tradeSpool.getQuarantined()).thenReturn(3L);
+        Mockito.when(spool.getIfAvailable()).thenReturn(tradeSpool);
+
+        Health health = indicator.health();
+        assertEquals(Status.DOWN, health.getStatus());
+        assertEquals(false, health.getDetails().get("spoolDraining"));
+        assertEquals(3L, health.getDetails().get("spoolQuarantined"));
+    }
+}
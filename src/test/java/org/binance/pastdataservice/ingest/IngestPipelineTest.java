@@ -0,0 +1,111 @@
+package org.binance.pastdataservice.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.service.TradeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class IngestPipelineTest {
+
+    private final List<List<Long>> committedBatches = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Long> acked = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> rejected = new ConcurrentLinkedQueue<>();
+    private final IngestAcknowledger acknowledger = new IngestAcknowledger() {
+        @Override
+        public void acknowledge(long token) {
+            acked.add(token);
+        }
+
+        @Override
+        public void reject(long token) {
+            rejected.add(token);
+        }
+    };
+
+    private IngestPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+
+    @Test
+    void flushesFullBatchesAndAcksAfterCommit() throws Exception {
+        pipeline = start(recordingService(), 4, Duration.ofSeconds(30));
+
+        for (long i = 0; i < 8; i++) {
+            pipeline.publish(trade("BTCUSDT", i), acknowledger, i);
+        }
+
+        awaitAcks(8);
+        assertEquals(List.of(List.of(0L, 1L, 2L, 3L), List.of(4L, 5L, 6L, 7L)), committedBatches);
+        assertEquals(0, pipeline.getBufferSize());
+    }
+
+    @Test
+    void flushesPartialBatchAfterLinger() throws Exception {
+        pipeline = start(recordingService(), 100, Duration.ofMillis(50));
+
+        pipeline.publish(trade("ETHUSDT", 1), acknowledger, 1);
+
+        awaitAcks(1);
+        assertEquals(List.of(List.of(1L)), committedBatches);
+    }
+
+    @Test
+    void rejectsBatchWhenWriteFails() throws Exception {
+        TradeService failing = Mockito.mock(TradeService.class);
+        Mockito.doThrow(new IllegalStateException("db down")).when(failing).insertBatch(Mockito.anyList());
+        pipeline = start(failing, 2, Duration.ofSeconds(30));
+
+        pipeline.publish(trade("BTCUSDT", 1), acknowledger, 1);
+        pipeline.publish(trade("BTCUSDT", 2), acknowledger, 2);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rejected.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(1L, 2L), new ArrayList<>(rejected));
+        assertTrue(acked.isEmpty());
+    }
+
+    private TradeService recordingService() {
+        TradeService service = Mockito.mock(TradeService.class);
+        Mockito.doAnswer(invocation -> {
+            List<TradeRecord> trades = invocation.getArgument(0);
+            committedBatches.add(trades.stream().map(TradeRecord::getTradeId).toList());
+            return null;
+        }).when(service).insertBatch(Mockito.anyList());
+        return service;
+    }
+
+    private IngestPipeline start(TradeService service, int batchSize, Duration linger) {
+        IngestPipeline started = new IngestPipeline(service, new SimpleMeterRegistry(), batchSize, linger, 1, Math.max(16, batchSize), null);
+        started.start();
+        return started;
+    }
+
+    private void awaitAcks(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (acked.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, acked.size());
+    }
+
+    private static TradeRecord trade(String symbol, long tradeId) {
+        return new TradeRecord(symbol, tradeId, 1.0, 1.0, "MARKET", false, tradeId, tradeId);
+    }
+}
@@ -0,0 +1,25 @@
+package org.binance.pastdataservice.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ShardAssignmentTest {
+
+    @Test
+    void parsesListsAndRanges() {
+        assertEquals(List.of(0, 2, 5, 6, 7), ShardAssignment.parse(8, "5-7, 0,2,6").owned());
+        assertEquals(List.of(0, 1, 2, 3), ShardAssignment.parse(4, "all").owned());
+        assertEquals(List.of(3), ShardAssignment.parse(4, "3").owned());
+    }
+
+    @Test
+    void rejectsShardsOutsideTheCount() {
+        assertThrows(IllegalArgumentException.class, () -> ShardAssignment.parse(8, "6-8"));
+        assertThrows(IllegalArgumentException.class, () -> ShardAssignment.parse(8, "3-1"));
+        assertThrows(IllegalArgumentException.class, () -> ShardAssignment.parse(8, "x"));
+    }
+}
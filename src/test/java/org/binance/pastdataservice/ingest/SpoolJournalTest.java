@@ -0,0 +1,120 @@
+package org.binance.pastdataservice.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpoolJournalTest {
+
+    // Room for about 20 records per segment
+    private static final int SEGMENT_BYTES = 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsAcrossSegmentsAndDeletesThemOnCommit() throws IOException {
+        SpoolJournal journal = new SpoolJournal(dir, SEGMENT_BYTES);
+        journal.append(trades(1, 50));
+        journal.append(trades(51, 30));
+        assertEquals(80, journal.pending());
+
+        List<TradeRecord> read = records(100);
+        assertEquals(80, journal.read(read, 100));
+        for (int i = 0; i < 80; i++) {
+            assertEquals(i + 1, read.get(i).getTradeId());
+            assertEquals("BTCUSDT", read.get(i).getSymbol());
+        }
+        assertEquals(100.5, read.get(0).getPrice());
+        assertNull(read.get(1).getTradeType());
+        assertEquals(0, journal.read(read, 100));
+
+        journal.commit();
+        assertEquals(0, journal.pending());
+        assertEquals(1, segmentFiles());
+    }
+
+    @Test
+    void resumesFromCheckpointAfterRestart() throws IOException {
+        SpoolJournal journal = new SpoolJournal(dir, SEGMENT_BYTES);
+        journal.append(trades(1, 50));
+        List<TradeRecord> read = records(100);
+        assertEquals(30, journal.read(read, 30));
+        journal.commit();
+        // Read but never committed, so delivered again after the restart
+        journal.read(read, 10);
+        journal.close();
+
+        SpoolJournal reopened = new SpoolJournal(dir, SEGMENT_BYTES);
+        assertEquals(20, reopened.pending());
+        reopened.append(trades(51, 5));
+        assertEquals(25, reopened.read(read, 100));
+        assertEquals(31, read.get(0).getTradeId());
+        assertEquals(55, read.get(24).getTradeId());
+    }
+
+    @Test
+    void stopsAtTornRecordOnRecovery() throws IOException {
+        SpoolJournal journal = new SpoolJournal(dir, SEGMENT_BYTES);
+        journal.append(trades(1, 3));
+        journal.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(file -> file.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        // Flip a payload byte of the last record
+        bytes[2 * recordBytes() + 8] ^= 1;
+        Files.write(segment, bytes);
+
+        SpoolJournal reopened = new SpoolJournal(dir, SEGMENT_BYTES);
+        assertEquals(2, reopened.pending());
+        List<TradeRecord> read = records(10);
+        assertEquals(2, reopened.read(read, 10));
+        assertEquals(0, reopened.read(read, 10));
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".seg")).count();
+        }
+    }
+
+    // Header, five 8-byte fields, the flag, "BTCUSDT" and a null trade type
+    private static int recordBytes() {
+        return 8 + 5 * 8 + 1 + 1 + 7 + 1;
+    }
+
+    private static List<TradeRecord> trades(long firstId, int count) {
+        List<TradeRecord> trades = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TradeRecord trade = new TradeRecord();
+            trade.setSymbol("BTCUSDT");
+            trade.setTradeId(firstId + i);
+            trade.setPrice(100.5);
+            trade.setQuantity(0.25);
+            trade.setTradeTime(1_700_000_000_000L + firstId + i);
+            trade.setEventTime(1_700_000_000_000L + firstId + i);
+            trades.add(trade);
+        }
+        return trades;
+    }
+
+    private static List<TradeRecord> records(int count) {
+        List<TradeRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new TradeRecord());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,76 @@
+package org.binance.pastdataservice.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.rabbitmq.stream.Consumer;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class StreamOffsetAcknowledgerTest {
+
+    private final Consumer consumer = Mockito.mock(Consumer.class);
+    private final AtomicInteger rewinds = new AtomicInteger();
+    private final StreamOffsetAcknowledger acknowledger = new StreamOffsetAcknowledger(consumer, rewinds::incrementAndGet);
+
+    @Test
+    void storesOnlyContiguouslyCommittedOffsets() {
+        for (long offset = 10; offset <= 13; offset++) {
+            acknowledger.track(offset);
+        }
+
+        // A later lane commits first; nothing below it is settled yet
+        acknowledger.acknowledge(12);
+        acknowledger.afterBatch();
+        Mockito.verifyNoInteractions(consumer);
+
+        acknowledger.acknowledge(10);
+        acknowledger.afterBatch();
+        Mockito.verify(consumer).store(10);
+
+        acknowledger.acknowledge(11);
+        acknowledger.afterBatch();
+        Mockito.verify(consumer).store(12);
+
+        // Nothing new committed, nothing stored again
+        acknowledger.afterBatch();
+        acknowledger.acknowledge(99);
+        acknowledger.afterBatch();
+        Mockito.verifyNoMoreInteractions(consumer);
+    }
+
+    @Test
+    void tracksPastInitialCapacity() {
+        for (long offset = 0; offset < 5000; offset++) {
+            acknowledger.track(offset);
+        }
+        for (long offset = 4999; offset >= 1; offset--) {
+            acknowledger.acknowledge(offset);
+        }
+        acknowledger.afterBatch();
+        Mockito.verifyNoInteractions(consumer);
+
+        acknowledger.acknowledge(0);
+        acknowledger.afterBatch();
+        Mockito.verify(consumer).store(4999);
+    }
+
+    @Test
+    void rewindsOnRejectUntilFenced() {
+        acknowledger.track(1);
+        acknowledger.track(2);
+        acknowledger.reject(1);
+        assertEquals(1, rewinds.get());
+
+        // Batches of the replaced consumer settle after the rewind started
+        acknowledger.fence();
+        acknowledger.acknowledge(1);
+        acknowledger.acknowledge(2);
+        acknowledger.afterBatch();
+        acknowledger.reject(2);
+
+        Mockito.verifyNoInteractions(consumer);
+        assertEquals(1, rewinds.get());
+    }
+}
@@ -0,0 +1,75 @@
+package org.binance.pastdataservice.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.Test;
+
+class TradeMessageDecoderTest {
+
+    private final TradeMessageDecoder decoder = new TradeMessageDecoder(
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+
+    @Test
+    void decodesBinanceTradePayload() throws Exception {
+        TradeRecord trade = decode("{\"e\":\"trade\",\"E\":1769333690922,\"T\":1769333690921,\"s\":\"XRPUSDT\","
+                + "\"t\":2939595425,\"p\":\"1.8933\",\"q\":\"147.7\",\"X\":\"MARKET\",\"m\":true}");
+
+        assertEquals("XRPUSDT", trade.getSymbol());
+        assertEquals(2939595425L, trade.getTradeId());
+        assertEquals(1.8933, trade.getPrice());
+        assertEquals(147.7, trade.getQuantity());
+        assertEquals("MARKET", trade.getTradeType());
+        assertTrue(trade.isBuyerMaker());
+        assertEquals(1769333690922L, trade.getEventTime());
+        assertEquals(1769333690921L, trade.getTradeTime());
+    }
+
+    @Test
+    void parsesDecimalsLikeDoubleParseDouble() throws Exception {
+        String[] values = {"0.00001234", "104523.99000000", "0", "12345678901234567890.123", "3.141592653589793238"};
+        for (String value : values) {
+            TradeRecord trade = decode("{\"s\":\"BTCUSDT\",\"t\":1,\"T\":2,\"p\":\"" + value + "\",\"q\":\"" + value + "\"}");
+            assertEquals(Double.parseDouble(value), trade.getPrice(), value);
+            assertEquals(Double.parseDouble(value), trade.getQuantity(), value);
+        }
+    }
+
+    @Test
+    void internsSymbols() throws Exception {
+        String payload = "{\"s\":\"ETHUSDT\",\"t\":1,\"T\":2,\"p\":\"1\",\"q\":\"1\",\"X\":\"MARKET\"}";
+        TradeRecord first = decode(payload);
+        TradeRecord second = decode(payload);
+
+        assertSame(first.getSymbol(), second.getSymbol());
+        assertSame(first.getTradeType(), second.getTradeType());
+    }
+
+    @Test
+    void fallsBackToJacksonForUnexpectedShape() throws Exception {
+        TradeRecord trade = decode("{ \"s\" : \"BTC\\u0055SDT\", \"t\": 7, \"T\": 9, \"p\": \"2.5\", \"q\": \"1e2\", \"extra\": {\"a\": [1]} }");
+
+        assertEquals("BTCUSDT", trade.getSymbol());
+        assertEquals(7L, trade.getTradeId());
+        assertEquals(2.5, trade.getPrice());
+        assertEquals(100.0, trade.getQuantity());
+    }
+
+    @Test
+    void rejectsMalformedPayload() {
+        assertThrows(Exception.class, () -> decode("not json"));
+    }
+
+    private TradeRecord decode(String json) throws Exception {
+        TradeRecord trade = new TradeRecord();
+        decoder.decode(json.getBytes(StandardCharsets.UTF_8), trade);
+        return trade;
+    }
+}
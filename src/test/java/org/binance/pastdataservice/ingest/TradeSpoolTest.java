@@ -0,0 +1,101 @@
+package org.binance.pastdataservice.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.service.TradeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.util.unit.DataSize;
+
+class TradeSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TradeService tradeService = Mockito.mock(TradeService.class);
+    private TradeSpool spool;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (spool != null) {
+            spool.stop();
+        }
+    }
+
+    @Test
+    void quarantinesTradesTheStoreRefuses() throws Exception {
+        Set<Long> stored = new ConcurrentSkipListSet<>();
+        Mockito.doAnswer(invocation -> {
+            List<TradeRecord> trades = invocation.getArgument(0);
+            if (trades.stream().anyMatch(trade -> trade.getTradeId() == 7)) {
+                throw new DataIntegrityViolationException("value out of range");
+            }
+            trades.forEach(trade -> stored.add(trade.getTradeId()));
+            return null;
+        }).when(tradeService).insertBatch(Mockito.anyList());
+        spool = start();
+
+        spool.append(trades(1, 10));
+        awaitDrained();
+
+        assertEquals(9, stored.size());
+        assertFalse(stored.contains(7L));
+        assertEquals(1, spool.getQuarantined());
+        assertEquals(1, registry.counter("pastdata.ingest.spool.quarantined").count());
+        assertTrue(spool.isDraining());
+    }
+
+    @Test
+    void failsAppendsOnceTheDrainerDied() throws Exception {
+        Mockito.doThrow(new AssertionError("drainer bug")).when(tradeService).insertBatch(Mockito.anyList());
+        spool = start();
+
+        spool.append(trades(1, 10));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (spool.isDraining() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(spool.isDraining());
+        assertThrows(IOException.class, () -> spool.append(trades(11, 1)));
+        assertEquals(10, spool.getDepth());
+    }
+
+    private TradeSpool start() throws IOException {
+        TradeSpool started = new TradeSpool(tradeService, registry, dir, DataSize.ofKilobytes(64), DataSize.ofMegabytes(8), 100);
+        started.start();
+        return started;
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (spool.getDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, spool.getDepth());
+    }
+
+    private static List<TradeRecord> trades(long firstId, int count) {
+        List<TradeRecord> trades = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; id++) {
+            trades.add(new TradeRecord("BTCUSDT", id, 1.0, 1.0, "MARKET", false, id, id));
+        }
+        return trades;
+    }
+}
@@ -0,0 +1,36 @@
+package org.binance.pastdataservice.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyRecorderTest {
+
+    @Test
+    void reportsPercentilesInMillis() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        // 1..2000 ms, recorded out of order
+        for (int i = 2000; i >= 1; i--) {
+            recorder.record(i * 1_000_000L);
+        }
+
+        Map<String, Object> summary = recorder.summary();
+
+        // Within the histogram's three significant digits
+        assertEquals(2000L, summary.get("count"));
+        assertEquals(1000.0, (double) summary.get("p50"), 1.0);
+        assertEquals(1800.0, (double) summary.get("p90"), 1.8);
+        assertEquals(1980.0, (double) summary.get("p99"), 2.0);
+        assertEquals(1998.0, (double) summary.get("p999"), 2.0);
+        assertEquals(2000.0, (double) summary.get("max"), 2.0);
+    }
+
+    @Test
+    void summarizesNoSamplesAsZero() {
+        Map<String, Object> summary = new LatencyRecorder().summary();
+        assertEquals(0L, summary.get("count"));
+        assertEquals(0.0, summary.get("p99"));
+    }
+}
@@ -0,0 +1,139 @@
+package org.binance.pastdataservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+class CopyTradeBatchWriterTest {
+
+    private final Statement statement = Mockito.mock(Statement.class);
+    private final CopyIn copyIn = Mockito.mock(CopyIn.class);
+    private final ByteArrayOutputStream copied = new ByteArrayOutputStream();
+    // Keys the INSERT ... RETURNING reports, as symbol and trade id
+    private final List<Object[]> returned = new ArrayList<>();
+    private CopyTradeBatchWriter writer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Connection connection = Mockito.mock(Connection.class);
+        PGConnection pgConnection = Mockito.mock(PGConnection.class);
+        CopyManager copyManager = Mockito.mock(CopyManager.class);
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        Mockito.when(connection.createStatement()).thenReturn(statement);
+        Mockito.when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        Mockito.when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        Mockito.when(copyManager.copyIn(Mockito.anyString())).thenReturn(copyIn);
+        Mockito.doAnswer(invocation -> {
+            copied.write(invocation.<byte[]>getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+        Mockito.when(statement.executeQuery(Mockito.startsWith("INSERT"))).thenAnswer(invocation -> resultSet());
+        writer = new CopyTradeBatchWriter(dataSource, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void encodesRowsInBinaryCopyFormat() {
+        // Enough rows to flush the buffer more than once
+        List<TradeRecord> trades = new ArrayList<>();
+        for (long id = 0; id < 2000; id++) {
+            trades.add(new TradeRecord(id % 2 == 0 ? "BTCUSDT" : "ETHUSDT", id, 100.5 + id, 0.25, "MARKET",
+                    id % 3 == 0, 1_700_000_000_000L + id, 1_700_000_000_001L + id));
+            returned.add(new Object[]{trades.get((int) id).getSymbol(), id});
+        }
+
+        assertSame(trades, writer.write(trades));
+
+        ByteBuffer in = ByteBuffer.wrap(copied.toByteArray());
+        byte[] header = new byte[11];
+        in.get(header);
+        assertArrayEquals("PGCOPY\n\u00ff\r\n\0".getBytes(StandardCharsets.ISO_8859_1), header);
+        assertEquals(0, in.getInt());
+        assertEquals(0, in.getInt());
+        for (TradeRecord trade : trades) {
+            assertEquals(8, in.getShort());
+            assertEquals(trade.getSymbol(), string(in));
+            assertEquals(8, in.getInt());
+            assertEquals(trade.getTradeId(), in.getLong());
+            assertEquals(8, in.getInt());
+            assertEquals(trade.getPrice(), in.getDouble());
+            assertEquals(8, in.getInt());
+            assertEquals(trade.getQuantity(), in.getDouble());
+            assertEquals(trade.getTradeType(), string(in));
+            assertEquals(1, in.getInt());
+            assertEquals(trade.isBuyerMaker() ? 1 : 0, in.get());
+            assertEquals(8, in.getInt());
+            assertEquals(trade.getEventTime(), in.getLong());
+            assertEquals(8, in.getInt());
+            assertEquals(trade.getTradeTime(), in.getLong());
+        }
+        assertEquals(-1, in.getShort());
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void reportsOnlyTradesTheInsertReturned() throws Exception {
+        TradeRecord first = trade("BTCUSDT", 1);
+        TradeRecord stored = trade("BTCUSDT", 2);
+        TradeRecord repeat = trade("BTCUSDT", 1);
+        TradeRecord other = trade("ETHUSDT", 2);
+        // Trade 2 of BTCUSDT is already stored; the repeat of 1 conflicts with its first copy
+        returned.add(new Object[]{"BTCUSDT", 1L});
+        returned.add(new Object[]{"ETHUSDT", 2L});
+
+        List<TradeRecord> inserted = writer.write(List.of(first, stored, repeat, other));
+
+        assertEquals(2, inserted.size());
+        assertSame(first, inserted.get(0));
+        assertSame(other, inserted.get(1));
+    }
+
+    @Test
+    void createsTheStagingTableOncePerConnection() throws Exception {
+        returned.add(new Object[]{"BTCUSDT", 1L});
+        writer.write(List.of(trade("BTCUSDT", 1)));
+        writer.write(List.of(trade("BTCUSDT", 1)));
+
+        Mockito.verify(statement, Mockito.times(1)).execute(Mockito.startsWith("CREATE TEMP TABLE"));
+        Mockito.verify(statement, Mockito.times(2)).executeQuery(Mockito.startsWith("INSERT"));
+    }
+
+    private ResultSet resultSet() throws Exception {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        int[] row = {-1};
+        Mockito.when(rs.next()).thenAnswer(invocation -> ++row[0] < returned.size());
+        Mockito.when(rs.getString(1)).thenAnswer(invocation -> returned.get(row[0])[0]);
+        Mockito.when(rs.getLong(2)).thenAnswer(invocation -> returned.get(row[0])[1]);
+        return rs;
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static TradeRecord trade(String symbol, long tradeId) {
+        return new TradeRecord(symbol, tradeId, 1.0, 1.0, "MARKET", false, tradeId, tradeId);
+    }
+}
@@ -0,0 +1,59 @@
+package org.binance.pastdataservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class JdbcTradeBatchWriterTest {
+
+    @Test
+    void sendsTradesInJdbcBatches() throws Exception {
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        Connection connection = Mockito.mock(Connection.class);
+        DatabaseMetaData metaData = Mockito.mock(DatabaseMetaData.class);
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        Mockito.when(connection.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.supportsBatchUpdates()).thenReturn(true);
+        Mockito.when(connection.prepareStatement(Mockito.anyString())).thenReturn(statement);
+        Mockito.when(statement.getConnection()).thenReturn(connection);
+
+        // The second chunk holds one trade that is already stored
+        int[] duplicate = filled(100, 1);
+        duplicate[7] = 0;
+        Mockito.when(statement.executeBatch()).thenReturn(filled(100, 1), duplicate, filled(50, 1));
+
+        List<TradeRecord> trades = new ArrayList<>();
+        for (long id = 0; id < 250; id++) {
+            trades.add(new TradeRecord("BTCUSDT", id, 1.0, 1.0, "MARKET", false, id, id));
+        }
+        List<TradeRecord> inserted = new JdbcTradeBatchWriter(new JdbcTemplate(dataSource), 100).write(trades);
+
+        Mockito.verify(connection, Mockito.times(1)).prepareStatement(Mockito.anyString());
+        Mockito.verify(statement, Mockito.times(250)).addBatch();
+        Mockito.verify(statement, Mockito.times(3)).executeBatch();
+        Mockito.verify(statement, Mockito.never()).executeUpdate();
+
+        assertEquals(249, inserted.size());
+        assertEquals(106, inserted.get(106).getTradeId());
+        assertEquals(108, inserted.get(107).getTradeId());
+    }
+
+    private static int[] filled(int size, int value) {
+        int[] counts = new int[size];
+        Arrays.fill(counts, value);
+        return counts;
+    }
+}
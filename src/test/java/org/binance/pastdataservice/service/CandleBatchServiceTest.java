@@ -0,0 +1,141 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.dto.response.CandleBatchDto;
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class CandleBatchServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final LocalDateTime TO = FROM.plusDays(1);
+
+    private final TradeService tradeService = Mockito.mock(TradeService.class);
+
+    @Test
+    void reportsFailedSymbolsAndBoundsConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Mockito.when(tradeService.findBySymbolAndFilters(Mockito.anyString(), Mockito.any(), Mockito.any(), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                        if (invocation.getArgument(0).equals("BADUSDT")) {
+                            throw new IllegalStateException("boom");
+                        }
+                        return List.of(CandleDto.builder().openTime(1).build());
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+        CandleBatchService service = new CandleBatchService(tradeService, new SimpleMeterRegistry(), 8, 2, 16,
+                Duration.ofSeconds(10));
+
+        CandleBatchDto batch = service.findCandles(
+                List.of("BTCUSDT", "ETHUSDT", "BADUSDT", "SOLUSDT", "BTCUSDT", "XRPUSDT"), FROM, TO, "1m");
+
+        assertEquals(List.of("BTCUSDT", "ETHUSDT", "SOLUSDT", "XRPUSDT"), List.copyOf(batch.getCandles().keySet()));
+        assertEquals("Query failed", batch.getErrors().get("BADUSDT"));
+        assertTrue(maxRunning.get() <= 2, "ran " + maxRunning.get() + " symbols at once");
+        service.stop();
+    }
+
+    @Test
+    void reportsPendingSymbolsAsTimedOut() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(tradeService.findBySymbolAndFilters(Mockito.anyString(), Mockito.any(), Mockito.any(), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of();
+                });
+        CandleBatchService service = new CandleBatchService(tradeService, new SimpleMeterRegistry(), 1, 1, 16,
+                Duration.ofMillis(50));
+
+        CandleBatchDto batch = service.findCandles(List.of("BTCUSDT", "ETHUSDT"), FROM, TO, "1m");
+        release.countDown();
+
+        assertTrue(batch.getCandles().isEmpty());
+        assertEquals("Timed out", batch.getErrors().get("BTCUSDT"));
+        assertEquals("Timed out", batch.getErrors().get("ETHUSDT"));
+        service.stop();
+    }
+
+    @Test
+    void rejectsCallsOnceTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(tradeService.findBySymbolAndFilters(Mockito.anyString(), Mockito.any(), Mockito.any(), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of();
+                });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CandleBatchService service = new CandleBatchService(tradeService, registry, 1, 1, 1, Duration.ofSeconds(5));
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // One call holds the only thread, the next one the only queue slot
+            Future<CandleBatchDto> running = callers.submit(() -> service.findCandles(List.of("BTCUSDT"), FROM, TO, "1m"));
+            awaitQueued(registry, 0);
+            Future<CandleBatchDto> queued = callers.submit(() -> service.findCandles(List.of("ETHUSDT"), FROM, TO, "1m"));
+            awaitQueued(registry, 1);
+
+            assertThrows(QueryRejectedException.class, () -> service.findCandles(List.of("SOLUSDT"), FROM, TO, "1m"));
+
+            release.countDown();
+            assertTrue(running.get(5, TimeUnit.SECONDS).getErrors().isEmpty());
+            assertTrue(queued.get(5, TimeUnit.SECONDS).getErrors().isEmpty());
+        } finally {
+            callers.shutdownNow();
+            service.stop();
+        }
+    }
+
+    @Test
+    void withdrawsQueuedWorkOnTimeout() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(tradeService.findBySymbolAndFilters(Mockito.anyString(), Mockito.any(), Mockito.any(), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of();
+                });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CandleBatchService service = new CandleBatchService(tradeService, registry, 1, 1, 1, Duration.ofMillis(50));
+
+        // The first call keeps the thread busy past its timeout
+        service.findCandles(List.of("BTCUSDT"), FROM, TO, "1m");
+        CandleBatchDto timedOut = service.findCandles(List.of("ETHUSDT"), FROM, TO, "1m");
+
+        assertEquals("Timed out", timedOut.getErrors().get("ETHUSDT"));
+        assertEquals(0, registry.get("executor.queued").tag("name", "candle.batch").gauge().value());
+        // The slot the timed out call held is free again
+        assertEquals("Timed out", service.findCandles(List.of("SOLUSDT"), FROM, TO, "1m").getErrors().get("SOLUSDT"));
+        release.countDown();
+        service.stop();
+    }
+
+    private static void awaitQueued(SimpleMeterRegistry registry, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (registry.get("executor.active").tag("name", "candle.batch").gauge().value() == 1
+                    && registry.get("executor.queued").tag("name", "candle.batch").gauge().value() == queued) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class CandleQueryGateTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void stop() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void coalescesIdenticalQueriesInFlight() throws Exception {
+        CandleQueryGate gate = new CandleQueryGate(registry, 4, 16, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        List<Future<CandleSeries>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(callers.submit(() -> gate.execute("BTCUSDT", 0, 59_999, 1000, () -> {
+                executions.incrementAndGet();
+                await(release);
+                CandleSeries candles = new CandleSeries(1000, 1);
+                candles.add(0, 1, 1, 1, 1, 1, 1);
+                return candles;
+            })));
+        }
+        // Everyone joins the first query before it completes
+        while (registry.counter("pastdata.candle.query.coalesced").count() < 5) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        for (Future<CandleSeries> result : results) {
+            assertEquals(1, result.get(5, TimeUnit.SECONDS).size());
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void everyCallerGetsItsOwnSeries() throws Exception {
+        CandleQueryGate gate = new CandleQueryGate(registry, 4, 16, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<CandleSeries>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(callers.submit(() -> {
+                CandleSeries candles = gate.execute("BTCUSDT", 0, 59_999, 1000, () -> {
+                    await(release);
+                    CandleSeries series = new CandleSeries(1000, 1);
+                    series.add(0, 1, 1, 1, 1, 1, 1);
+                    return series;
+                });
+                // Like loadCandles appending the hot tail, while the others may still be copying
+                for (int j = 0; j < 1000; j++) {
+                    candles.add(1000 * (j + 1), 1, 1, 1, 1, 1, 1);
+                }
+                return candles;
+            }));
+        }
+        while (registry.counter("pastdata.candle.query.coalesced").count() < 5) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        Set<CandleSeries> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Future<CandleSeries> result : results) {
+            CandleSeries candles = result.get(5, TimeUnit.SECONDS);
+            assertEquals(1001, candles.size());
+            distinct.add(candles);
+        }
+        assertEquals(6, distinct.size());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        CandleQueryGate gate = new CandleQueryGate(registry, 1, 1, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        Future<CandleSeries> running = callers.submit(() -> gate.execute("BTCUSDT", 0, 1, 1, () -> {
+            started.countDown();
+            await(release);
+            return new CandleSeries(1, 0);
+        }));
+        started.await();
+        Future<CandleSeries> queued = callers.submit(() -> gate.execute("ETHUSDT", 0, 1, 1, () -> new CandleSeries(1, 0)));
+        while (registry.get("pastdata.candle.query.queued").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(QueryRejectedException.class,
+                () -> gate.execute("SOLUSDT", 0, 1, 1, () -> new CandleSeries(1, 0)));
+        assertEquals(1, registry.counter("pastdata.candle.query.rejected").count());
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void rejectsAfterQueueTimeout() {
+        CandleQueryGate gate = new CandleQueryGate(registry, 1, 4, Duration.ofMillis(20));
+        CountDownLatch release = new CountDownLatch(1);
+        callers.submit(() -> gate.execute("BTCUSDT", 0, 1, 1, () -> {
+            await(release);
+            return new CandleSeries(1, 0);
+        }));
+        while (registry.get("pastdata.candle.query.active").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(QueryRejectedException.class,
+                () -> gate.execute("ETHUSDT", 0, 1, 1, () -> new CandleSeries(1, 0)));
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
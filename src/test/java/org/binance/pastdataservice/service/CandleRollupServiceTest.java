@@ -0,0 +1,158 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.binance.pastdataservice.model.entity.CandleRollup;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.repository.CandleRollupCoverageRepository;
+import org.binance.pastdataservice.repository.CandleRollupRepository;
+import org.binance.pastdataservice.repository.CandleRollupWriter;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class CandleRollupServiceTest {
+
+    private static final long T0 = 1_769_333_640_000L; // minute aligned
+
+    private final Map<String, CandleRollup> stored = new TreeMap<>();
+    private final CandleRollupService service = new CandleRollupService(new MergingWriter(),
+            Mockito.mock(CandleRollupRepository.class), Mockito.mock(CandleRollupCoverageRepository.class));
+
+    @Test
+    void mergesOutOfOrderBatchesLikeTheRawAggregation() {
+        Random random = new Random(42);
+        List<TradeRecord> trades = new ArrayList<>();
+        long time = T0;
+        for (long id = 1; id <= 2000; id++) {
+            // Several trades share a millisecond, so ties are broken by trade id
+            time += random.nextInt(3) == 0 ? random.nextInt(400) : 0;
+            double price = random.nextInt(50) == 0 ? 0 : 100 + random.nextInt(1000) / 100.0;
+            double quantity = random.nextInt(50) == 0 ? 0 : random.nextInt(1000) / 1000.0;
+            trades.add(new TradeRecord(id % 3 == 0 ? "ETHUSDT" : "BTCUSDT", id, price, quantity, "MARKET", false,
+                    time, time));
+        }
+        // Batches arrive in any order, each shuffled
+        List<TradeRecord> shuffled = new ArrayList<>(trades);
+        Collections.shuffle(shuffled, random);
+        service.apply(shuffled.subList(1000, 2000));
+        service.apply(shuffled.subList(0, 1000));
+
+        assertEquals(raw(trades), stored);
+    }
+
+    @Test
+    void laterBatchMovesOpenAndCloseOnlyForEarlierOrLaterTrades() {
+        service.apply(List.of(trade(2, T0 + 500, 20), trade(3, T0 + 500, 30)));
+        // Earlier by time, and same time but lower id than the stored close
+        service.apply(List.of(trade(1, T0 + 100, 10), trade(4, T0 + 400, 40)));
+        // A tie on time that is later by id closes the bucket
+        service.apply(List.of(trade(5, T0 + 500, 50)));
+
+        CandleRollup minute = stored.get(key("BTCUSDT", CandleRollupService.MINUTE_MS, T0));
+        assertEquals(10, minute.getOpen());
+        assertEquals(50, minute.getClose());
+        assertEquals(50, minute.getHigh());
+        assertEquals(10, minute.getLow());
+        assertEquals(5, minute.getTradeCount());
+        assertEquals(1, minute.getFirstTradeId());
+        assertEquals(5, minute.getLastTradeId());
+    }
+
+    @Test
+    void skipsTradesWithoutPriceOrQuantity() {
+        service.apply(List.of(trade(1, T0, 0), new TradeRecord("BTCUSDT", 2, 5, 0, "MARKET", false, T0, T0),
+                trade(3, T0 + 1, -1)));
+
+        assertEquals(Map.of(), stored);
+    }
+
+    // Candles of the raw candle query, with ties in time ordered by trade id
+    private static Map<String, CandleRollup> raw(List<TradeRecord> trades) {
+        List<TradeRecord> sorted = new ArrayList<>(trades);
+        sorted.sort(Comparator.comparingLong(TradeRecord::getTradeTime).thenComparingLong(TradeRecord::getTradeId));
+        Map<String, CandleRollup> candles = new TreeMap<>();
+        for (TradeRecord trade : sorted) {
+            if (trade.getPrice() <= 0 || trade.getQuantity() == 0) continue;
+            for (long tickMs : CandleRollupService.BASE_TICKS) {
+                long openTime = trade.getTradeTime() / tickMs * tickMs;
+                CandleRollup candle = candles.computeIfAbsent(key(trade.getSymbol(), tickMs, openTime),
+                        k -> new CandleRollup(trade.getSymbol(), tickMs, openTime, trade.getPrice(),
+                                trade.getPrice(), trade.getPrice(), 0, 0, 0, trade.getTradeTime(),
+                                trade.getTradeId(), 0, 0));
+                candle.setHigh(Math.max(candle.getHigh(), trade.getPrice()));
+                candle.setLow(Math.min(candle.getLow(), trade.getPrice()));
+                candle.setClose(trade.getPrice());
+                candle.setVolume(round(candle.getVolume() + trade.getQuantity()));
+                candle.setTradeCount(candle.getTradeCount() + 1);
+                candle.setLastTradeTime(trade.getTradeTime());
+                candle.setLastTradeId(trade.getTradeId());
+            }
+        }
+        return candles;
+    }
+
+    private static TradeRecord trade(long id, long time, double price) {
+        return new TradeRecord("BTCUSDT", id, price, 1, "MARKET", false, time, time);
+    }
+
+    private static String key(String symbol, long tickMs, long openTime) {
+        return symbol + "/" + tickMs + "/" + openTime;
+    }
+
+    // Sums in a different order differ in the last bits
+    private static double round(double volume) {
+        return Math.round(volume * 1e6) / 1e6;
+    }
+
+    // Applies upserts the way the ON CONFLICT clause of CandleRollupWriter.MERGE does
+    private class MergingWriter extends CandleRollupWriter {
+
+        MergingWriter() {
+            super(null);
+        }
+
+        @Override
+        public void upsert(List<CandleRollup> rollups) {
+            for (CandleRollup e : rollups) {
+                String key = key(e.getSymbol(), e.getTickMs(), e.getOpenTime());
+                CandleRollup r = stored.get(key);
+                if (r == null) {
+                    e.setVolume(round(e.getVolume()));
+                    stored.put(key, e);
+                    continue;
+                }
+                if (before(e.getFirstTradeTime(), e.getFirstTradeId(), r.getFirstTradeTime(), r.getFirstTradeId())) {
+                    r.setOpen(e.getOpen());
+                    r.setFirstTradeId(e.getFirstTradeId());
+                }
+                r.setFirstTradeTime(Math.min(r.getFirstTradeTime(), e.getFirstTradeTime()));
+                if (before(r.getLastTradeTime(), r.getLastTradeId(), e.getLastTradeTime(), e.getLastTradeId())) {
+                    r.setClose(e.getClose());
+                    r.setLastTradeId(e.getLastTradeId());
+                }
+                r.setLastTradeTime(Math.max(r.getLastTradeTime(), e.getLastTradeTime()));
+                r.setHigh(Math.max(r.getHigh(), e.getHigh()));
+                r.setLow(Math.min(r.getLow(), e.getLow()));
+                r.setVolume(round(r.getVolume() + e.getVolume()));
+                r.setTradeCount(r.getTradeCount() + e.getTradeCount());
+            }
+        }
+
+        @Override
+        public void registerCoverage(List<CandleRollup> firstBuckets) {
+        }
+
+        // Row comparison (time, id) < (time, id)
+        private static boolean before(long time, long id, long otherTime, long otherId) {
+            return time < otherTime || time == otherTime && id < otherId;
+        }
+    }
+}
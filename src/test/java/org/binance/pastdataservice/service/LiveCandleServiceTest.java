@@ -0,0 +1,186 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.dto.response.CandleDto;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class LiveCandleServiceTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long T0 = 1_769_333_640_000L; // minute aligned
+
+    private final TradeService tradeService = Mockito.mock(TradeService.class);
+    // Publishing is driven by the tests, not the schedule
+    private final LiveCandleService service = new LiveCandleService(tradeService, new SimpleMeterRegistry(),
+            Duration.ofHours(1), Duration.ofHours(1), Duration.ofHours(1), 10, 4, 2);
+
+    private long tradeId;
+
+    LiveCandleServiceTest() {
+        // Nothing stored yet
+        Mockito.when(tradeService.findOpenCandles(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong(),
+                Mockito.anyLong())).thenReturn(new CandleSeries(MINUTE, 0));
+    }
+
+    @AfterEach
+    void stop() {
+        service.stop();
+    }
+
+    @Test
+    void pushesOpenCandleAndCloseOnNextBucket() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(null);
+        service.subscribe("BTCUSDT", MINUTE, sink);
+
+        trade(T0 + 1_000);
+        trade(T0 + 2_000);
+        service.publish();
+        assertEvent(sink, LiveCandleService.CANDLE_EVENT, T0, 2);
+
+        // Nothing new, nothing sent
+        service.publish();
+        trade(T0 + MINUTE + 500);
+        service.publish();
+        assertEvent(sink, LiveCandleService.CLOSE_EVENT, T0, 2);
+        assertEvent(sink, LiveCandleService.CANDLE_EVENT, T0 + MINUTE, 1);
+        assertNull(sink.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void readsTheStoreOnceAndFoldsTradesAfterwards() throws InterruptedException {
+        long tickMs = 60 * MINUTE;
+        long openTime = Math.floorDiv(System.currentTimeMillis(), tickMs) * tickMs;
+        CandleSeries stored = new CandleSeries(tickMs, 1);
+        stored.add(openTime, 10, 12, 9, 11, 2, 4);
+        Mockito.when(tradeService.findOpenCandles(Mockito.eq("BTCUSDT"), Mockito.eq(openTime), Mockito.anyLong(),
+                Mockito.eq(tickMs))).thenReturn(stored);
+        RecordingSink sink = new RecordingSink(null);
+        service.subscribe("BTCUSDT", tickMs, sink);
+
+        trade(System.currentTimeMillis(), 13, 1);
+        service.publish();
+        CandleDto first = assertEvent(sink, LiveCandleService.CANDLE_EVENT, openTime, 5);
+        assertEquals(10, first.getOpen());
+        assertEquals(13, first.getHigh());
+        assertEquals(9, first.getLow());
+        assertEquals(13, first.getClose());
+        assertEquals(3, first.getVolume());
+
+        for (int i = 0; i < 10; i++) {
+            trade(System.currentTimeMillis(), 8, 0.5);
+            service.publish();
+        }
+        // The sender may skip intermediate candles, never the newest
+        CandleDto last = first;
+        while (last.getTradeCount() < 15) {
+            last = (CandleDto) sink.events.poll(5, TimeUnit.SECONDS)[1];
+        }
+        assertEquals(15, last.getTradeCount());
+        assertEquals(8, last.getLow());
+        assertEquals(8, last.getClose());
+        assertEquals(8, last.getVolume());
+
+        // A second subscriber shares the feed; no push reads the store again
+        service.subscribe("BTCUSDT", tickMs, new RecordingSink(null));
+        service.publish();
+        Mockito.verify(tradeService, Mockito.times(1)).findOpenCandles(Mockito.anyString(), Mockito.anyLong(),
+                Mockito.anyLong(), Mockito.anyLong());
+    }
+
+    @Test
+    void skipsRedeliveredAndInvalidTrades() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(null);
+        service.subscribe("BTCUSDT", MINUTE, sink);
+
+        trade(T0 + 1, 5, 1);
+        trade(T0 + 2, 0, 1);
+        trade(T0 + 3, 6, 0);
+        TradeRecord redelivered = new TradeRecord("BTCUSDT", 1, 7, 1, "trade", false, T0 + 1, T0 + 1);
+        service.onTrade(redelivered);
+        service.publish();
+
+        CandleDto candle = assertEvent(sink, LiveCandleService.CANDLE_EVENT, T0, 1);
+        assertEquals(5, candle.getClose());
+    }
+
+    @Test
+    void slowClientGetsOnlyTheNewestOpenCandle() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink(release);
+        service.subscribe("BTCUSDT", MINUTE, sink);
+
+        trade(T0 + 1);
+        service.publish();
+        // Blocks the sender until released
+        assertEvent(sink, LiveCandleService.CANDLE_EVENT, T0, 1);
+        for (int i = 2; i <= 5; i++) {
+            trade(T0 + i);
+            service.publish();
+        }
+        release.countDown();
+
+        assertEvent(sink, LiveCandleService.CANDLE_EVENT, T0, 5);
+        assertNull(sink.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private void trade(long tradeTime) {
+        trade(tradeTime, 1, 1);
+    }
+
+    private void trade(long tradeTime, double price, double quantity) {
+        tradeId++;
+        service.onTrade(new TradeRecord("BTCUSDT", tradeId, price, quantity, "trade", false, tradeTime, tradeTime));
+    }
+
+    private static CandleDto assertEvent(RecordingSink sink, String event, long openTime, int trades)
+            throws InterruptedException {
+        Object[] sent = sink.events.poll(5, TimeUnit.SECONDS);
+        assertEquals(event, sent[0]);
+        CandleDto candle = (CandleDto) sent[1];
+        assertEquals(openTime, candle.getOpenTime());
+        assertEquals(trades, candle.getTradeCount());
+        return candle;
+    }
+
+    private static final class RecordingSink implements LiveCandleService.Sink {
+        final BlockingQueue<Object[]> events = new LinkedBlockingQueue<>();
+        final CountDownLatch release;
+
+        RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(String event, Object data) {
+            events.add(new Object[]{event, data});
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.repository.TradeArchiveRepository;
+import org.binance.pastdataservice.store.GorillaTradeCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the job against an in-memory {@code trades} table, archive and partition list.
+ */
+class TradeArchiveJobTest {
+
+    private static final long DAY = TradePartitionManager.DAY_MS;
+    private static final long HOUR = TradeArchiveRepository.BLOCK_MS;
+
+    private final long today = Math.floorDiv(System.currentTimeMillis(), DAY);
+    private final long day0 = (today - 40) * DAY;
+    private final long day1 = day0 + DAY;
+
+    private final List<TradeRecord> table = new ArrayList<>();
+    private final Map<String, byte[]> blocks = new HashMap<>();
+    private final List<String> dropped = new ArrayList<>();
+    private final List<TradePartitionManager.Partition> partitions = new ArrayList<>();
+    private Long archivedBefore;
+
+    private final JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+    private final TradePartitionManager partitionManager = Mockito.mock(TradePartitionManager.class);
+    private TradeArchiveJob job;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenReturn(new SimpleTransactionStatus());
+
+        Mockito.doAnswer(invocation -> {
+            selectRange(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(Mockito.any(PreparedStatementCreator.class), Mockito.any(RowCallbackHandler.class));
+        Mockito.when(jdbcTemplate.update(Mockito.startsWith("DELETE FROM trades"), Mockito.any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    long from = invocation.getArgument(1);
+                    long to = invocation.getArgument(2);
+                    int before = table.size();
+                    table.removeIf(trade -> trade.getTradeTime() >= from && trade.getTradeTime() < to);
+                    return before - table.size();
+                });
+        Mockito.when(jdbcTemplate.queryForObject("SELECT MIN(trade_time) FROM trades", Long.class))
+                .thenAnswer(invocation -> table.stream().mapToLong(TradeRecord::getTradeTime).min().stream().boxed()
+                        .findFirst().orElse(null));
+        Mockito.when(jdbcTemplate.queryForObject(Mockito.startsWith("SELECT NOT EXISTS"), Mockito.eq(Boolean.class)))
+                .thenAnswer(invocation -> {
+                    long from = ((String) invocation.getArgument(0)).contains("trades_p0") ? day0 : day1;
+                    return table.stream().noneMatch(t -> t.getTradeTime() >= from && t.getTradeTime() < from + DAY);
+                });
+        Mockito.doAnswer(invocation -> {
+            String name = ((String) invocation.getArgument(0)).substring("DROP TABLE ".length());
+            partitions.removeIf(partition -> partition.name().equals(name));
+            return dropped.add(name);
+        }).when(jdbcTemplate).execute(Mockito.startsWith("DROP TABLE"));
+        partitions.add(new TradePartitionManager.Partition("trades_p0", day0, day1));
+        partitions.add(new TradePartitionManager.Partition("trades_p1", day1, day1 + DAY));
+        Mockito.when(partitionManager.partitions()).thenAnswer(invocation -> List.copyOf(partitions));
+
+        job = new TradeArchiveJob(jdbcTemplate, new TransactionTemplate(transactionManager), new FakeArchive(),
+                partitionManager, new SimpleMeterRegistry(), Duration.ofDays(30), 100);
+    }
+
+    @Test
+    void archivesOldDaysAndDropsTheirPartitions() {
+        table.add(trade("BTCUSDT", 1, day0 + 10));
+        table.add(trade("BTCUSDT", 2, day0 + 20));
+        table.add(trade("BTCUSDT", 3, day0 + HOUR + 5));
+        table.add(trade("ETHUSDT", 1, day0 + 15));
+        table.add(trade("BTCUSDT", 4, day1 + 7));
+        TradeRecord recent = trade("BTCUSDT", 5, (today - 1) * DAY);
+        table.add(recent);
+
+        job.run();
+
+        assertEquals((today - 30) * DAY, archivedBefore);
+        assertEquals(List.of(recent), table);
+        assertEquals(List.of(1L, 2L), archivedIds("BTCUSDT", day0));
+        assertEquals(List.of(3L), archivedIds("BTCUSDT", day0 + HOUR));
+        assertEquals(List.of(1L), archivedIds("ETHUSDT", day0));
+        assertEquals(List.of(4L), archivedIds("BTCUSDT", day1));
+        assertEquals(List.of("trades_p0", "trades_p1"), dropped);
+    }
+
+    @Test
+    void mergesLateTradesIntoArchivedBlocks() {
+        table.add(trade("BTCUSDT", 1, day0 + 10));
+        table.add(trade("BTCUSDT", 3, day0 + 30));
+        job.run();
+        long watermark = archivedBefore;
+
+        // A late trade of an archived hour, and a redelivery of one already archived
+        table.add(trade("BTCUSDT", 2, day0 + 20));
+        table.add(trade("BTCUSDT", 3, day0 + 30));
+        job.run();
+
+        assertEquals(List.of(1L, 2L, 3L), archivedIds("BTCUSDT", day0));
+        assertEquals(List.of(), table);
+        assertEquals(watermark, archivedBefore);
+    }
+
+    @Test
+    void keepsEventTimeAndTradeType() {
+        TradeRecord first = trade("BTCUSDT", 1, day0 + 10);
+        first.setTradeType("aggTrade");
+        first.setEventTime(day0 + 250);
+        TradeRecord late = trade("BTCUSDT", 2, day0 + 20);
+        late.setEventTime(day0 + 20);
+        table.add(first);
+        job.run();
+        table.add(late);
+        job.run();
+
+        assertEquals(List.of(first, late), GorillaTradeCodec.decodeAll(blocks.get("BTCUSDT@" + day0), "BTCUSDT"));
+    }
+
+    @Test
+    void dropsDayPartitionsRecreatedForLateTrades() {
+        table.add(trade("BTCUSDT", 1, day0 + 10));
+        job.run();
+        dropped.clear();
+
+        // Partition maintenance moved a late trade out of the default partition into a new day partition
+        partitions.add(new TradePartitionManager.Partition("trades_p0", day0, day1));
+        table.add(trade("BTCUSDT", 2, day0 + 20));
+        job.run();
+
+        assertEquals(List.of(1L, 2L), archivedIds("BTCUSDT", day0));
+        assertEquals(List.of("trades_p0"), dropped);
+    }
+
+    private void selectRange(PreparedStatementCreator creator, RowCallbackHandler handler) throws Exception {
+        long[] range = new long[2];
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        Mockito.doAnswer(invocation -> {
+            range[(int) invocation.getArgument(0) - 1] = invocation.getArgument(1);
+            return null;
+        }).when(statement).setLong(Mockito.anyInt(), Mockito.anyLong());
+        Connection connection = Mockito.mock(Connection.class);
+        Mockito.when(connection.prepareStatement(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt())).thenReturn(statement);
+        creator.createPreparedStatement(connection);
+
+        List<TradeRecord> rows = table.stream()
+                .filter(trade -> trade.getTradeTime() >= range[0] && trade.getTradeTime() < range[1])
+                .sorted(Comparator.comparing(TradeRecord::getSymbol).thenComparingLong(TradeRecord::getTradeTime)
+                        .thenComparingLong(TradeRecord::getTradeId))
+                .toList();
+        for (TradeRecord row : rows) {
+            ResultSet rs = Mockito.mock(ResultSet.class);
+            Mockito.when(rs.getString(1)).thenReturn(row.getSymbol());
+            Mockito.when(rs.getLong(2)).thenReturn(row.getTradeId());
+            Mockito.when(rs.getDouble(3)).thenReturn(row.getPrice());
+            Mockito.when(rs.getDouble(4)).thenReturn(row.getQuantity());
+            Mockito.when(rs.getString(5)).thenReturn(row.getTradeType());
+            Mockito.when(rs.getBoolean(6)).thenReturn(row.isBuyerMaker());
+            Mockito.when(rs.getLong(7)).thenReturn(row.getEventTime());
+            Mockito.when(rs.getLong(8)).thenReturn(row.getTradeTime());
+            handler.processRow(rs);
+        }
+    }
+
+    private List<Long> archivedIds(String symbol, long blockStart) {
+        return GorillaTradeCodec.decodeAll(blocks.get(symbol + "@" + blockStart), symbol).stream()
+                .map(TradeRecord::getTradeId)
+                .toList();
+    }
+
+    private static TradeRecord trade(String symbol, long tradeId, long tradeTime) {
+        return new TradeRecord(symbol, tradeId, 100.0 + tradeId, 0.5, "trade", false, tradeTime + 1, tradeTime);
+    }
+
+    private class FakeArchive extends TradeArchiveRepository {
+
+        FakeArchive() {
+            super(null);
+        }
+
+        @Override
+        public Long findArchivedBefore() {
+            return archivedBefore;
+        }
+
+        @Override
+        public void advanceArchivedBefore(long time) {
+            archivedBefore = archivedBefore == null ? time : Math.max(archivedBefore, time);
+        }
+
+        @Override
+        public byte[] findBlock(String symbol, long blockStart) {
+            return blocks.get(symbol + "@" + blockStart);
+        }
+
+        @Override
+        public void saveBlock(String symbol, long blockStart, int tradeCount, byte[] data) {
+            blocks.put(symbol + "@" + blockStart, data);
+        }
+    }
+}
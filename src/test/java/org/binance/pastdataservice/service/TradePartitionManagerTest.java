@@ -0,0 +1,124 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Records the statements the manager issues against a mocked {@code trades} catalog.
+ */
+class TradePartitionManagerTest {
+
+    private static final long DAY = TradePartitionManager.DAY_MS;
+
+    private final long today = Math.floorDiv(System.currentTimeMillis(), DAY);
+    private final List<String> statements = new ArrayList<>();
+    private final List<String> partitionRows = new ArrayList<>();
+    private String relkind;
+
+    private final JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(Mockito.any())).thenAnswer(invocation -> {
+            statements.add("BEGIN");
+            return new SimpleTransactionStatus();
+        });
+        Mockito.doAnswer(invocation -> statements.add("COMMIT")).when(transactionManager).commit(Mockito.any());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Mockito.when(jdbcTemplate.query(Mockito.contains("relkind"), Mockito.any(ResultSetExtractor.class)))
+                .thenAnswer(invocation -> relkind);
+        Mockito.doAnswer(invocation -> statements.add(invocation.getArgument(0)))
+                .when(jdbcTemplate).execute(Mockito.anyString());
+        Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.any(Object[].class))).thenAnswer(invocation -> {
+            statements.add(invocation.getArgument(0));
+            return 0;
+        });
+        Mockito.when(jdbcTemplate.query(Mockito.contains("GROUP BY symbol"), Mockito.any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    statements.add(invocation.getArgument(0));
+                    RowMapper<Object> mapper = invocation.getArgument(1);
+                    ResultSet rs = Mockito.mock(ResultSet.class);
+                    Mockito.when(rs.getString(1)).thenReturn("BTCUSDT");
+                    Mockito.when(rs.getLong(2)).thenReturn((today - 3) * DAY + 5);
+                    Mockito.when(rs.getLong(3)).thenReturn((today - 2) * DAY + 5);
+                    return List.of(mapper.mapRow(rs, 0));
+                });
+        Mockito.when(jdbcTemplate.query(Mockito.contains("pg_inherits"), Mockito.any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Object> mapper = invocation.getArgument(1);
+                    List<Object> partitions = new ArrayList<>();
+                    for (String row : partitionRows) {
+                        String[] parts = row.split("\\|");
+                        ResultSet rs = Mockito.mock(ResultSet.class);
+                        Mockito.when(rs.getString(1)).thenReturn(parts[0]);
+                        Mockito.when(rs.getString(2)).thenReturn(parts[1]);
+                        partitions.add(mapper.mapRow(rs, partitions.size()));
+                    }
+                    return partitions;
+                });
+        Mockito.when(jdbcTemplate.queryForObject("SELECT MAX(trade_time) FROM trades", Long.class))
+                .thenReturn((today - 2) * DAY + 5);
+    }
+
+    @Test
+    void deduplicatesTheLegacyTableBeforeLockingIt() {
+        relkind = "r";
+
+        manager(Duration.ZERO).ensureSchema();
+
+        int lock = statements.indexOf("LOCK TABLE trades IN ACCESS EXCLUSIVE MODE");
+        List<String> batches = statements.subList(0, lock).stream()
+                .filter(sql -> sql.startsWith("DELETE FROM trades a"))
+                .toList();
+        // One delete per day the symbol has trades on, none of them in a transaction
+        assertEquals(2, batches.size());
+        assertTrue(batches.stream().allMatch(sql -> sql.contains("a.symbol = ?")), batches::toString);
+        assertEquals("BEGIN", statements.get(lock - 1));
+
+        List<String> locked = statements.subList(lock, statements.indexOf("COMMIT"));
+        List<String> deletes = locked.stream().filter(sql -> sql.startsWith("DELETE")).toList();
+        assertEquals(1, deletes.size());
+        assertTrue(deletes.get(0).startsWith("DELETE FROM trades_legacy a"), deletes::toString);
+        assertTrue(deletes.get(0).endsWith("AND a.trade_time >= ? AND b.trade_time >= ?"), deletes::toString);
+        assertTrue(locked.contains("ALTER TABLE trades ATTACH PARTITION trades_legacy FOR VALUES FROM (MINVALUE) TO ("
+                + (today - 1) * DAY + ")"), locked::toString);
+    }
+
+    @Test
+    void retiresTheLegacyPartitionOnceItsNewestDayExpires() {
+        relkind = "p";
+        partitionRows.add("trades_legacy|FOR VALUES FROM (MINVALUE) TO ('" + (today - 40) * DAY + "')");
+        partitionRows.add("trades_p0|FOR VALUES FROM ('" + (today - 40) * DAY + "') TO ('" + (today - 39) * DAY + "')");
+        partitionRows.add("trades_p1|FOR VALUES FROM ('" + (today - 10) * DAY + "') TO ('" + (today - 9) * DAY + "')");
+
+        manager(Duration.ofDays(30)).maintain();
+
+        assertTrue(statements.contains("DROP TABLE trades_legacy"), statements::toString);
+        assertTrue(statements.contains("DROP TABLE trades_p0"), statements::toString);
+        assertFalse(statements.contains("DROP TABLE trades_p1"), statements::toString);
+    }
+
+    private TradePartitionManager manager(Duration retention) {
+        return new TradePartitionManager(jdbcTemplate, transactionTemplate, 0, retention, "drop", Duration.ZERO);
+    }
+}
@@ -0,0 +1,68 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSegmentCache;
+import org.binance.pastdataservice.candle.HotCandleEngine;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.binance.pastdataservice.store.TradeStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class TradeServiceMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TradeStore store = Mockito.mock(TradeStore.class);
+    private final TradeService service;
+
+    TradeServiceMetricsTest() {
+        Mockito.when(store.name()).thenReturn("test");
+        service = new TradeService(Mockito.mock(TradeRepository.class), store,
+                new HotCandleEngine(registry, false, Duration.ofSeconds(1), Duration.ofMinutes(1), 1),
+                new CandleSegmentCache(Caffeine.newBuilder().build(), registry, Duration.ofMinutes(1), null),
+                new CandleQueryGate(registry, 4, 4, Duration.ofSeconds(1)),
+                registry);
+    }
+
+    @Test
+    void reportsIngestLagFromNewestCommittedTrade() {
+        assertNull(service.getIngestLag());
+
+        TradeRecord trade = new TradeRecord();
+        trade.setSymbol("BTCUSDT");
+        trade.setTradeTime(System.currentTimeMillis() - 30_000);
+        trade.setEventTime(trade.getTradeTime() + 5_000);
+        Mockito.when(store.append(Mockito.anyList())).thenReturn(1);
+        service.insertBatch(List.of(trade));
+
+        long lagMs = service.getIngestLag().toMillis();
+        assertTrue(lagMs >= 30_000 && lagMs < 60_000, "lag " + lagMs);
+        assertLag("trade", 30_000);
+        assertLag("event", 25_000);
+    }
+
+    @Test
+    void ignoresBatchesTheStoreDidNotCommit() {
+        TradeRecord trade = new TradeRecord();
+        trade.setSymbol("BTCUSDT");
+        trade.setTradeTime(System.currentTimeMillis());
+        trade.setEventTime(trade.getTradeTime());
+        Mockito.when(store.append(Mockito.anyList())).thenThrow(new IllegalStateException("store down"));
+
+        assertThrows(IllegalStateException.class, () -> service.insertBatch(List.of(trade)));
+        assertNull(service.getIngestLag());
+    }
+
+    private void assertLag(String basis, long atLeastMs) {
+        double lagMs = registry.get("pastdata.ingest.lag").tag("basis", basis).gauge().value();
+        assertTrue(lagMs >= atLeastMs && lagMs < atLeastMs + 30_000, basis + " lag " + lagMs);
+    }
+}
@@ -0,0 +1,98 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSegmentCache;
+import org.binance.pastdataservice.candle.CandleSegmentKey;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.candle.HotCandleEngine;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.binance.pastdataservice.store.TradeStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class TradeServiceStreamTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long DAY = 1440 * MINUTE;
+    private static final long D0 = 20_000 * DAY;
+
+    private final TradeStore store = Mockito.mock(TradeStore.class);
+    private final Cache<CandleSegmentKey, CandleSeries> segments = Caffeine.newBuilder().build();
+    private final TradeService service;
+
+    TradeServiceStreamTest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Mockito.when(store.name()).thenReturn("test");
+        // One candle every other minute
+        Mockito.when(store.findCandles(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenAnswer(invocation -> {
+                    long from = invocation.getArgument(1);
+                    long to = invocation.getArgument(2);
+                    CandleSeries series = new CandleSeries(invocation.getArgument(3), 0);
+                    for (long t = Math.floorDiv(from + 2 * MINUTE - 1, 2 * MINUTE) * 2 * MINUTE; t <= to; t += 2 * MINUTE) {
+                        series.add(t, 1, 1, 1, 1, 1, 1);
+                    }
+                    return series;
+                });
+        service = new TradeService(Mockito.mock(TradeRepository.class), store,
+                new HotCandleEngine(registry, false, Duration.ofSeconds(1), Duration.ofMinutes(1), 1),
+                new CandleSegmentCache(segments, registry, Duration.ofMinutes(1), null),
+                new CandleQueryGate(registry, 4, 4, Duration.ofSeconds(1)),
+                registry);
+    }
+
+    @Test
+    void pagesByRowsAndResumesAfterLastCandle() throws IOException {
+        List<Long> openTimes = new ArrayList<>();
+        long to = D0 + 3 * DAY - 1;
+
+        Long next = service.streamCandles("BTCUSDT", MINUTE, D0, to, 1000, collect(openTimes));
+        assertEquals(1000, openTimes.size());
+        assertEquals(D0 + 1998 * MINUTE + MINUTE, next);
+
+        while (next != null) {
+            next = service.streamCandles("BTCUSDT", MINUTE, next, to, 1000, collect(openTimes));
+        }
+        assertEquals(3 * 720, openTimes.size());
+        for (int i = 1; i < openTimes.size(); i++) {
+            assertEquals(2 * MINUTE, openTimes.get(i) - openTimes.get(i - 1));
+        }
+    }
+
+    @Test
+    void endsWithoutCursorWhenRangeFitsOnePage() throws IOException {
+        List<Long> openTimes = new ArrayList<>();
+        assertNull(service.streamCandles("BTCUSDT", MINUTE, D0, D0 + DAY - 1, 720, collect(openTimes)));
+        assertEquals(720, openTimes.size());
+    }
+
+    @Test
+    void streamsFineTicksWithoutFillingTheCache() throws IOException {
+        List<Long> openTimes = new ArrayList<>();
+        Long next = D0;
+        while (next != null) {
+            next = service.streamCandles("BTCUSDT", 1, next, D0 + 10 * MINUTE - 1, 100_000, collect(openTimes));
+        }
+
+        assertEquals(5, openTimes.size());
+        assertEquals(0, segments.estimatedSize());
+    }
+
+    private static TradeService.CandleChunkWriter collect(List<Long> openTimes) {
+        return (candles, count) -> {
+            for (int i = 0; i < count; i++) {
+                openTimes.add(candles.getOpenTime(i));
+            }
+        };
+    }
+}
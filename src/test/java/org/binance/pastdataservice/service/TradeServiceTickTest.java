@@ -0,0 +1,88 @@
+package org.binance.pastdataservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSegmentCache;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.candle.HotCandleEngine;
+import org.binance.pastdataservice.repository.TradeRepository;
+import org.binance.pastdataservice.store.TradeStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class TradeServiceTickTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final LocalDateTime D0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final TradeStore store = Mockito.mock(TradeStore.class);
+    private final TradeService service;
+
+    TradeServiceTickTest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Mockito.when(store.name()).thenReturn("test");
+        // One candle with a single trade per bucket
+        Mockito.when(store.findCandles(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong()))
+                .thenAnswer(invocation -> {
+                    long from = invocation.getArgument(1);
+                    long to = invocation.getArgument(2);
+                    long tickMs = invocation.getArgument(3);
+                    CandleSeries series = new CandleSeries(tickMs, 0);
+                    for (long t = Math.floorDiv(from + tickMs - 1, tickMs) * tickMs; t <= to; t += tickMs) {
+                        series.add(t, 1, 1, 1, 1, 1, 1);
+                    }
+                    return series;
+                });
+        service = new TradeService(Mockito.mock(TradeRepository.class), store,
+                new HotCandleEngine(registry, false, Duration.ofSeconds(1), Duration.ofMinutes(1), 1),
+                new CandleSegmentCache(Caffeine.newBuilder().build(), registry, Duration.ofMinutes(1), null),
+                new CandleQueryGate(registry, 4, 4, Duration.ofSeconds(1)),
+                registry);
+    }
+
+    @Test
+    void autoPicksTheFinestTickThatFits() {
+        LocalDateTime to = D0.plusHours(23);
+
+        // 1440 one-minute candles are too many, 288 five-minute ones fit
+        CandleSeries candles = service.findCandleSeries("BTCUSDT", D0, to, "auto", 1000);
+        assertEquals(5 * MINUTE, candles.getTickMs());
+        assertEquals(288, candles.size());
+
+        assertEquals(HOUR, service.findCandleSeries("BTCUSDT", D0, to, "auto", 24).getTickMs());
+        assertEquals(4 * HOUR, service.findCandleSeries("BTCUSDT", D0, to, "auto", 23).getTickMs());
+    }
+
+    @Test
+    void neverGoesFinerThanTheRequestedTick() {
+        CandleSeries candles = service.findCandleSeries("BTCUSDT", D0, D0.plusHours(23), "15m", 1000);
+
+        assertEquals(15 * MINUTE, candles.getTickMs());
+        assertEquals(96, candles.size());
+    }
+
+    @Test
+    void mergesDaysWhenEvenDailyCandlesAreTooMany() {
+        // 10 days into at most 4 candles
+        CandleSeries candles = service.findCandleSeries("BTCUSDT", D0, D0.plusDays(9).plusHours(23), "auto", 4);
+
+        assertEquals(0, candles.getTickMs() % DAY);
+        assertTrue(candles.getTickMs() > DAY);
+        assertTrue(candles.size() <= 4, "size " + candles.size());
+        long trades = 0;
+        for (int i = 0; i < candles.size(); i++) {
+            trades += candles.getTradeCount(i);
+        }
+        assertEquals(10, trades);
+        Mockito.verify(store, Mockito.never())
+                .findCandles(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong(), Mockito.eq(candles.getTickMs()));
+    }
+}
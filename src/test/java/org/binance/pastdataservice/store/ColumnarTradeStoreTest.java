@@ -0,0 +1,169 @@
+package org.binance.pastdataservice.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.binance.pastdataservice.candle.CandleSeries;
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ColumnarTradeStoreTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long D0 = 20_000 * DAY;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void aggregatesAcrossDaysAndIndexBlocks() throws IOException {
+        ColumnarTradeStore store = store();
+        // One trade every 10ms from 23:50 to 00:10, spanning two day files and many index blocks
+        List<TradeRecord> trades = new ArrayList<>();
+        long start = D0 + DAY - 10 * 60_000;
+        for (int i = 0; i < 120_000; i++) {
+            trades.add(trade(i + 1, start + i * 10L, 100 + (i % 60_000) / 1000.0, 0.5));
+        }
+        for (int i = 0; i < trades.size(); i += 500) {
+            store.append(trades.subList(i, Math.min(i + 500, trades.size())));
+        }
+
+        CandleSeries minutes = store.findCandles("BTCUSDT", D0 + DAY - 5 * 60_000, D0 + DAY + 5 * 60_000 - 1, 60_000);
+
+        assertEquals(10, minutes.size());
+        assertEquals(D0 + DAY - 5 * 60_000, minutes.getOpenTime(0));
+        assertEquals(6000, minutes.getTradeCount(0));
+        assertEquals(3000.0, minutes.getVolume(0), 1e-9);
+        assertEquals(D0 + DAY, minutes.getOpenTime(5));
+
+        // Trades 60_000..65_999 are the first minute of the second day file
+        assertEquals(100.0, minutes.getOpen(5));
+        assertEquals(105.999, minutes.getHigh(5), 1e-9);
+        assertEquals(100.0, minutes.getLow(5));
+        assertEquals(105.999, minutes.getClose(5), 1e-9);
+
+        CandleSeries seconds = store.findCandles("BTCUSDT", D0 + DAY + 1_234, D0 + DAY + 3_000 - 1, 1000);
+        assertEquals(2, seconds.size());
+        assertEquals(D0 + DAY + 1_000, seconds.getOpenTime(0));
+        assertEquals(76, seconds.getTradeCount(0));
+        store.close();
+    }
+
+    @Test
+    void skipsRedeliveredTradesAndRecoversOnReopen() throws IOException {
+        ColumnarTradeStore store = store();
+        List<TradeRecord> batch = List.of(
+                trade(1, D0 + 1_000, 10, 1),
+                trade(2, D0 + 1_500, 12, 1),
+                trade(3, D0 + 2_500, 11, 1));
+        assertEquals(3, store.append(batch));
+        assertEquals(0, store.append(batch));
+        store.close();
+
+        ColumnarTradeStore reopened = store();
+        reopened.append(List.of(trade(3, D0 + 2_500, 11, 1), trade(4, D0 + 2_600, 9, 1), trade(5, D0 + 2_700, -1, 1)));
+
+        CandleSeries candles = reopened.findCandles("BTCUSDT", D0, D0 + DAY - 1, 1000);
+        assertEquals(2, candles.size());
+        assertEquals(2, candles.getTradeCount(0));
+        assertEquals(12.0, candles.getClose(0));
+        assertEquals(2, candles.getTradeCount(1));
+        assertEquals(9.0, candles.getLow(1));
+        assertEquals(0, reopened.findCandles("ETHUSDT", D0, D0 + DAY - 1, 1000).size());
+        reopened.close();
+    }
+
+    @Test
+    void mergesBatchRedeliveredAfterLaterBatchCommitted() throws IOException {
+        ColumnarTradeStore store = store();
+        store.append(List.of(trade(1, D0 + 1_000, 10, 1), trade(2, D0 + 1_100, 10, 1)));
+        // The batch of trades 3 and 4 failed; a later batch commits before it is redelivered
+        store.append(List.of(trade(5, D0 + 2_100, 10, 1), trade(6, D0 + 2_200, 10, 1)));
+
+        assertEquals(2, store.append(List.of(trade(3, D0 + 1_200, 10, 1), trade(4, D0 + 2_000, 10, 1))));
+        assertEquals(0, store.append(List.of(trade(4, D0 + 2_000, 10, 1), trade(6, D0 + 2_200, 10, 1))));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), tradeIds(store));
+        store.close();
+
+        ColumnarTradeStore reopened = store();
+        reopened.append(List.of(trade(7, D0 + 2_300, 10, 1)));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), tradeIds(reopened));
+        CandleSeries candles = reopened.findCandles("BTCUSDT", D0, D0 + DAY - 1, 1000);
+        assertEquals(3, candles.getTradeCount(0));
+        assertEquals(4, candles.getTradeCount(1));
+        reopened.close();
+    }
+
+    @Test
+    void rebuildsIndexAfterMergingAcrossBlocks() throws IOException {
+        ColumnarTradeStore store = store();
+        List<TradeRecord> trades = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            trades.add(trade(i + 1, D0 + i * 10L, 10, 1));
+        }
+        store.append(trades.subList(0, 1000));
+        store.append(trades.subList(1500, 3000));
+        store.append(trades.subList(1000, 1500));
+
+        // Seeks through index entries that now point at shifted rows
+        CandleSeries seconds = store.findCandles("BTCUSDT", D0 + 20_000, D0 + 29_999, 1000);
+        assertEquals(10, seconds.size());
+        for (int i = 0; i < seconds.size(); i++) {
+            assertEquals(100, seconds.getTradeCount(i));
+        }
+        store.close();
+    }
+
+    @Test
+    void scansTradesByKeysetAcrossDays() throws IOException {
+        ColumnarTradeStore store = store();
+        // Pairs of trades sharing a time, so pages may end between equal times
+        List<TradeRecord> trades = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            trades.add(trade(i + 1, D0 + DAY - 1500 + i / 2 * 2, 100, 1));
+        }
+        store.append(trades);
+
+        List<Long> ids = new ArrayList<>();
+        long afterTime = D0 + DAY - 1500;
+        long afterId = Long.MIN_VALUE;
+        long[] last = new long[2];
+        int n;
+        do {
+            n = store.scanTrades("BTCUSDT", afterTime, afterId, D0 + DAY + 999, 333, trade -> {
+                ids.add(trade.getTradeId());
+                last[0] = trade.getTradeTime();
+                last[1] = trade.getTradeId();
+            });
+            afterTime = last[0];
+            afterId = last[1];
+        } while (n == 333);
+
+        // Trades after D0 + DAY + 999 are out of range
+        assertEquals(2500, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1, ids.get(i));
+        }
+        store.close();
+    }
+
+    private static List<Long> tradeIds(ColumnarTradeStore store) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        store.scanTrades("BTCUSDT", D0, Long.MIN_VALUE, D0 + DAY - 1, 100, trade -> ids.add(trade.getTradeId()));
+        return ids;
+    }
+
+    private ColumnarTradeStore store() throws IOException {
+        return new ColumnarTradeStore(new SimpleMeterRegistry(), root, false);
+    }
+
+    private static TradeRecord trade(long id, long time, double price, double quantity) {
+        return new TradeRecord("BTCUSDT", id, price, quantity, "trade", false, time, time);
+    }
+}
@@ -0,0 +1,56 @@
+package org.binance.pastdataservice.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.binance.pastdataservice.model.ingest.TradeRecord;
+import org.junit.jupiter.api.Test;
+
+class GorillaTradeCodecTest {
+
+    @Test
+    void roundTripsTradesLosslessly() {
+        List<TradeRecord> trades = trades(50_000);
+        // Extreme values take the widest encodings
+        trades.get(100).setPrice(Double.MIN_VALUE);
+        trades.get(101).setQuantity(1e300);
+        trades.get(200).setTradeType("aggTrade");
+
+        List<TradeRecord> decoded = GorillaTradeCodec.decodeAll(GorillaTradeCodec.encode(trades), "BTCUSDT");
+
+        assertEquals(trades, decoded);
+    }
+
+    @Test
+    void packsRealisticTradesIntoFewBytesEach() {
+        List<TradeRecord> trades = trades(100_000);
+
+        byte[] block = GorillaTradeCodec.encode(trades);
+
+        assertEquals(100_000, new GorillaTradeCodec.Decoder(block).remaining());
+        // A heap row plus its primary key entry takes well over 100 bytes
+        assertTrue(block.length < 16 * trades.size(), "bytes per trade " + (double) block.length / trades.size());
+    }
+
+    // Consecutive ids, bursts of trades in the same millisecond and prices on a 0.01 tick
+    private static List<TradeRecord> trades(int count) {
+        Random random = new Random(42);
+        List<TradeRecord> trades = new ArrayList<>(count);
+        long time = 1_769_333_640_000L;
+        long priceTicks = 6_500_000;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(3) == 0) {
+                time += random.nextInt(200);
+            }
+            priceTicks += random.nextInt(7) - 3;
+            double quantity = (1 + random.nextInt(50_000)) / 100_000.0;
+            trades.add(new TradeRecord("BTCUSDT", 3_000_000_000L + i, priceTicks / 100.0, quantity, "trade",
+                    random.nextBoolean(), time + random.nextInt(20), time));
+        }
+        return trades;
+    }
+}